@@ -15,11 +15,38 @@
  */
 package io.allurx.blur;
 
-import io.allurx.annotation.parser.AnnotationParser;
+import io.allurx.annotation.parser.handler.AnnotationHandler;
 import io.allurx.annotation.parser.type.Cascade;
+import io.allurx.blur.plan.ColumnPlan;
+import io.allurx.blur.plan.Handlers;
+import io.allurx.blur.plan.NumberPlan;
+import io.allurx.blur.plan.Plan;
+import io.allurx.blur.plan.Plans;
+import io.allurx.blur.plan.Rendering;
+import io.allurx.blur.plan.Traversal;
 import io.allurx.kit.base.reflection.AnnotatedTypeToken;
 
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.AnnotatedArrayType;
+import java.lang.reflect.AnnotatedParameterizedType;
+import java.lang.reflect.AnnotatedType;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.function.Function;
 
 /**
  * This class provides functionality to blur sensitive information by masking the fields of objects,
@@ -33,6 +60,12 @@ public final class Blur {
     private Blur() {
     }
 
+    /**
+     * The annotated type used to blur objects without an explicit {@link AnnotatedTypeToken}.
+     */
+    private static final AnnotatedType CASCADE = new AnnotatedTypeToken<@Cascade Object>() {
+    }.getAnnotatedType();
+
     /**
      * Blurs the fields of the input.
      *
@@ -41,8 +74,19 @@ public final class Blur {
      * @return A new object with its fields blurred
      */
     public static <T> T blur(T input) {
-        return blur(input, new AnnotatedTypeToken<@Cascade T>() {
-        });
+        return blur(input, CASCADE, BlurOptions.DEFAULT);
+    }
+
+    /**
+     * Blurs the fields of the input with the given options.
+     *
+     * @param <T>     The type of the input
+     * @param input   The object to be blurred
+     * @param options The {@link BlurOptions} of this call
+     * @return A new object with its fields blurred
+     */
+    public static <T> T blur(T input, BlurOptions options) {
+        return blur(input, CASCADE, options);
     }
 
     /**
@@ -54,12 +98,461 @@ public final class Blur {
      * @return A new object with its fields blurred
      */
     public static <T> T blur(T input, AnnotatedTypeToken<T> typeToken) {
+        return blur(input, typeToken, BlurOptions.DEFAULT);
+    }
+
+    /**
+     * Blurs the input based on its {@link AnnotatedTypeToken} with the given options.
+     *
+     * @param input     The object to be blurred
+     * @param typeToken The {@link AnnotatedTypeToken} representing the type of the input
+     * @param options   The {@link BlurOptions} of this call
+     * @param <T>       The type of the input
+     * @return A new object with its fields blurred
+     */
+    public static <T> T blur(T input, AnnotatedTypeToken<T> typeToken, BlurOptions options) {
         return Optional.ofNullable(input)
                 .map(t -> typeToken)
                 .map(AnnotatedTypeToken::getAnnotatedType)
-                .map(annotatedType -> AnnotationParser.parse(input, annotatedType))
+                .map(annotatedType -> blur(input, annotatedType, options))
                 .orElse(input);
     }
 
+    /**
+     * Blurs the decimal digits of a number, such as a bank card number stored in a {@code long}.
+     * A number cannot hold a masked value, so the result is returned as a {@link String}.
+     *
+     * @param input     The number to be blurred
+     * @param typeToken The {@link AnnotatedTypeToken} carrying the sensitive annotations, e.g. {@code AnnotatedTypeToken<@BankCardNumber Long>}
+     * @return The blurred decimal digits of the number
+     */
+    public static String blurToString(long input, AnnotatedTypeToken<Long> typeToken) {
+        return NumberPlan.of(typeToken.getAnnotatedType()).apply(input);
+    }
+
+    /**
+     * Blurs the decimal digits of a number, such as a bank card number stored in a {@link java.math.BigInteger},
+     * see {@link #blurToString(long, AnnotatedTypeToken)}.
+     *
+     * @param input     The number to be blurred
+     * @param typeToken The {@link AnnotatedTypeToken} carrying the sensitive annotations
+     * @return The blurred decimal digits of the number, or {@code null} if the input is {@code null}
+     */
+    public static String blurToString(Number input, AnnotatedTypeToken<? extends Number> typeToken) {
+        return NumberPlan.of(typeToken.getAnnotatedType()).apply(input);
+    }
+
+    /**
+     * Blurs the decimal digits of each number in the array without boxing them,
+     * see {@link #blurToString(long, AnnotatedTypeToken)}.
+     *
+     * @param input     The numbers to be blurred
+     * @param typeToken The {@link AnnotatedTypeToken} carrying the sensitive annotations on the component type,
+     *                  e.g. {@code AnnotatedTypeToken<@BankCardNumber long[]>}
+     * @return The blurred decimal digits of each number, or {@code null} if the input is {@code null}
+     */
+    public static String[] blurToStrings(long[] input, AnnotatedTypeToken<long[]> typeToken) {
+        AnnotatedArrayType arrayType = (AnnotatedArrayType) typeToken.getAnnotatedType();
+        return NumberPlan.of(arrayType.getAnnotatedGenericComponentType()).apply(input);
+    }
+
+    /**
+     * Blurs a column of strings with the sensitive annotations of a single type, such as one column of
+     * an export. The values are masked in one pass over a packed char array instead of one by one,
+     * and large columns are masked in parallel.
+     *
+     * @param column    The column to be blurred, may contain {@code null} values
+     * @param typeToken The {@link AnnotatedTypeToken} carrying the sensitive annotations, e.g. {@code AnnotatedTypeToken<@Email String>}
+     * @return A new column with the values blurred, or {@code null} if the column is {@code null}
+     */
+    public static String[] blurColumn(String[] column, AnnotatedTypeToken<String> typeToken) {
+        return ColumnPlan.of(typeToken.getAnnotatedType()).apply(column);
+    }
+
+    /**
+     * Blurs a column of strings with the sensitive annotations of a single type, see {@link #blurColumn(String[], AnnotatedTypeToken)}.
+     *
+     * @param column    The column to be blurred, may contain {@code null} values
+     * @param typeToken The {@link AnnotatedTypeToken} carrying the sensitive annotations
+     * @return A new unmodifiable column with the values blurred, or {@code null} if the column is {@code null}
+     */
+    public static List<String> blurColumn(List<String> column, AnnotatedTypeToken<String> typeToken) {
+        return column == null ? null : Collections.unmodifiableList(Arrays.asList(blurColumn(column.toArray(String[]::new), typeToken)));
+    }
+
+    /**
+     * Writes the blurred fields of the input to the output without creating a blurred copy. Objects containing
+     * sensitive data are written like records, {@code Person[name=a*****, age=18]}, collections and arrays as
+     * {@code [a, b]}, maps as {@code {k=v}}, and any other value by its {@link Object#toString()}.
+     *
+     * @param input  The object to be blurred
+     * @param output The output, such as a {@link StringBuilder} or a {@link java.io.Writer}
+     * @throws IOException if the output cannot be written
+     */
+    public static void render(Object input, Appendable output) throws IOException {
+        render(input, CASCADE, Rendering.text(output));
+    }
+
+    /**
+     * Writes the blurred input to the output based on its {@link AnnotatedTypeToken}, see {@link #render(Object, Appendable)}.
+     *
+     * @param input     The object to be blurred
+     * @param typeToken The {@link AnnotatedTypeToken} representing the type of the input
+     * @param output    The output, such as a {@link StringBuilder} or a {@link java.io.Writer}
+     * @param <T>       The type of the input
+     * @throws IOException if the output cannot be written
+     */
+    public static <T> void render(T input, AnnotatedTypeToken<T> typeToken, Appendable output) throws IOException {
+        render(input, typeToken.getAnnotatedType(), Rendering.text(output));
+    }
+
+    /**
+     * Returns the blurred fields of the input as a string, see {@link #render(Object, Appendable)}.
+     *
+     * @param input The object to be blurred
+     * @return The blurred representation of the input
+     */
+    public static String toString(Object input) {
+        return toString(input, CASCADE, Rendering::text);
+    }
+
+    /**
+     * Returns the blurred input as a string based on its {@link AnnotatedTypeToken}, see {@link #render(Object, Appendable)}.
+     *
+     * @param input     The object to be blurred
+     * @param typeToken The {@link AnnotatedTypeToken} representing the type of the input
+     * @param <T>       The type of the input
+     * @return The blurred representation of the input
+     */
+    public static <T> String toString(T input, AnnotatedTypeToken<T> typeToken) {
+        return toString(input, typeToken.getAnnotatedType(), Rendering::text);
+    }
+
+    /**
+     * Writes the input as JSON to the output, blurring its sensitive data while it is written instead of
+     * creating a blurred copy first. Objects are written field by field, whether they contain sensitive data
+     * or not, collections and arrays as JSON arrays and maps as JSON objects whose keys are strings. Objects
+     * that cannot be read reflectively, such as dates, are written as the string of their {@link Object#toString()},
+     * and back-references as {@code null}.
+     *
+     * @param input  The object to be blurred
+     * @param output The output, such as a {@link StringBuilder} or a {@link java.io.Writer}
+     * @throws IOException if the output cannot be written
+     */
+    public static void writeJson(Object input, Appendable output) throws IOException {
+        render(input, CASCADE, Rendering.json(output));
+    }
+
+    /**
+     * Writes the input as JSON in UTF-8 to the output stream, see {@link #writeJson(Object, Appendable)}.
+     * The stream is flushed but not closed.
+     *
+     * @param input  The object to be blurred
+     * @param output The output stream
+     * @throws IOException if the output stream cannot be written
+     */
+    public static void writeJson(Object input, OutputStream output) throws IOException {
+        writeJson(input, CASCADE, output);
+    }
+
+    /**
+     * Writes the input as JSON to the output based on its {@link AnnotatedTypeToken}, see {@link #writeJson(Object, Appendable)}.
+     *
+     * @param input     The object to be blurred
+     * @param typeToken The {@link AnnotatedTypeToken} representing the type of the input
+     * @param output    The output, such as a {@link StringBuilder} or a {@link java.io.Writer}
+     * @param <T>       The type of the input
+     * @throws IOException if the output cannot be written
+     */
+    public static <T> void writeJson(T input, AnnotatedTypeToken<T> typeToken, Appendable output) throws IOException {
+        render(input, typeToken.getAnnotatedType(), Rendering.json(output));
+    }
+
+    /**
+     * Writes the input as JSON in UTF-8 to the output stream based on its {@link AnnotatedTypeToken},
+     * see {@link #writeJson(Object, Appendable)}. The stream is flushed but not closed.
+     *
+     * @param input     The object to be blurred
+     * @param typeToken The {@link AnnotatedTypeToken} representing the type of the input
+     * @param output    The output stream
+     * @param <T>       The type of the input
+     * @throws IOException if the output stream cannot be written
+     */
+    public static <T> void writeJson(T input, AnnotatedTypeToken<T> typeToken, OutputStream output) throws IOException {
+        writeJson(input, typeToken.getAnnotatedType(), output);
+    }
+
+    /**
+     * Returns the input as JSON, see {@link #writeJson(Object, Appendable)}.
+     *
+     * @param input The object to be blurred
+     * @return The blurred JSON representation of the input
+     */
+    public static String toJson(Object input) {
+        return toString(input, CASCADE, Rendering::json);
+    }
+
+    /**
+     * Returns the input as JSON based on its {@link AnnotatedTypeToken}, see {@link #writeJson(Object, Appendable)}.
+     *
+     * @param input     The object to be blurred
+     * @param typeToken The {@link AnnotatedTypeToken} representing the type of the input
+     * @param <T>       The type of the input
+     * @return The blurred JSON representation of the input
+     */
+    public static <T> String toJson(T input, AnnotatedTypeToken<T> typeToken) {
+        return toString(input, typeToken.getAnnotatedType(), Rendering::json);
+    }
+
+    /**
+     * Returns a result set that blurs the values of the given columns when they are read as strings, and passes
+     * every other column through untouched. Rows are read from the result set as it is iterated, so large exports
+     * are streamed without materializing objects. Blurred columns cannot be read with getters other than
+     * {@code getString}, {@code getNString} and {@code getObject}, which could expose their original values.
+     *
+     * @param resultSet The result set to be blurred
+     * @param columns   The rules of the blurred columns by label, ignoring case
+     * @return A result set blurring the columns
+     * @throws IllegalArgumentException if a rule cannot be created
+     */
+    public static ResultSet resultSet(ResultSet resultSet, Map<String, BlurRule> columns) {
+        return BlurredResultSet.of(Objects.requireNonNull(resultSet), columns);
+    }
+
+    /**
+     * Returns a {@link Flow.Processor} that blurs each element as {@link #blur(Object)} does, on the thread
+     * delivering it, see {@link BlurProcessor}.
+     *
+     * @param <T> The type of the elements
+     * @return A processor blurring each element
+     */
+    public static <T> BlurProcessor<T> processor() {
+        return new BlurProcessor<>(Plans.of(CASCADE), BlurOptions.DEFAULT, 1, null);
+    }
+
+    /**
+     * Returns a {@link Flow.Processor} that blurs each element based on its {@link AnnotatedTypeToken}, on the
+     * thread delivering it, see {@link BlurProcessor}.
+     *
+     * @param typeToken The {@link AnnotatedTypeToken} representing the type of the elements
+     * @param <T>       The type of the elements
+     * @return A processor blurring each element
+     */
+    public static <T> BlurProcessor<T> processor(AnnotatedTypeToken<T> typeToken) {
+        return new BlurProcessor<>(Plans.of(typeToken.getAnnotatedType()), BlurOptions.DEFAULT, 1, null);
+    }
+
+    /**
+     * Returns a {@link Flow.Processor} that blurs up to {@code parallelism} elements concurrently on the executor
+     * based on their {@link AnnotatedTypeToken}, and publishes them in order, see {@link BlurProcessor}.
+     *
+     * @param typeToken   The {@link AnnotatedTypeToken} representing the type of the elements
+     * @param parallelism The maximum number of elements blurred concurrently
+     * @param executor    The executor blurring the elements
+     * @param <T>         The type of the elements
+     * @return A processor blurring each element
+     * @throws IllegalArgumentException if the parallelism is not positive
+     */
+    public static <T> BlurProcessor<T> processor(AnnotatedTypeToken<T> typeToken, int parallelism, Executor executor) {
+        return new BlurProcessor<>(Plans.of(typeToken.getAnnotatedType()), BlurOptions.DEFAULT, parallelism, Objects.requireNonNull(executor));
+    }
+
+    /**
+     * Returns a read-only view of the list that blurs each element when it is accessed, instead of
+     * copying the whole list up front. The view reflects later changes of the list.
+     *
+     * @param input     The list to be blurred
+     * @param typeToken The {@link AnnotatedTypeToken} representing the type of the list
+     * @param <T>       The type of the elements
+     * @return A read-only blurred view of the list
+     */
+    public static <T> List<T> view(List<T> input, AnnotatedTypeToken<List<T>> typeToken) {
+        return view(input, typeToken, false);
+    }
+
+    /**
+     * Returns a read-only view of the list that blurs each element when it is accessed, see {@link #view(List, AnnotatedTypeToken)}.
+     *
+     * @param input     The list to be blurred
+     * @param typeToken The {@link AnnotatedTypeToken} representing the type of the list
+     * @param cached    Whether each element is blurred at most once and then cached by the view, for as long as the
+     *                  list holds the same instance at its index
+     * @param <T>       The type of the elements
+     * @return A read-only blurred view of the list
+     */
+    public static <T> List<T> view(List<T> input, AnnotatedTypeToken<List<T>> typeToken, boolean cached) {
+        AnnotatedType[] arguments = typeArguments(typeToken);
+        return new BlurredList<>(input, Plans.of(arguments[0]), cached);
+    }
+
+    /**
+     * Returns a read-only view of the map that blurs each key and value when it is accessed, instead of
+     * copying the whole map up front. The view reflects later changes of the map.
+     *
+     * @param input     The map to be blurred
+     * @param typeToken The {@link AnnotatedTypeToken} representing the type of the map
+     * @param <K>       The type of the keys
+     * @param <V>       The type of the values
+     * @return A read-only blurred view of the map
+     */
+    public static <K, V> Map<K, V> view(Map<K, V> input, AnnotatedTypeToken<Map<K, V>> typeToken) {
+        return view(input, typeToken, false);
+    }
+
+    /**
+     * Returns a read-only view of the map that blurs each key and value when it is accessed, see {@link #view(Map, AnnotatedTypeToken)}.
+     *
+     * @param input     The map to be blurred
+     * @param typeToken The {@link AnnotatedTypeToken} representing the type of the map
+     * @param cached    Whether each entry is blurred at most once and then cached by the view, for as long as the
+     *                  map holds the same value instance for its key
+     * @param <K>       The type of the keys
+     * @param <V>       The type of the values
+     * @return A read-only blurred view of the map
+     */
+    public static <K, V> Map<K, V> view(Map<K, V> input, AnnotatedTypeToken<Map<K, V>> typeToken, boolean cached) {
+        AnnotatedType[] arguments = typeArguments(typeToken);
+        return new BlurredMap<>(input, Plans.of(arguments[0]), Plans.of(arguments[1]), cached);
+    }
+
+    /**
+     * Registers the handler of a sensitive annotation type, for annotation types that do not declare
+     * their handler through {@link io.allurx.annotation.parser.handler.Parse} or to replace the declared one.
+     * Handlers are looked up once per annotation type, so registered handlers cost no more per call than
+     * the built-in ones. The plans compiled so far are discarded, so this is best done at startup.
+     *
+     * @param annotationType The sensitive annotation type
+     * @param inputType      The type of values the handler accepts, other values are left as is
+     * @param handler        The handler
+     * @param <T>            The type of values the handler accepts
+     * @param <A>            The sensitive annotation type
+     */
+    public static <T, A extends Annotation> void register(Class<A> annotationType, Class<T> inputType, AnnotationHandler<? super T, A, ?> handler) {
+        Handlers.register(annotationType, inputType, handler);
+    }
+
+    /**
+     * Removes the handler registered for a sensitive annotation type, see {@link #register(Class, Class, AnnotationHandler)}.
+     *
+     * @param annotationType The sensitive annotation type
+     */
+    public static void unregister(Class<? extends Annotation> annotationType) {
+        Handlers.unregister(annotationType);
+    }
+
+    /**
+     * Starts describing how to blur the fields of a class that cannot be annotated.
+     * The rules take effect once {@link BlurRules#register()} is called.
+     *
+     * @param type The class whose fields are blurred
+     * @param <T>  The type of the class
+     * @return The rules of the class
+     */
+    public static <T> BlurRules<T> rules(Class<T> type) {
+        return new BlurRules<>(type);
+    }
+
+    /**
+     * Precompiles everything needed to blur objects of the given classes: the type structure of
+     * every field reachable through {@link Cascade}, the handlers and conditions of the sensitive
+     * annotations and their regular expressions. The classes are prepared in parallel.
+     * <p>
+     * Fields are prepared by their declared types, including classes without a no-arg constructor. Objects whose
+     * runtime class is a subclass of the declared type, such as the elements of a {@code List<Dto>} whose
+     * {@code Dto} is not final, have their plans compiled on first use instead.
+     *
+     * @param types The classes of the objects that will be passed to {@link #blur(Object)}
+     */
+    public static void prepare(Class<?>... types) {
+        Plans.prepare(CASCADE);
+        Arrays.stream(types).parallel().forEach(type -> Plans.prepare(type, false));
+    }
+
+    /**
+     * Precompiles everything needed to blur values of the given types, see {@link #prepare(Class[])}.
+     * The types are prepared in parallel.
+     *
+     * @param typeTokens The {@link AnnotatedTypeToken}s that will be passed to {@link #blur(Object, AnnotatedTypeToken)}
+     */
+    public static void prepare(AnnotatedTypeToken<?>... typeTokens) {
+        Arrays.stream(typeTokens).parallel()
+                .map(AnnotatedTypeToken::getAnnotatedType)
+                .forEach(Plans::prepare);
+    }
+
+    /**
+     * Returns the annotated type arguments of the type token.
+     *
+     * @param typeToken The {@link AnnotatedTypeToken} of a parameterized type
+     * @return The annotated type arguments
+     * @throws IllegalArgumentException if the type is not parameterized
+     */
+    private static AnnotatedType[] typeArguments(AnnotatedTypeToken<?> typeToken) {
+        if (!(typeToken.getAnnotatedType() instanceof AnnotatedParameterizedType parameterizedType)) {
+            throw new IllegalArgumentException("typeToken: %s".formatted(typeToken.getAnnotatedType()));
+        }
+        return parameterizedType.getAnnotatedActualTypeArguments();
+    }
+
+    /**
+     * Writes the blurred input with the plan of the annotated type.
+     *
+     * @param input         The object to be blurred
+     * @param annotatedType The annotated type of the input
+     * @param output        The rendering writing to the output
+     * @throws IOException if the output cannot be written
+     */
+    private static void render(Object input, AnnotatedType annotatedType, Rendering output) throws IOException {
+        Plans.of(annotatedType).render(input, output, new Traversal(BlurOptions.DEFAULT));
+    }
+
+    /**
+     * Writes the blurred input as JSON in UTF-8 to the output stream with the plan of the annotated type.
+     *
+     * @param input         The object to be blurred
+     * @param annotatedType The annotated type of the input
+     * @param output        The output stream
+     * @throws IOException if the output stream cannot be written
+     */
+    private static void writeJson(Object input, AnnotatedType annotatedType, OutputStream output) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8));
+        render(input, annotatedType, Rendering.json(writer));
+        writer.flush();
+    }
+
+    /**
+     * Returns the blurred input as a string with the plan of the annotated type.
+     *
+     * @param input         The object to be blurred
+     * @param annotatedType The annotated type of the input
+     * @param format        The function creating the rendering of the format
+     * @return The blurred representation of the input
+     */
+    private static String toString(Object input, AnnotatedType annotatedType, Function<Appendable, Rendering> format) {
+        StringBuilder builder = new StringBuilder();
+        try {
+            render(input, annotatedType, format.apply(builder));
+        } catch (IOException e) {
+            // A StringBuilder never throws
+            throw new UncheckedIOException(e);
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Blurs the input with the plan of the annotated type.
+     *
+     * @param input         The object to be blurred
+     * @param annotatedType The annotated type of the input
+     * @param options       The {@link BlurOptions} of this call
+     * @param <T>           The type of the input
+     * @return A new object with its fields blurred
+     */
+    @SuppressWarnings("unchecked")
+    private static <T> T blur(T input, AnnotatedType annotatedType, BlurOptions options) {
+        Plan plan = Plans.of(annotatedType);
+        return (T) plan.apply(input, new Traversal(options));
+    }
+
 }
 
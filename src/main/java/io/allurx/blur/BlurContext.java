@@ -0,0 +1,261 @@
+/*
+ * Copyright 2024 allurx
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.allurx.blur;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Supplier;
+
+/**
+ * An immutable set of values bound for the duration of a task, which {@link io.allurx.blur.annotation.Condition conditions}
+ * and handlers can read with {@link #current()} to vary the blurring per request, for example to reveal more
+ * of a value to a privileged operator:
+ * <pre>{@code
+ * static final BlurContext.Key<Boolean> PRIVILEGED = BlurContext.Key.of("privileged");
+ *
+ * BlurContext.where(PRIVILEGED, true).run(() -> Blur.blur(order));
+ *
+ * // In a condition or a handler
+ * boolean privileged = BlurContext.current().getOrDefault(PRIVILEGED, false);
+ * }</pre>
+ * The context is bound with a {@code java.lang.ScopedValue} when the runtime provides one, and with a
+ * {@link ThreadLocal} otherwise. Either way the binding only lasts for the task, on the thread running it,
+ * including virtual threads: it is not inherited by threads the task starts, and nothing is left behind
+ * once the task returns. A task handed to another thread has to bind the context again:
+ * <pre>{@code
+ * BlurContext context = BlurContext.current();
+ * executor.execute(() -> context.run(task));
+ * }</pre>
+ *
+ * @author allurx
+ */
+public final class BlurContext {
+
+    /**
+     * The context of code running outside of any binding.
+     */
+    public static final BlurContext EMPTY = new BlurContext(Map.of());
+
+    /**
+     * {@code ScopedValue.orElse} bound to the scoped value holding the context, or {@code null} if the runtime
+     * has no scoped values.
+     */
+    private static final MethodHandle CURRENT;
+
+    /**
+     * {@code ScopedValue.where} bound to the scoped value holding the context.
+     */
+    private static final MethodHandle WHERE;
+
+    /**
+     * {@code ScopedValue.Carrier.run}.
+     */
+    private static final MethodHandle RUN;
+
+    /**
+     * Holds the context when the runtime has no scoped values.
+     */
+    private static final ThreadLocal<BlurContext> FALLBACK;
+
+    static {
+        MethodHandle current = null, where = null, run = null;
+        try {
+            // ScopedValue is a preview API up to JDK 24, so it is looked up rather than linked against
+            Class<?> scopedValue = Class.forName("java.lang.ScopedValue");
+            Class<?> carrier = Class.forName("java.lang.ScopedValue$Carrier");
+            MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+            Object key = lookup.findStatic(scopedValue, "newInstance", MethodType.methodType(scopedValue)).invoke();
+            current = lookup.findVirtual(scopedValue, "orElse", MethodType.methodType(Object.class, Object.class))
+                    .bindTo(key);
+            where = MethodHandles.insertArguments(lookup.findStatic(scopedValue, "where", MethodType.methodType(carrier, scopedValue, Object.class)), 0, key)
+                    .asType(MethodType.methodType(Object.class, Object.class));
+            run = lookup.findVirtual(carrier, "run", MethodType.methodType(void.class, Runnable.class))
+                    .asType(MethodType.methodType(void.class, Object.class, Runnable.class));
+        } catch (Throwable e) {
+            current = where = run = null;
+        }
+        CURRENT = current;
+        WHERE = where;
+        RUN = run;
+        FALLBACK = current == null ? new ThreadLocal<>() : null;
+    }
+
+    private final Map<Key<?>, Object> values;
+
+    private BlurContext(Map<Key<?>, Object> values) {
+        this.values = values;
+    }
+
+    /**
+     * Returns the context bound to the current thread.
+     *
+     * @return The context, or {@link #EMPTY} outside of any binding
+     */
+    public static BlurContext current() {
+        if (CURRENT != null) {
+            try {
+                return (BlurContext) (Object) CURRENT.invokeExact((Object) EMPTY);
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new IllegalStateException(e);
+            }
+        }
+        BlurContext context = FALLBACK.get();
+        return context == null ? EMPTY : context;
+    }
+
+    /**
+     * Returns the {@link #current() current} context with a value added or replaced, which takes effect once
+     * it is bound with {@link #run(Runnable)} or {@link #call(Supplier)}.
+     *
+     * @param key   The key
+     * @param value The value
+     * @param <T>   The type of the value
+     * @return The new context
+     */
+    public static <T> BlurContext where(Key<T> key, T value) {
+        return current().with(key, value);
+    }
+
+    /**
+     * Returns a copy of this context with a value added or replaced.
+     *
+     * @param key   The key
+     * @param value The value
+     * @param <T>   The type of the value
+     * @return The new context
+     */
+    public <T> BlurContext with(Key<T> key, T value) {
+        Objects.requireNonNull(key);
+        Objects.requireNonNull(value);
+        Map<Key<?>, Object> copy = new HashMap<>(values);
+        copy.put(key, value);
+        return new BlurContext(Map.copyOf(copy));
+    }
+
+    /**
+     * Returns the value of the key.
+     *
+     * @param key The key
+     * @param <T> The type of the value
+     * @return The value, or {@code null} if this context has none
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T get(Key<T> key) {
+        return (T) values.get(key);
+    }
+
+    /**
+     * Returns the value of the key, or a default value.
+     *
+     * @param key          The key
+     * @param defaultValue The value returned if this context has none
+     * @param <T>          The type of the value
+     * @return The value, or the default value
+     */
+    public <T> T getOrDefault(Key<T> key, T defaultValue) {
+        T value = get(key);
+        return value == null ? defaultValue : value;
+    }
+
+    /**
+     * Runs a task with this context bound to the current thread, the previous context is bound again once
+     * the task returns.
+     *
+     * @param task The task
+     */
+    public void run(Runnable task) {
+        Objects.requireNonNull(task);
+        if (WHERE != null) {
+            try {
+                RUN.invokeExact((Object) WHERE.invokeExact((Object) this), task);
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new IllegalStateException(e);
+            }
+            return;
+        }
+        BlurContext previous = FALLBACK.get();
+        FALLBACK.set(this);
+        try {
+            task.run();
+        } finally {
+            if (previous == null) {
+                FALLBACK.remove();
+            } else {
+                FALLBACK.set(previous);
+            }
+        }
+    }
+
+    /**
+     * Calls a task with this context bound to the current thread, the previous context is bound again once
+     * the task returns.
+     *
+     * @param task The task
+     * @param <R>  The type of the result
+     * @return The result of the task
+     */
+    @SuppressWarnings("unchecked")
+    public <R> R call(Supplier<? extends R> task) {
+        Objects.requireNonNull(task);
+        Object[] result = new Object[1];
+        run(() -> result[0] = task.get());
+        return (R) result[0];
+    }
+
+    @Override
+    public String toString() {
+        return "BlurContext" + values;
+    }
+
+    /**
+     * The key of a value of a {@link BlurContext}, compared by identity.
+     *
+     * @param <T> The type of the value
+     */
+    public static final class Key<T> {
+
+        private final String name;
+
+        private Key(String name) {
+            this.name = name;
+        }
+
+        /**
+         * Creates a key, which is usually kept in a constant.
+         *
+         * @param name The name of the key, only used by {@link #toString()}
+         * @param <T>  The type of the value
+         * @return The key
+         */
+        public static <T> Key<T> of(String name) {
+            return new Key<>(Objects.requireNonNull(name));
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+
+}
@@ -0,0 +1,222 @@
+/*
+ * Copyright 2024 allurx
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.allurx.blur;
+
+import java.time.Duration;
+import java.util.Objects;
+
+/**
+ * Options controlling how a single call to {@link Blur} traverses the input.
+ *
+ * @author allurx
+ * @see Blur#blur(Object, BlurOptions)
+ */
+public final class BlurOptions {
+
+    /**
+     * The options used when none are specified: every object on a path to a blurred value,
+     * and every container along it, is copied.
+     */
+    public static final BlurOptions DEFAULT = builder().build();
+
+    private final boolean copyOnWrite;
+    private final long maxElements;
+    private final int maxDepth;
+    private final int maxStringLength;
+    private final Duration timeout;
+    private final BudgetPolicy budgetPolicy;
+
+    private BlurOptions(Builder builder) {
+        this.copyOnWrite = builder.copyOnWrite;
+        this.maxElements = builder.maxElements;
+        this.maxDepth = builder.maxDepth;
+        this.maxStringLength = builder.maxStringLength;
+        this.timeout = builder.timeout;
+        this.budgetPolicy = builder.budgetPolicy;
+    }
+
+    /**
+     * Creates a new {@link Builder}.
+     *
+     * @return A builder initialized with the default options
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Returns whether objects, collections and maps whose contents came out unchanged are returned
+     * by reference instead of being copied.
+     *
+     * @return {@code true} if copy-on-write traversal is enabled
+     */
+    public boolean copyOnWrite() {
+        return copyOnWrite;
+    }
+
+    /**
+     * Returns the maximum number of elements and fields visited in one call.
+     *
+     * @return The element budget
+     */
+    public long maxElements() {
+        return maxElements;
+    }
+
+    /**
+     * Returns the maximum nesting depth of objects and containers visited in one call.
+     *
+     * @return The depth budget
+     */
+    public int maxDepth() {
+        return maxDepth;
+    }
+
+    /**
+     * Returns the maximum length of a character sequence passed to a handler.
+     *
+     * @return The string length budget
+     */
+    public int maxStringLength() {
+        return maxStringLength;
+    }
+
+    /**
+     * Returns the maximum time one call may take, or {@code null} if there is no deadline.
+     *
+     * @return The time budget
+     */
+    public Duration timeout() {
+        return timeout;
+    }
+
+    /**
+     * Returns what happens when a budget is exceeded.
+     *
+     * @return The budget policy
+     */
+    public BudgetPolicy budgetPolicy() {
+        return budgetPolicy;
+    }
+
+    /**
+     * Builder for {@link BlurOptions}.
+     */
+    public static final class Builder {
+
+        private boolean copyOnWrite;
+        private long maxElements = Long.MAX_VALUE;
+        private int maxDepth = Integer.MAX_VALUE;
+        private int maxStringLength = Integer.MAX_VALUE;
+        private Duration timeout;
+        private BudgetPolicy budgetPolicy = BudgetPolicy.FAIL;
+
+        private Builder() {
+        }
+
+        /**
+         * Enables or disables copy-on-write traversal. When enabled, new instances are only created along
+         * the paths leading to values that actually changed, for example when a {@link io.allurx.blur.annotation.Condition}
+         * decided not to blur a value its container is shared with the input.
+         *
+         * @param copyOnWrite Whether copy-on-write traversal is enabled, defaults to {@code false}
+         * @return This builder
+         */
+        public Builder copyOnWrite(boolean copyOnWrite) {
+            this.copyOnWrite = copyOnWrite;
+            return this;
+        }
+
+        /**
+         * Sets the maximum number of elements of arrays, collections and maps and fields of objects
+         * visited in one call.
+         *
+         * @param maxElements The element budget, unlimited by default
+         * @return This builder
+         * @throws IllegalArgumentException if the budget is negative
+         */
+        public Builder maxElements(long maxElements) {
+            if (maxElements < 0) {
+                throw new IllegalArgumentException("maxElements: %s".formatted(maxElements));
+            }
+            this.maxElements = maxElements;
+            return this;
+        }
+
+        /**
+         * Sets the maximum nesting depth of objects and containers visited in one call.
+         *
+         * @param maxDepth The depth budget, unlimited by default
+         * @return This builder
+         * @throws IllegalArgumentException if the budget is negative
+         */
+        public Builder maxDepth(int maxDepth) {
+            if (maxDepth < 0) {
+                throw new IllegalArgumentException("maxDepth: %s".formatted(maxDepth));
+            }
+            this.maxDepth = maxDepth;
+            return this;
+        }
+
+        /**
+         * Sets the maximum length of a character sequence passed to a handler, which bounds the input
+         * of the regular expressions declared by the sensitive annotations.
+         *
+         * @param maxStringLength The string length budget, unlimited by default
+         * @return This builder
+         * @throws IllegalArgumentException if the budget is negative
+         */
+        public Builder maxStringLength(int maxStringLength) {
+            if (maxStringLength < 0) {
+                throw new IllegalArgumentException("maxStringLength: %s".formatted(maxStringLength));
+            }
+            this.maxStringLength = maxStringLength;
+            return this;
+        }
+
+        /**
+         * Sets the maximum time one call may take.
+         *
+         * @param timeout The time budget, or {@code null} for no deadline, which is the default
+         * @return This builder
+         */
+        public Builder timeout(Duration timeout) {
+            this.timeout = timeout;
+            return this;
+        }
+
+        /**
+         * Sets what happens when a budget is exceeded.
+         *
+         * @param budgetPolicy The budget policy, defaults to {@link BudgetPolicy#FAIL}
+         * @return This builder
+         */
+        public Builder budgetPolicy(BudgetPolicy budgetPolicy) {
+            this.budgetPolicy = Objects.requireNonNull(budgetPolicy);
+            return this;
+        }
+
+        /**
+         * Builds the options.
+         *
+         * @return The options
+         */
+        public BlurOptions build() {
+            return new BlurOptions(this);
+        }
+    }
+
+}
@@ -0,0 +1,276 @@
+/*
+ * Copyright 2024 allurx
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.allurx.blur;
+
+import io.allurx.blur.annotation.Condition;
+import io.allurx.blur.plan.Policies;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Field;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.function.Consumer;
+
+/**
+ * A registry of {@link BlurPolicy policies} that override the attributes of sensitive annotations at runtime,
+ * by annotation type or by field, without redeploying. Policies of fields take precedence over policies of
+ * annotation types. Changes are published atomically and take effect for the next value blurred.
+ * <p>
+ * Policies can also be loaded from a properties file, where each key names an annotation type or a field,
+ * followed by the attribute to override:
+ * <pre>
+ * io.allurx.blur.annotation.PhoneNumber.endOffset=2
+ * com.example.User#email.placeholder=#
+ * com.example.User#email.condition=com.example.ForeignRegion
+ * </pre>
+ *
+ * @author allurx
+ * @see BlurPolicy
+ */
+public final class BlurPolicies {
+
+    private BlurPolicies() {
+    }
+
+    /**
+     * Registers the policy for every annotation of the type, replacing the previous one.
+     *
+     * @param annotationType The type of the sensitive annotations
+     * @param policy         The policy
+     */
+    public static void put(Class<? extends Annotation> annotationType, BlurPolicy policy) {
+        Policies.put(annotationType, policy);
+    }
+
+    /**
+     * Registers the policy for every sensitive annotation of the field, replacing the previous one.
+     * This includes the annotations on the type arguments of the field, such as {@code List<@Email String>}.
+     *
+     * @param field  The field
+     * @param policy The policy
+     */
+    public static void put(Field field, BlurPolicy policy) {
+        Policies.put(field, policy);
+    }
+
+    /**
+     * Removes the policy of the annotation type.
+     *
+     * @param annotationType The type of the sensitive annotations
+     */
+    public static void remove(Class<? extends Annotation> annotationType) {
+        Policies.remove(annotationType);
+    }
+
+    /**
+     * Removes the policy of the field.
+     *
+     * @param field The field
+     */
+    public static void remove(Field field) {
+        Policies.remove(field);
+    }
+
+    /**
+     * Removes all policies, so that the attributes declared by the annotations take effect again.
+     */
+    public static void clear() {
+        Policies.replace(Map.of(), Map.of());
+    }
+
+    /**
+     * Replaces all policies with the ones of the properties file at once.
+     *
+     * @param file The properties file
+     * @throws IOException              if the file cannot be read
+     * @throws IllegalArgumentException if a key or value of the file is invalid
+     */
+    public static void load(Path file) throws IOException {
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(file)) {
+            properties.load(reader);
+        }
+        Map<Class<? extends Annotation>, BlurPolicy.Builder> types = new HashMap<>();
+        Map<Field, BlurPolicy.Builder> fields = new HashMap<>();
+        for (String key : properties.stringPropertyNames()) {
+            int dot = key.lastIndexOf('.');
+            int hash = key.indexOf('#');
+            // The class, the field and the attribute must be present and in this order
+            if (dot <= 0 || dot == key.length() - 1 || hash == 0 || hash > 0 && hash + 1 >= dot) {
+                throw new IllegalArgumentException("key: %s".formatted(key));
+            }
+            BlurPolicy.Builder builder = hash < 0
+                    ? types.computeIfAbsent(load(key.substring(0, dot), Annotation.class, key), t -> BlurPolicy.builder())
+                    : fields.computeIfAbsent(field(key.substring(0, hash), key.substring(hash + 1, dot), key), f -> BlurPolicy.builder());
+            attribute(builder, key, key.substring(dot + 1), properties.getProperty(key).strip());
+        }
+        Map<Class<? extends Annotation>, BlurPolicy> typePolicies = new HashMap<>();
+        Map<Field, BlurPolicy> fieldPolicies = new HashMap<>();
+        types.forEach((type, builder) -> typePolicies.put(type, builder.build()));
+        fields.forEach((field, builder) -> fieldPolicies.put(field, builder.build()));
+        Policies.replace(typePolicies, fieldPolicies);
+    }
+
+    /**
+     * Loads the policies of the properties file, see {@link #load(Path)}, and reloads them on a daemon
+     * thread whenever the file is created or modified. A file that fails to load leaves the previous
+     * policies in effect. The file should be replaced atomically, for example by moving a new file over
+     * it, since a file that is still being written may be loaded half-written.
+     *
+     * @param file         The properties file
+     * @param errorHandler Receives the exceptions of failed reloads, exceptions it throws are ignored
+     * @return A handle that stops watching the file when closed
+     * @throws IOException              if the file cannot be read or watched
+     * @throws IllegalArgumentException if a key or value of the file is invalid
+     */
+    public static Closeable watch(Path file, Consumer<? super Exception> errorHandler) throws IOException {
+        Path path = file.toAbsolutePath();
+        load(path);
+        WatchService watchService = path.getFileSystem().newWatchService();
+        path.getParent().register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        Thread.ofPlatform().name("blur-policies-" + path.getFileName()).daemon().start(() -> {
+            try {
+                while (true) {
+                    WatchKey watchKey = watchService.take();
+                    boolean changed = false;
+                    for (WatchEvent<?> event : watchKey.pollEvents()) {
+                        changed |= path.getFileName().equals(event.context());
+                    }
+                    watchKey.reset();
+                    if (changed) {
+                        try {
+                            load(path);
+                        } catch (IOException | RuntimeException e) {
+                            report(errorHandler, e);
+                        }
+                    }
+                }
+            } catch (ClosedWatchServiceException | InterruptedException e) {
+                // Stopped watching
+            }
+        });
+        return watchService;
+    }
+
+    /**
+     * Passes the exception of a failed reload to the error handler. An exception thrown by the error handler
+     * is ignored, so that the file is still reloaded on its next change.
+     *
+     * @param errorHandler Receives the exceptions of failed reloads
+     * @param e            The exception of the failed reload
+     */
+    private static void report(Consumer<? super Exception> errorHandler, Exception e) {
+        try {
+            errorHandler.accept(e);
+        } catch (RuntimeException ignored) {
+            // The error handler failed, keep watching
+        }
+    }
+
+    /**
+     * Sets the attribute of the policy from its value in the properties file.
+     *
+     * @param builder   The builder of the policy
+     * @param key       The key in the properties file
+     * @param attribute The name of the attribute
+     * @param value     The value of the attribute
+     * @throws IllegalArgumentException if the attribute or its value is invalid
+     */
+    @SuppressWarnings("unchecked")
+    private static void attribute(BlurPolicy.Builder builder, String key, String attribute, String value) {
+        try {
+            switch (attribute) {
+                case "startOffset" -> builder.startOffset(Integer.parseInt(value));
+                case "endOffset" -> builder.endOffset(Integer.parseInt(value));
+                case "regexp" -> builder.regexp(value);
+                case "placeholder" -> {
+                    if (value.length() != 1) {
+                        throw new IllegalArgumentException("placeholder: %s".formatted(value));
+                    }
+                    builder.placeholder(value.charAt(0));
+                }
+                case "condition" -> builder.condition((Class<? extends Condition<?>>) load(value, Condition.class, key));
+                default -> throw new IllegalArgumentException("key: %s".formatted(key));
+            }
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("key: %s, value: %s".formatted(key, value), e);
+        }
+    }
+
+    /**
+     * Returns the field named in the properties file.
+     *
+     * @param className The name of the class declaring the field
+     * @param fieldName The name of the field
+     * @param key       The key in the properties file
+     * @return The field
+     * @throws IllegalArgumentException if the field does not exist
+     */
+    private static Field field(String className, String fieldName, String key) {
+        try {
+            return load(className, key).getDeclaredField(fieldName);
+        } catch (NoSuchFieldException e) {
+            throw new IllegalArgumentException("key: %s".formatted(key), e);
+        }
+    }
+
+    /**
+     * Loads the class named in the properties file, which must be a subtype of the given type.
+     *
+     * @param className The name of the class
+     * @param type      The type the class must be a subtype of
+     * @param key       The key in the properties file
+     * @param <T>       The type the class must be a subtype of
+     * @return The class
+     * @throws IllegalArgumentException if the class does not exist or is not a subtype of the type
+     */
+    private static <T> Class<? extends T> load(String className, Class<T> type, String key) {
+        Class<?> loaded = load(className, key);
+        if (!type.isAssignableFrom(loaded)) {
+            throw new IllegalArgumentException("key: %s".formatted(key));
+        }
+        return loaded.asSubclass(type);
+    }
+
+    /**
+     * Loads the class named in the properties file.
+     *
+     * @param className The name of the class
+     * @param key       The key in the properties file
+     * @return The class
+     * @throws IllegalArgumentException if the class does not exist
+     */
+    private static Class<?> load(String className, String key) {
+        ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+        try {
+            return Class.forName(className, false, classLoader != null ? classLoader : BlurPolicies.class.getClassLoader());
+        } catch (ClassNotFoundException e) {
+            throw new IllegalArgumentException("key: %s".formatted(key), e);
+        }
+    }
+
+}
@@ -0,0 +1,180 @@
+/*
+ * Copyright 2024 allurx
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.allurx.blur;
+
+import io.allurx.blur.annotation.Condition;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Overrides of the attributes of sensitive annotations, registered at runtime through {@link BlurPolicies}.
+ * Only the attributes that were set are overridden, the others keep the values declared by the annotation.
+ * Attributes that the annotation does not declare, or declares with another type, are ignored.
+ *
+ * @author allurx
+ * @see BlurPolicies
+ */
+public final class BlurPolicy {
+
+    private final Map<String, Object> attributes;
+
+    private BlurPolicy(Builder builder) {
+        this.attributes = Collections.unmodifiableMap(new LinkedHashMap<>(builder.attributes));
+    }
+
+    /**
+     * Creates a new {@link Builder}.
+     *
+     * @return A builder that overrides no attributes
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Returns the overridden attributes by name.
+     *
+     * @return An unmodifiable map from attribute names to their values
+     */
+    public Map<String, Object> attributes() {
+        return attributes;
+    }
+
+    /**
+     * Returns a policy with the attributes of this policy, overridden by the attributes of the other one.
+     *
+     * @param other The policy taking precedence
+     * @return The merged policy
+     */
+    public BlurPolicy merge(BlurPolicy other) {
+        Builder builder = new Builder();
+        builder.attributes.putAll(attributes);
+        builder.attributes.putAll(other.attributes);
+        return builder.build();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof BlurPolicy policy && attributes.equals(policy.attributes);
+    }
+
+    @Override
+    public int hashCode() {
+        return attributes.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return "BlurPolicy" + attributes;
+    }
+
+    /**
+     * Builder for {@link BlurPolicy}.
+     */
+    public static final class Builder {
+
+        private final Map<String, Object> attributes = new LinkedHashMap<>();
+
+        private Builder() {
+        }
+
+        /**
+         * Overrides the starting offset of sensitive information.
+         *
+         * @param startOffset The starting offset
+         * @return This builder
+         * @throws IllegalArgumentException if the offset is negative
+         */
+        public Builder startOffset(int startOffset) {
+            if (startOffset < 0) {
+                throw new IllegalArgumentException("startOffset: %s".formatted(startOffset));
+            }
+            attributes.put("startOffset", startOffset);
+            return this;
+        }
+
+        /**
+         * Overrides the ending offset of sensitive information.
+         *
+         * @param endOffset The ending offset
+         * @return This builder
+         * @throws IllegalArgumentException if the offset is negative
+         */
+        public Builder endOffset(int endOffset) {
+            if (endOffset < 0) {
+                throw new IllegalArgumentException("endOffset: %s".formatted(endOffset));
+            }
+            attributes.put("endOffset", endOffset);
+            return this;
+        }
+
+        /**
+         * Overrides the regular expression matching sensitive information. An empty expression
+         * makes the offsets take effect. The expression is compiled here, so that an invalid one
+         * never reaches the values being blurred.
+         *
+         * @param regexp The regular expression
+         * @return This builder
+         * @throws IllegalArgumentException if the regular expression is invalid
+         */
+        public Builder regexp(String regexp) {
+            try {
+                Pattern.compile(regexp);
+            } catch (PatternSyntaxException e) {
+                throw new IllegalArgumentException("regexp: %s".formatted(regexp), e);
+            }
+            attributes.put("regexp", regexp);
+            return this;
+        }
+
+        /**
+         * Overrides the character replacing sensitive information.
+         *
+         * @param placeholder The placeholder character
+         * @return This builder
+         */
+        public Builder placeholder(char placeholder) {
+            attributes.put("placeholder", placeholder);
+            return this;
+        }
+
+        /**
+         * Overrides the condition under which the input is blurred.
+         *
+         * @param condition The condition class
+         * @return This builder
+         */
+        public Builder condition(Class<? extends Condition<?>> condition) {
+            attributes.put("condition", Objects.requireNonNull(condition));
+            return this;
+        }
+
+        /**
+         * Builds the policy.
+         *
+         * @return The policy
+         */
+        public BlurPolicy build() {
+            return new BlurPolicy(this);
+        }
+    }
+
+}
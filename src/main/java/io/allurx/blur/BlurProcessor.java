@@ -0,0 +1,367 @@
+/*
+ * Copyright 2024 allurx
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.allurx.blur;
+
+import io.allurx.blur.plan.Plan;
+import io.allurx.blur.plan.Traversal;
+
+import java.util.ArrayDeque;
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A {@link Flow.Processor} that blurs each element with a compiled {@link Plan} and publishes the blurred
+ * elements in the order they were received, to a single subscriber.
+ * <p>
+ * Elements are only requested from upstream as the subscriber requests them, so the processor never buffers
+ * more than the subscriber asked for. Without an {@link Executor} the elements are blurred on the thread
+ * delivering them, otherwise up to {@code parallelism} elements are requested ahead and blurred concurrently
+ * on the executor, and published in order. Elements blurred on the executor see the {@link BlurContext} of the
+ * thread that delivered them. An element that fails to be blurred, or is blurred to {@code null}, cancels the
+ * upstream subscription and fails the subscriber, and an upstream error is published after the elements
+ * received before it.
+ *
+ * @param <T> The type of the elements
+ * @author allurx
+ * @see Blur#processor(io.allurx.kit.base.reflection.AnnotatedTypeToken, int, Executor)
+ */
+public final class BlurProcessor<T> implements Flow.Processor<T, T> {
+
+    private final Plan plan;
+    private final BlurOptions options;
+    private final int parallelism;
+    private final Executor executor;
+
+    /**
+     * Guards the state below, the subscriber is only called by the thread draining it.
+     */
+    private final Object lock = new Object();
+    private final AtomicInteger wip = new AtomicInteger();
+    private final ArrayDeque<Slot<T>> pending = new ArrayDeque<>();
+    private final LongAdder processed = new LongAdder();
+    private Flow.Subscription upstream;
+    private Flow.Subscriber<? super T> downstream;
+    private boolean subscribed;
+    private Throwable requestError;
+    private long requested;
+    private long upstreamRequested;
+    private int maxQueueDepth;
+    private boolean upstreamDone;
+    private Throwable upstreamError;
+    private boolean cancelled;
+    private boolean terminated;
+
+    /**
+     * Creates a processor.
+     *
+     * @param plan        The plan blurring the elements
+     * @param options     The {@link BlurOptions} applied to each element
+     * @param parallelism The maximum number of elements blurred concurrently on the executor
+     * @param executor    The executor blurring the elements, or {@code null} to blur them on the delivering thread
+     * @throws IllegalArgumentException if the parallelism is not positive
+     */
+    BlurProcessor(Plan plan, BlurOptions options, int parallelism, Executor executor) {
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("parallelism: %s".formatted(parallelism));
+        }
+        this.plan = plan;
+        this.options = options;
+        this.parallelism = parallelism;
+        this.executor = executor;
+    }
+
+    /**
+     * Returns the number of elements received and not yet published, including the ones being blurred.
+     *
+     * @return The current queue depth
+     */
+    public int queueDepth() {
+        synchronized (lock) {
+            return pending.size();
+        }
+    }
+
+    /**
+     * Returns the highest number of elements received and not yet published so far.
+     *
+     * @return The maximum queue depth
+     */
+    public int maxQueueDepth() {
+        synchronized (lock) {
+            return maxQueueDepth;
+        }
+    }
+
+    /**
+     * Returns the number of elements published so far.
+     *
+     * @return The processed count
+     */
+    public long processedCount() {
+        return processed.sum();
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super T> subscriber) {
+        Objects.requireNonNull(subscriber);
+        boolean rejected;
+        synchronized (lock) {
+            rejected = downstream != null;
+            if (!rejected) {
+                downstream = subscriber;
+            }
+        }
+        if (rejected) {
+            subscriber.onSubscribe(new Flow.Subscription() {
+                @Override
+                public void request(long n) {
+                }
+
+                @Override
+                public void cancel() {
+                }
+            });
+            subscriber.onError(new IllegalStateException("BlurProcessor supports a single subscriber"));
+            return;
+        }
+        subscriber.onSubscribe(new Subscription());
+        synchronized (lock) {
+            subscribed = true;
+        }
+        drain();
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        Objects.requireNonNull(subscription);
+        synchronized (lock) {
+            if (upstream == null && !cancelled) {
+                upstream = subscription;
+                subscription = null;
+            }
+        }
+        if (subscription != null) {
+            subscription.cancel();
+            return;
+        }
+        drain();
+    }
+
+    @Override
+    public void onNext(T item) {
+        Objects.requireNonNull(item);
+        Slot<T> slot = new Slot<>(item);
+        synchronized (lock) {
+            if (cancelled || terminated) {
+                return;
+            }
+            upstreamRequested--;
+            pending.add(slot);
+            maxQueueDepth = Math.max(maxQueueDepth, pending.size());
+        }
+        if (executor == null) {
+            blur(slot);
+        } else {
+            // The element is blurred with the context of the thread delivering it, as without an executor
+            BlurContext context = BlurContext.current();
+            try {
+                executor.execute(() -> {
+                    context.run(() -> blur(slot));
+                    drain();
+                });
+            } catch (RuntimeException e) {
+                slot.complete(null, e);
+            }
+        }
+        drain();
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        Objects.requireNonNull(throwable);
+        synchronized (lock) {
+            upstreamError = throwable;
+            upstreamDone = true;
+        }
+        drain();
+    }
+
+    @Override
+    public void onComplete() {
+        synchronized (lock) {
+            upstreamDone = true;
+        }
+        drain();
+    }
+
+    /**
+     * Blurs the element of the slot. An element blurred to {@code null}, which cannot be published, fails the
+     * slot with a {@link NullPointerException}.
+     *
+     * @param slot The slot
+     */
+    @SuppressWarnings("unchecked")
+    private void blur(Slot<T> slot) {
+        try {
+            T result = (T) plan.apply(slot.item, new Traversal(options));
+            slot.complete(result, result == null ? new NullPointerException("%s was blurred to null".formatted(slot.item.getClass().getName())) : null);
+        } catch (RuntimeException | Error e) {
+            slot.complete(null, e);
+        }
+    }
+
+    /**
+     * Publishes the blurred elements at the head of the queue while the subscriber requests them, then
+     * requests more elements from upstream. Only one thread drains at a time, the others leave their
+     * work to it.
+     */
+    private void drain() {
+        if (wip.getAndIncrement() != 0) {
+            return;
+        }
+        int missed = 1;
+        do {
+            Flow.Subscriber<? super T> subscriber;
+            Flow.Subscription subscription;
+            long request = 0;
+            Throwable failure = null;
+            boolean complete = false;
+            while (true) {
+                Slot<T> head;
+                synchronized (lock) {
+                    subscriber = subscribed ? downstream : null;
+                    if (!cancelled && !terminated && subscriber != null && requestError != null) {
+                        failure = requestError;
+                        terminated = true;
+                        pending.clear();
+                        break;
+                    }
+                    head = pending.peek();
+                    if (cancelled || terminated || subscriber == null || head == null || !head.done() || (requested == 0 && head.error == null)) {
+                        break;
+                    }
+                    pending.poll();
+                    if (head.error != null) {
+                        failure = head.error;
+                        terminated = true;
+                        pending.clear();
+                        break;
+                    }
+                    if (requested != Long.MAX_VALUE) {
+                        requested--;
+                    }
+                }
+                processed.increment();
+                subscriber.onNext(head.result);
+            }
+            synchronized (lock) {
+                subscription = upstream;
+                if (failure == null && !cancelled && !terminated && subscriber != null && upstreamDone && pending.isEmpty()) {
+                    terminated = true;
+                    failure = upstreamError;
+                    complete = failure == null;
+                } else if (failure == null && !cancelled && !terminated && subscription != null && !upstreamDone) {
+                    // Elements blurred on the delivering thread are published right away and never held
+                    long limit = executor == null ? requested : Math.min(requested, parallelism);
+                    long window = limit - pending.size() - upstreamRequested;
+                    if (window > 0) {
+                        upstreamRequested += window;
+                        request = window;
+                    }
+                }
+            }
+            if (complete) {
+                subscriber.onComplete();
+            } else if (failure != null) {
+                if (subscription != null && !upstreamDone) {
+                    subscription.cancel();
+                }
+                subscriber.onError(failure);
+            } else if (request > 0) {
+                subscription.request(request);
+            }
+            missed = wip.addAndGet(-missed);
+        } while (missed != 0);
+    }
+
+    /**
+     * The subscription of the subscriber.
+     */
+    private final class Subscription implements Flow.Subscription {
+
+        @Override
+        public void request(long n) {
+            synchronized (lock) {
+                if (n <= 0) {
+                    requestError = new IllegalArgumentException("non-positive request: %s".formatted(n));
+                } else {
+                    requested = requested + n < 0 ? Long.MAX_VALUE : requested + n;
+                }
+            }
+            drain();
+        }
+
+        @Override
+        public void cancel() {
+            Flow.Subscription subscription;
+            synchronized (lock) {
+                if (cancelled) {
+                    return;
+                }
+                cancelled = true;
+                pending.clear();
+                subscription = upstream;
+            }
+            if (subscription != null) {
+                subscription.cancel();
+            }
+        }
+    }
+
+    /**
+     * An element received from upstream, in the order of the queue.
+     *
+     * @param <T> The type of the elements
+     */
+    private static final class Slot<T> {
+
+        private final T item;
+        private volatile boolean done;
+        private T result;
+        private Throwable error;
+
+        private Slot(T item) {
+            this.item = item;
+        }
+
+        /**
+         * Completes the slot, the write of {@link #done} publishes the result to the draining thread.
+         */
+        private void complete(T result, Throwable error) {
+            this.result = result;
+            this.error = error;
+            this.done = true;
+        }
+
+        private boolean done() {
+            return done;
+        }
+    }
+
+}
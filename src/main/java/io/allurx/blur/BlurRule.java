@@ -0,0 +1,210 @@
+/*
+ * Copyright 2024 allurx
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.allurx.blur;
+
+import io.allurx.annotation.parser.handler.AnnotationHandler;
+import io.allurx.annotation.parser.handler.Parse;
+import io.allurx.blur.annotation.BankCardNumber;
+import io.allurx.blur.annotation.Condition;
+import io.allurx.blur.annotation.Email;
+import io.allurx.blur.annotation.IdCardNumber;
+import io.allurx.blur.annotation.Name;
+import io.allurx.blur.annotation.Password;
+import io.allurx.blur.annotation.PhoneNumber;
+import io.allurx.blur.annotation.Strings;
+import io.allurx.blur.plan.Annotations;
+import io.allurx.blur.plan.Handlers;
+
+import java.lang.annotation.Annotation;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * A sensitive annotation described in code instead of being declared on a field, used by {@link BlurRules}
+ * to blur classes that cannot be annotated. Each rule is immutable, every method setting an attribute
+ * returns a new rule.
+ *
+ * @author allurx
+ * @see Blur#rules(Class)
+ */
+public final class BlurRule {
+
+    private final Class<? extends Annotation> annotationType;
+    private final Map<String, Object> attributes;
+
+    private BlurRule(Class<? extends Annotation> annotationType, Map<String, Object> attributes) {
+        this.annotationType = annotationType;
+        this.attributes = attributes;
+    }
+
+    /**
+     * Creates a rule for the sensitive annotation type, with the default values of its attributes.
+     *
+     * @param annotationType The sensitive annotation type, annotated with {@link Parse} or registered through
+     *                       {@link Blur#register(Class, Class, AnnotationHandler)}
+     * @return The rule
+     * @throws IllegalArgumentException if the annotation type has no handler
+     */
+    public static BlurRule of(Class<? extends Annotation> annotationType) {
+        if (!Handlers.supports(annotationType)) {
+            throw new IllegalArgumentException("annotationType: %s".formatted(annotationType.getName()));
+        }
+        return new BlurRule(annotationType, Map.of());
+    }
+
+    /**
+     * Creates a rule blurring bank card numbers, see {@link BankCardNumber}.
+     *
+     * @return The rule
+     */
+    public static BlurRule bankCardNumber() {
+        return of(BankCardNumber.class);
+    }
+
+    /**
+     * Creates a rule blurring email addresses, see {@link Email}.
+     *
+     * @return The rule
+     */
+    public static BlurRule email() {
+        return of(Email.class);
+    }
+
+    /**
+     * Creates a rule blurring ID card numbers, see {@link IdCardNumber}.
+     *
+     * @return The rule
+     */
+    public static BlurRule idCardNumber() {
+        return of(IdCardNumber.class);
+    }
+
+    /**
+     * Creates a rule blurring names, see {@link Name}.
+     *
+     * @return The rule
+     */
+    public static BlurRule name() {
+        return of(Name.class);
+    }
+
+    /**
+     * Creates a rule blurring passwords, see {@link Password}.
+     *
+     * @return The rule
+     */
+    public static BlurRule password() {
+        return of(Password.class);
+    }
+
+    /**
+     * Creates a rule blurring phone numbers, see {@link PhoneNumber}.
+     *
+     * @return The rule
+     */
+    public static BlurRule phoneNumber() {
+        return of(PhoneNumber.class);
+    }
+
+    /**
+     * Creates a rule blurring strings, see {@link Strings}.
+     *
+     * @return The rule
+     */
+    public static BlurRule strings() {
+        return of(Strings.class);
+    }
+
+    /**
+     * Sets the starting offset of sensitive information.
+     *
+     * @param startOffset The starting offset
+     * @return A new rule with the attribute set
+     */
+    public BlurRule startOffset(int startOffset) {
+        return attribute("startOffset", startOffset);
+    }
+
+    /**
+     * Sets the ending offset of sensitive information.
+     *
+     * @param endOffset The ending offset
+     * @return A new rule with the attribute set
+     */
+    public BlurRule endOffset(int endOffset) {
+        return attribute("endOffset", endOffset);
+    }
+
+    /**
+     * Sets the regular expression matching sensitive information.
+     *
+     * @param regexp The regular expression
+     * @return A new rule with the attribute set
+     */
+    public BlurRule regexp(String regexp) {
+        return attribute("regexp", regexp);
+    }
+
+    /**
+     * Sets the character replacing sensitive information.
+     *
+     * @param placeholder The placeholder character
+     * @return A new rule with the attribute set
+     */
+    public BlurRule placeholder(char placeholder) {
+        return attribute("placeholder", placeholder);
+    }
+
+    /**
+     * Sets the condition under which the input is blurred.
+     *
+     * @param condition The condition class
+     * @return A new rule with the attribute set
+     */
+    public BlurRule condition(Class<? extends Condition<?>> condition) {
+        return attribute("condition", condition);
+    }
+
+    /**
+     * Sets an attribute of the annotation type by name, for attributes of custom annotation types.
+     *
+     * @param name  The name of the attribute
+     * @param value The value of the attribute
+     * @return A new rule with the attribute set
+     */
+    public BlurRule attribute(String name, Object value) {
+        Map<String, Object> copy = new LinkedHashMap<>(attributes);
+        copy.put(Objects.requireNonNull(name), Objects.requireNonNull(value));
+        return new BlurRule(annotationType, Map.copyOf(copy));
+    }
+
+    /**
+     * Creates the annotation described by this rule.
+     *
+     * @return The annotation
+     * @throws IllegalArgumentException if an attribute is unknown, has a value of the wrong type, or has no value
+     */
+    Annotation annotation() {
+        return Annotations.synthesize(annotationType, attributes);
+    }
+
+    @Override
+    public String toString() {
+        return "BlurRule[%s%s]".formatted(annotationType.getSimpleName(), attributes);
+    }
+
+}
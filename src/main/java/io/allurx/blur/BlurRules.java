@@ -0,0 +1,113 @@
+/*
+ * Copyright 2024 allurx
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.allurx.blur;
+
+import io.allurx.blur.plan.Rules;
+
+import java.lang.annotation.Annotation;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Describes how to blur the fields of a class without annotating it, for classes such as third-party
+ * ones that cannot be annotated. The rules are compiled into the same plans as annotations once they
+ * are {@link #register() registered}, and apply wherever objects of the class are blurred.
+ * <pre>{@code
+ * Blur.rules(Order.class)
+ *         .field("email", BlurRule.email())
+ *         .field("card", BlurRule.bankCardNumber().endOffset(4))
+ *         .cascade("customer")
+ *         .register();
+ * }</pre>
+ *
+ * @param <T> The class whose fields are blurred
+ * @author allurx
+ * @see Blur#rules(Class)
+ */
+public final class BlurRules<T> {
+
+    private final Class<T> type;
+    private final Map<String, List<Annotation>> annotations = new LinkedHashMap<>();
+    private final Set<String> cascades = new LinkedHashSet<>();
+
+    /**
+     * Creates rules for the class.
+     *
+     * @param type The class whose fields are blurred
+     */
+    BlurRules(Class<T> type) {
+        this.type = type;
+    }
+
+    /**
+     * Blurs the field with the rule, in addition to the rules already added for it.
+     *
+     * @param name The name of a field declared by the class
+     * @param rule The rule
+     * @return These rules
+     * @throws IllegalArgumentException if the class does not declare the field, or the rule is invalid
+     */
+    public BlurRules<T> field(String name, BlurRule rule) {
+        check(name);
+        annotations.computeIfAbsent(name, n -> new ArrayList<>()).add(rule.annotation());
+        return this;
+    }
+
+    /**
+     * Blurs the value of the field field by field, as if it were annotated with
+     * {@link io.allurx.annotation.parser.type.Cascade}. If the field is an array, a collection or a map,
+     * its elements or values are blurred field by field instead.
+     *
+     * @param name The name of a field declared by the class
+     * @return These rules
+     * @throws IllegalArgumentException if the class does not declare the field
+     */
+    public BlurRules<T> cascade(String name) {
+        check(name);
+        cascades.add(name);
+        return this;
+    }
+
+    /**
+     * Replaces the rules registered for the class with these rules. The plans compiled so far are
+     * discarded, so this is best done at startup. Registering no rules removes the rules of the class.
+     */
+    public void register() {
+        Map<String, Rules.FieldRules> fields = new LinkedHashMap<>();
+        annotations.forEach((name, list) -> fields.put(name, new Rules.FieldRules(list, cascades.contains(name))));
+        cascades.forEach(name -> fields.putIfAbsent(name, new Rules.FieldRules(List.of(), true)));
+        Rules.register(type, fields);
+    }
+
+    /**
+     * Checks that the class declares the field.
+     *
+     * @param name The name of the field
+     * @throws IllegalArgumentException if the class does not declare the field
+     */
+    private void check(String name) {
+        try {
+            type.getDeclaredField(name);
+        } catch (NoSuchFieldException e) {
+            throw new IllegalArgumentException("field: %s".formatted(name), e);
+        }
+    }
+
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright 2024 allurx
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.allurx.blur;
+
+import io.allurx.blur.plan.Plan;
+import io.allurx.blur.plan.Traversal;
+
+import java.util.AbstractList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A read-only view of a {@link List} that blurs each element when it is accessed, and reflects later
+ * changes of the list. The blurred elements are optionally cached, in which case each element is blurred
+ * at most once for as long as the list holds it at the same index: a cached element is only reused if
+ * the list still holds the same instance, and the cache grows with the list.
+ *
+ * @param <E> The type of the elements
+ * @author allurx
+ * @see Blur#view(List, io.allurx.kit.base.reflection.AnnotatedTypeToken, boolean)
+ */
+final class BlurredList<E> extends AbstractList<E> {
+
+    private final List<E> list;
+    private final Plan elementPlan;
+    private final boolean cached;
+
+    /**
+     * The blurred elements by index, {@code null} for the elements that have not been blurred yet.
+     */
+    private volatile AtomicReferenceArray<Cached> cache;
+
+    /**
+     * Creates a view of the list.
+     *
+     * @param list        The list to be blurred
+     * @param elementPlan The plan for the element type
+     * @param cached      Whether the blurred elements are cached
+     */
+    BlurredList(List<E> list, Plan elementPlan, boolean cached) {
+        this.list = list;
+        this.elementPlan = elementPlan;
+        this.cached = cached;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public E get(int index) {
+        E original = list.get(index);
+        if (!cached) {
+            return blur(original);
+        }
+        AtomicReferenceArray<Cached> elements = cache(index);
+        Cached element = elements.get(index);
+        if (element == null || element.original() != original) {
+            element = new Cached(original, blur(original));
+            elements.set(index, element);
+        }
+        return (E) element.blurred();
+    }
+
+    @Override
+    public int size() {
+        return list.size();
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        if (cached) {
+            return super.iterator();
+        }
+        Iterator<E> iterator = list.iterator();
+        return new Iterator<>() {
+
+            @Override
+            public boolean hasNext() {
+                return iterator.hasNext();
+            }
+
+            @Override
+            public E next() {
+                return blur(iterator.next());
+            }
+        };
+    }
+
+    /**
+     * Blurs a single element.
+     *
+     * @param element The element to be blurred
+     * @return The blurred element
+     */
+    @SuppressWarnings("unchecked")
+    private E blur(E element) {
+        return (E) elementPlan.apply(element, new Traversal(BlurOptions.DEFAULT));
+    }
+
+    /**
+     * Returns the cache of blurred elements, creating it on first use and growing it once the list grew
+     * past it.
+     *
+     * @param index The index of the element about to be accessed, which is within the list
+     * @return The cache, which covers the index
+     */
+    private AtomicReferenceArray<Cached> cache(int index) {
+        AtomicReferenceArray<Cached> elements = cache;
+        if (elements == null || index >= elements.length()) {
+            synchronized (this) {
+                elements = cache;
+                if (elements == null || index >= elements.length()) {
+                    AtomicReferenceArray<Cached> grown = new AtomicReferenceArray<>(Math.max(list.size(), index + 1));
+                    for (int i = 0; elements != null && i < elements.length(); i++) {
+                        grown.setPlain(i, elements.get(i));
+                    }
+                    // Elements cached into the previous array meanwhile are lost and blurred again
+                    cache = elements = grown;
+                }
+            }
+        }
+        return elements;
+    }
+
+    /**
+     * A blurred element, along with the element of the list it was blurred from.
+     *
+     * @param original The element of the list
+     * @param blurred  The blurred element
+     */
+    private record Cached(Object original, Object blurred) {
+    }
+
+}
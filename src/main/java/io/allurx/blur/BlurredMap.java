@@ -0,0 +1,153 @@
+/*
+ * Copyright 2024 allurx
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.allurx.blur;
+
+import io.allurx.blur.plan.Plan;
+import io.allurx.blur.plan.Traversal;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A read-only view of a {@link Map} that blurs each key and value when it is accessed, and reflects later
+ * changes of the map. The blurred entries are optionally cached, in which case each entry is blurred at most
+ * once for as long as the map holds it: a cached entry is only reused if the map still maps the key to the
+ * same value instance. Entries of keys removed from the map stay cached until they are added again.
+ * <p>
+ * Since blurred keys cannot be mapped back, {@link #get(Object)} and {@link #containsKey(Object)}
+ * look up the original keys.
+ *
+ * @param <K> The type of the keys
+ * @param <V> The type of the values
+ * @author allurx
+ * @see Blur#view(Map, io.allurx.kit.base.reflection.AnnotatedTypeToken, boolean)
+ */
+final class BlurredMap<K, V> extends AbstractMap<K, V> {
+
+    private final Map<K, V> map;
+    private final Plan keyPlan;
+    private final Plan valuePlan;
+    private final ConcurrentMap<Object, Cached<K, V>> cache;
+
+    /**
+     * Creates a view of the map.
+     *
+     * @param map       The map to be blurred
+     * @param keyPlan   The plan for the key type
+     * @param valuePlan The plan for the value type
+     * @param cached    Whether the blurred entries are cached
+     */
+    BlurredMap(Map<K, V> map, Plan keyPlan, Plan valuePlan, boolean cached) {
+        this.map = map;
+        this.keyPlan = keyPlan;
+        this.valuePlan = valuePlan;
+        this.cache = cached ? new ConcurrentHashMap<>() : null;
+    }
+
+    @Override
+    public V get(Object key) {
+        V value = map.get(key);
+        return value == null ? null : blur(key, value).getValue();
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return map.containsKey(key);
+    }
+
+    @Override
+    public int size() {
+        return map.size();
+    }
+
+    @Override
+    public Set<Entry<K, V>> entrySet() {
+        return new AbstractSet<>() {
+
+            @Override
+            public Iterator<Entry<K, V>> iterator() {
+                Iterator<Entry<K, V>> iterator = map.entrySet().iterator();
+                return new Iterator<>() {
+
+                    @Override
+                    public boolean hasNext() {
+                        return iterator.hasNext();
+                    }
+
+                    @Override
+                    public Entry<K, V> next() {
+                        Entry<K, V> entry = iterator.next();
+                        return blur(entry.getKey(), entry.getValue());
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return map.size();
+            }
+        };
+    }
+
+    /**
+     * Blurs a single entry, or returns it from the cache.
+     *
+     * @param key   The original key
+     * @param value The original value
+     * @return The blurred entry
+     */
+    private Entry<K, V> blur(Object key, V value) {
+        if (cache == null || key == null) {
+            return blurEntry(key, value);
+        }
+        Cached<K, V> cached = cache.get(key);
+        if (cached == null || cached.value() != value) {
+            cached = new Cached<>(value, blurEntry(key, value));
+            cache.put(key, cached);
+        }
+        return cached.entry();
+    }
+
+    /**
+     * Blurs a single entry.
+     *
+     * @param key   The original key
+     * @param value The original value
+     * @return The blurred entry
+     */
+    @SuppressWarnings("unchecked")
+    private Entry<K, V> blurEntry(Object key, V value) {
+        Traversal traversal = new Traversal(BlurOptions.DEFAULT);
+        return new SimpleImmutableEntry<>((K) keyPlan.apply(key, traversal), (V) valuePlan.apply(value, traversal));
+    }
+
+    /**
+     * A blurred entry, along with the value of the map it was blurred from.
+     *
+     * @param value The value of the map
+     * @param entry The blurred entry
+     * @param <K>   The type of the keys
+     * @param <V>   The type of the values
+     */
+    private record Cached<K, V>(Object value, Entry<K, V> entry) {
+    }
+
+}
@@ -0,0 +1,193 @@
+/*
+ * Copyright 2024 allurx
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.allurx.blur;
+
+import io.allurx.blur.plan.Plan;
+import io.allurx.blur.plan.Plans;
+import io.allurx.blur.plan.Traversal;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * A {@link ResultSet} that blurs the values of some columns when they are read, and passes every other
+ * call through to the underlying result set. Rows are read one by one as the result set is iterated,
+ * nothing is materialized.
+ * <p>
+ * Values of blurred columns are only read as strings, through {@link ResultSet#getString getString},
+ * {@link ResultSet#getNString getNString} or {@link ResultSet#getObject getObject}, which return the blurred
+ * string. Any other getter, which could expose the original value, fails with an {@link SQLException} for
+ * these columns, and the result set cannot be unwrapped.
+ *
+ * @author allurx
+ * @see Blur#resultSet(ResultSet, Map)
+ */
+final class BlurredResultSet implements InvocationHandler {
+
+    private final ResultSet resultSet;
+
+    /**
+     * The plans of the blurred columns by label, compared ignoring case as JDBC does.
+     */
+    private final Map<String, Plan> columns;
+
+    /**
+     * The plans of the blurred columns by index, starting at {@code 1}, resolved on first use.
+     */
+    private Plan[] indexed;
+
+    private BlurredResultSet(ResultSet resultSet, Map<String, Plan> columns) {
+        this.resultSet = resultSet;
+        this.columns = columns;
+    }
+
+    /**
+     * Wraps the result set.
+     *
+     * @param resultSet The result set
+     * @param rules     The rules of the blurred columns by label
+     * @return The wrapping result set
+     * @throws IllegalArgumentException if a rule cannot be created
+     */
+    static ResultSet of(ResultSet resultSet, Map<String, BlurRule> rules) {
+        Map<String, Plan> columns = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        rules.forEach((label, rule) -> columns.put(label, Plans.of(rule.annotation())));
+        return (ResultSet) Proxy.newProxyInstance(ResultSet.class.getClassLoader(), new Class<?>[]{ResultSet.class}, new BlurredResultSet(resultSet, columns));
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        String name = method.getName();
+        switch (name) {
+            case "equals" -> {
+                if (method.getParameterCount() == 1) {
+                    return proxy == args[0];
+                }
+            }
+            case "hashCode" -> {
+                if (method.getParameterCount() == 0) {
+                    return System.identityHashCode(proxy);
+                }
+            }
+            case "isWrapperFor" -> {
+                return ((Class<?>) args[0]).isInstance(proxy);
+            }
+            case "unwrap" -> {
+                if (((Class<?>) args[0]).isInstance(proxy)) {
+                    return proxy;
+                }
+                throw new SQLException("A blurred result set cannot be unwrapped to %s".formatted(((Class<?>) args[0]).getName()));
+            }
+            default -> {
+            }
+        }
+        Plan plan = name.startsWith("get") && args != null ? plan(args[0]) : null;
+        if (plan == null) {
+            return call(method, args);
+        }
+        return switch (name) {
+            case "getString", "getNString" -> blur(plan, call(method, args));
+            case "getObject" -> {
+                if (args.length == 2 && args[1] instanceof Class<?> type && type != String.class && type != Object.class) {
+                    throw masked(args[0]);
+                }
+                yield blur(plan, args[0] instanceof String label ? resultSet.getObject(label) : resultSet.getObject((Integer) args[0]));
+            }
+            default -> throw masked(args[0]);
+        };
+    }
+
+    /**
+     * Returns the plan of the column.
+     *
+     * @param column The label or the index of the column
+     * @return The plan, or {@code null} if the column is not blurred
+     * @throws SQLException if the metadata of the result set cannot be read
+     */
+    private Plan plan(Object column) throws SQLException {
+        return switch (column) {
+            case String label -> columns.get(label);
+            case Integer index -> {
+                Plan[] plans = indexed();
+                yield index > 0 && index < plans.length ? plans[index] : null;
+            }
+            default -> null;
+        };
+    }
+
+    /**
+     * Returns the plans of the blurred columns by index.
+     *
+     * @return The plans, starting at index {@code 1}
+     * @throws SQLException if the metadata of the result set cannot be read
+     */
+    private Plan[] indexed() throws SQLException {
+        if (indexed == null) {
+            ResultSetMetaData metaData = resultSet.getMetaData();
+            Plan[] plans = new Plan[metaData.getColumnCount() + 1];
+            for (int i = 1; i < plans.length; i++) {
+                plans[i] = columns.get(metaData.getColumnLabel(i));
+            }
+            indexed = plans;
+        }
+        return indexed;
+    }
+
+    /**
+     * Calls the method of the underlying result set.
+     *
+     * @param method The method
+     * @param args   The arguments
+     * @return The result
+     * @throws Throwable the exception thrown by the method
+     */
+    private Object call(Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(resultSet, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Blurs the value of a column as a string.
+     *
+     * @param plan  The plan of the column
+     * @param value The value, may be {@code null}
+     * @return The blurred string, or {@code null} if the value is SQL {@code NULL}
+     */
+    private static String blur(Plan plan, Object value) {
+        return value == null ? null : String.valueOf(plan.apply(value.toString(), new Traversal(BlurOptions.DEFAULT)));
+    }
+
+    /**
+     * Creates the exception thrown when a blurred column is read other than as a string.
+     *
+     * @param column The label or the index of the column
+     * @return The exception
+     */
+    private static SQLException masked(Object column) {
+        return new SQLException("Column %s is blurred and can only be read as a string".formatted(column));
+    }
+
+}
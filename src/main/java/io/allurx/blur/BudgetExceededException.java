@@ -0,0 +1,41 @@
+/*
+ * Copyright 2024 allurx
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.allurx.blur;
+
+import java.io.Serial;
+
+/**
+ * Thrown when a call to {@link Blur} exceeds one of the budgets of its {@link BlurOptions}
+ * and the {@link BudgetPolicy} is {@link BudgetPolicy#FAIL}, or when matching a regular expression exceeds
+ * the {@link io.allurx.blur.handler.RegexBudget} and its fallback is {@link io.allurx.blur.handler.RegexBudget.Fallback#FAIL}.
+ *
+ * @author allurx
+ */
+public class BudgetExceededException extends IllegalStateException {
+
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Creates an exception with the given message.
+     *
+     * @param message The budget that was exceeded
+     */
+    public BudgetExceededException(String message) {
+        super(message);
+    }
+
+}
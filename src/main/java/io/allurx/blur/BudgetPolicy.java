@@ -0,0 +1,46 @@
+/*
+ * Copyright 2024 allurx
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.allurx.blur;
+
+/**
+ * Determines what happens when a call to {@link Blur} exceeds one of the budgets of its {@link BlurOptions}.
+ * A value that cannot be stored in its field, record component or array element, such as {@code null} in a
+ * primitive or a masked {@link String} in a {@link StringBuilder}, is replaced with the default value of its
+ * type instead.
+ *
+ * @author allurx
+ */
+public enum BudgetPolicy {
+
+    /**
+     * Aborts the call with a {@link BudgetExceededException}.
+     */
+    FAIL,
+
+    /**
+     * Leaves out everything that remains: containers end at the last element within budget, objects beyond
+     * the budget are replaced by {@code null} and oversized character sequences are cut to the maximum length
+     * before they are blurred.
+     */
+    TRUNCATE,
+
+    /**
+     * Masks everything that remains without running the handlers: character sequences are replaced entirely
+     * by {@code '*'} and any other value by {@code null}.
+     */
+    MASK
+
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright 2024 allurx
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.allurx.blur.annotation;
+
+import io.allurx.annotation.parser.util.Singleton;
+
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A {@link Condition} that can also decide for many elements of an array, a collection or a column at once,
+ * so that expensive conditions, such as lookups or classifications, are evaluated in few calls.
+ * Arrays, collections and columns whose elements are blurred by a single sensitive annotation use
+ * {@link #required(List)}, single values still use {@link #required(Object)}. Arrays and collections are
+ * passed in consecutive chunks of their elements, which stop at the element budget of the call, see
+ * {@link io.allurx.blur.BlurOptions#maxElements()}.
+ *
+ * @param <T> The type of the input
+ * @author allurx
+ */
+@Singleton
+public interface BatchCondition<T> extends Condition<T> {
+
+    /**
+     * Checks which of the inputs need to be blurred.
+     *
+     * @param inputs The inputs to evaluate, in the order of their container, may contain {@code null} values
+     *               which are never blurred
+     * @return The set of the indexes, within the inputs, of the inputs that need to be blurred
+     */
+    BitSet required(List<? extends T> inputs);
+
+    /**
+     * Checks if the input needs to be blurred. The default implementation evaluates a batch of one input.
+     *
+     * @param input The input to evaluate
+     * @return {@code true} if blurring is required, {@code false} otherwise
+     */
+    @Override
+    default boolean required(T input) {
+        return required(Collections.singletonList(input)).get(0);
+    }
+
+}
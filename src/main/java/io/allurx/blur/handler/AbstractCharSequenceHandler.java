@@ -18,14 +18,22 @@ package io.allurx.blur.handler;
 
 import io.allurx.annotation.parser.handler.AnnotationHandler;
 import io.allurx.annotation.parser.util.InstanceCreators;
+import io.allurx.blur.annotation.AlwaysTrue;
+import io.allurx.blur.annotation.BatchCondition;
 import io.allurx.blur.annotation.Condition;
 
+import java.io.IOException;
+import java.io.Writer;
 import java.lang.annotation.Annotation;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-import java.util.stream.IntStream;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.nio.CharBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.IntPredicate;
 
 /**
  * Base class for handling sensitive {@link CharSequence} annotations.
@@ -37,30 +45,366 @@ import java.util.stream.IntStream;
  */
 public abstract class AbstractCharSequenceHandler<T extends CharSequence, A extends Annotation> implements AnnotationHandler<T, A, T> {
 
+    /**
+     * The accessors of the blurring attributes of each annotation type, {@code null} for annotation types
+     * that do not declare all of them.
+     */
+    private static final ClassValue<Attributes> ATTRIBUTES = new ClassValue<>() {
+        @Override
+        protected Attributes computeValue(Class<?> type) {
+            return Attributes.of(type);
+        }
+    };
+
+    /**
+     * Whether this handler blurs by the attributes of its annotation.
+     */
+    private final boolean attributed;
+
     /**
      * Default constructor
      */
     public AbstractCharSequenceHandler() {
+        this(false);
+    }
+
+    /**
+     * Creates a handler that may blur inputs by the {@code regexp}, {@code startOffset}, {@code endOffset},
+     * {@code placeholder} and {@code condition} attributes of its annotation, as the built-in handlers do.
+     * If so, the default implementations of the overloads of {@link #handle(Object, Annotation)} read these
+     * attributes and blur the input directly, instead of adapting the result of {@link #handle(Object, Annotation)},
+     * and {@link #prepare(Annotation)} compiles the regular expression and creates the condition ahead.
+     * Annotations that do not declare all of these attributes are still adapted.
+     *
+     * @param attributed Whether this handler blurs by the attributes of its annotation
+     */
+    protected AbstractCharSequenceHandler(boolean attributed) {
+        this.attributed = attributed;
+    }
+
+    /**
+     * Cache for blurred strings, {@code null} if disabled.
+     */
+    private static volatile MaskCache maskCache;
+
+    /**
+     * Enables or disables the cache of blurred strings shared by all handlers.
+     * Only {@link String} inputs are cached, and conditions are still evaluated on every call.
+     *
+     * @param cache The cache to use, or {@code null} to disable caching
+     */
+    public static void cache(MaskCache cache) {
+        maskCache = cache;
     }
 
     /**
-     * Cache for regular expressions.
+     * Budget for matching regular expressions, {@code null} if unbounded.
      */
-    private static final ConcurrentMap<String, Pattern> PATTERN_CACHE = new ConcurrentHashMap<>();
+    private static volatile RegexBudget regexBudget;
+
+    /**
+     * Sets the budget bounding the time and steps spent matching the regular expression of a single input,
+     * which applies to inputs blurred one by one and by column alike.
+     *
+     * @param budget The budget to use, or {@code null} to match without bounds
+     */
+    public static void regexBudget(RegexBudget budget) {
+        regexBudget = budget;
+    }
+
+    /**
+     * Sets the maximum length of the inputs blurred in a char array reused by the current thread,
+     * defaults to 1024. Longer inputs and inputs blurred on
+     * virtual threads use a new char array.
+     *
+     * @param maxLength The maximum length, {@code 0} disables reusing char arrays
+     * @throws IllegalArgumentException if the length is negative
+     */
+    public static void scratchBuffer(int maxLength) {
+        ScratchBuffer.maxLength(maxLength);
+    }
 
     /**
      * Determines if blurring is required based on the given condition.
+     * The condition is only instantiated if it is not {@link AlwaysTrue}.
      *
      * @param input          The original character sequence object
      * @param conditionClass The {@link Class} of the condition
      * @return {@code true} if blurring is required; {@code false} otherwise
      */
     public boolean required(T input, Class<? extends Condition<?>> conditionClass) {
+        if (conditionClass == AlwaysTrue.class) {
+            return true;
+        }
         @SuppressWarnings("unchecked")
         Class<? extends Condition<T>> clazz = (Class<? extends Condition<T>>) conditionClass;
         return InstanceCreators.find(clazz).create().required(input);
     }
 
+    /**
+     * Determines if blurring of a number is required based on the given condition.
+     * The number is only converted to its decimal string if the condition is not {@link AlwaysTrue}.
+     *
+     * @param input          The original number
+     * @param conditionClass The {@link Class} of the condition
+     * @return {@code true} if blurring is required; {@code false} otherwise
+     */
+    @SuppressWarnings("unchecked")
+    public boolean required(long input, Class<? extends Condition<?>> conditionClass) {
+        return conditionClass == AlwaysTrue.class || required((T) Long.toString(input), conditionClass);
+    }
+
+    /**
+     * Handles a number by blurring its decimal digits and returns the result as a {@link String}.
+     * The default implementation converts the number to a string and delegates to {@link #handle(Object, Annotation)},
+     * handlers whose input type is not {@link String} must override it. Handlers of annotations describing
+     * numbers, such as phone numbers, override it to blur the digits with
+     * {@link #blurToString(long, String, int, int, char)} instead.
+     *
+     * @param input      The original number
+     * @param annotation The sensitive annotation containing blurring configurations
+     * @return The blurred decimal digits of the number
+     */
+    @SuppressWarnings("unchecked")
+    public String handle(long input, A annotation) {
+        return String.valueOf(handle((T) Long.toString(input), annotation));
+    }
+
+    /**
+     * Handles a column of strings with a single annotation and returns the blurred column.
+     * The default implementation blurs the whole column with
+     * {@link #blurColumn(String[], String, int, int, char, Class)} if this handler blurs by the attributes of
+     * the annotation, and handles each value separately otherwise, handlers whose input type is not
+     * {@link String} must override it.
+     *
+     * @param column     The original column, may contain {@code null} values
+     * @param annotation The sensitive annotation containing blurring configurations
+     * @return A new column with the values blurred
+     */
+    @SuppressWarnings("unchecked")
+    public String[] handle(String[] column, A annotation) {
+        Attributes attributes = attributes(annotation);
+        if (attributes != null) {
+            return blurColumn(column, attributes.regexp(annotation), attributes.startOffset(annotation), attributes.endOffset(annotation), attributes.placeholder(annotation), attributes.condition(annotation));
+        }
+        String[] result = new String[column.length];
+        for (int i = 0; i < column.length; i++) {
+            result[i] = column[i] == null ? null : String.valueOf(handle((T) column[i], annotation));
+        }
+        return result;
+    }
+
+    /**
+     * Handles the input and writes the result into the output instead of returning it, so that serializers
+     * and renderers do not create a {@link String} per value. The default implementation blurs with
+     * {@link #blurTo(CharSequence, String, int, int, char, Appendable)} if this handler blurs by the
+     * attributes of the annotation, and appends the result of {@link #handle(Object, Annotation)} otherwise.
+     *
+     * @param input      The original character sequence object
+     * @param annotation The sensitive annotation containing blurring configurations
+     * @param output     The output to append the result to
+     * @throws IOException if the output cannot be written
+     */
+    public void handle(T input, A annotation, Appendable output) throws IOException {
+        Attributes attributes = attributes(annotation);
+        if (attributes == null) {
+            output.append(handle(input, annotation));
+        } else if (required(input, attributes.condition(annotation))) {
+            blurTo(input, attributes.regexp(annotation), attributes.startOffset(annotation), attributes.endOffset(annotation), attributes.placeholder(annotation), output);
+        } else {
+            output.append(input);
+        }
+    }
+
+    /**
+     * Handles the input and writes the result into a char array at the given offset instead of returning it.
+     * The default implementation blurs with {@link #blurTo(CharSequence, String, int, int, char, char[], int)}
+     * if this handler blurs by the attributes of the annotation, and copies the result of
+     * {@link #handle(Object, Annotation)} otherwise.
+     *
+     * @param input      The original character sequence object
+     * @param annotation The sensitive annotation containing blurring configurations
+     * @param output     The char array to write the result into
+     * @param offset     The index of the first character written
+     * @return The number of characters written
+     * @throws IndexOutOfBoundsException if the result does not fit into the char array from the offset
+     */
+    public int handle(T input, A annotation, char[] output, int offset) {
+        Attributes attributes = attributes(annotation);
+        if (attributes == null) {
+            return copy(String.valueOf(handle(input, annotation)), output, offset);
+        }
+        return required(input, attributes.condition(annotation))
+                ? blurTo(input, attributes.regexp(annotation), attributes.startOffset(annotation), attributes.endOffset(annotation), attributes.placeholder(annotation), output, offset)
+                : copy(input.toString(), output, offset);
+    }
+
+    /**
+     * Returns the accessors of the blurring attributes of the annotation.
+     *
+     * @param annotation The sensitive annotation
+     * @return The accessors, or {@code null} if this handler does not blur by the attributes of its annotation
+     * or the annotation does not declare all of them
+     */
+    private Attributes attributes(A annotation) {
+        return attributed ? ATTRIBUTES.get(annotation.annotationType()) : null;
+    }
+
+    /**
+     * Prepares this handler for the annotation ahead of the first call to {@link #handle(Object, Annotation)}.
+     * The default implementation compiles the regular expression and creates the condition if this handler
+     * blurs by the attributes of the annotation, and does nothing otherwise.
+     *
+     * @param annotation The sensitive annotation this handler will be invoked with
+     */
+    public void prepare(A annotation) {
+        Attributes attributes = attributes(annotation);
+        if (attributes != null) {
+            prepare(attributes.regexp(annotation), attributes.condition(annotation));
+        }
+    }
+
+    /**
+     * Compiles the regular expression and creates the condition ahead of the first blurring.
+     *
+     * @param regexp         The regular expression for matching, may be empty
+     * @param conditionClass The {@link Class} of the condition
+     */
+    protected final void prepare(String regexp, Class<? extends Condition<?>> conditionClass) {
+        if (!regexp.isEmpty()) {
+            MaskPattern.of(regexp);
+        }
+        InstanceCreators.find(conditionClass).create();
+    }
+
+    /**
+     * Blurs the input based on the provided regular expression or offsets and returns the result as a {@link String}.
+     * If a {@link MaskCache} is enabled, the result for a {@link String} input is looked up in it first.
+     *
+     * @param input       The original character sequence object
+     * @param regexp      The regular expression for matching
+     * @param start       The starting offset of sensitive information
+     * @param end         The ending offset of sensitive information
+     * @param placeholder The character to replace sensitive information
+     * @return The blurred character sequence
+     */
+    public final String blurToString(T input, String regexp, int start, int end, char placeholder) {
+        MaskCache cache = maskCache;
+        if (cache == null || !(input instanceof String string)) {
+            return blurToString(input, regexp, start, end, placeholder, input.length());
+        }
+        MaskCache.Key key = new MaskCache.Key(string, regexp, start, end, placeholder);
+        String value = cache.get(key);
+        if (value == null) {
+            value = blurToString(input, regexp, start, end, placeholder, string.length());
+            cache.put(key, value);
+        }
+        return value;
+    }
+
+    /**
+     * Blurs the input based on the provided regular expression or offsets and appends the result to the output.
+     * The characters of {@link String} inputs are blurred in a buffer reused by the current thread, so nothing
+     * is allocated unless a regular expression has to be matched or the output copies them.
+     *
+     * @param input       The original character sequence object
+     * @param regexp      The regular expression for matching
+     * @param start       The starting offset of sensitive information
+     * @param end         The ending offset of sensitive information
+     * @param placeholder The character to replace sensitive information
+     * @param output      The output to append the blurred character sequence to
+     * @throws IOException if the output cannot be written
+     */
+    public final void blurTo(T input, String regexp, int start, int end, char placeholder, Appendable output) throws IOException {
+        if (maskCache != null || !(input instanceof String string)) {
+            output.append(blurToString(input, regexp, start, end, placeholder));
+            return;
+        }
+        int length = string.length();
+        char[] chars = blurToScratch(string, regexp, start, end, placeholder, length);
+        switch (output) {
+            case StringBuilder builder -> builder.append(chars, 0, length);
+            case Writer writer -> writer.write(chars, 0, length);
+            default -> output.append(CharBuffer.wrap(chars, 0, length));
+        }
+    }
+
+    /**
+     * Blurs the input based on the provided regular expression or offsets and writes the result into a char
+     * array at the given offset.
+     *
+     * @param input       The original character sequence object
+     * @param regexp      The regular expression for matching
+     * @param start       The starting offset of sensitive information
+     * @param end         The ending offset of sensitive information
+     * @param placeholder The character to replace sensitive information
+     * @param output      The char array to write the blurred character sequence into
+     * @param offset      The index of the first character written
+     * @return The number of characters written, which is the length of the input
+     * @throws IndexOutOfBoundsException if the input does not fit into the char array from the offset
+     */
+    public final int blurTo(T input, String regexp, int start, int end, char placeholder, char[] output, int offset) {
+        if (maskCache != null || !(input instanceof String string)) {
+            String blurred = blurToString(input, regexp, start, end, placeholder);
+            int length = blurred.length();
+            Objects.checkFromIndexSize(offset, length, output.length);
+            blurred.getChars(0, length, output, offset);
+            return length;
+        }
+        int length = string.length();
+        Objects.checkFromIndexSize(offset, length, output.length);
+        System.arraycopy(blurToScratch(string, regexp, start, end, placeholder, length), 0, output, offset, length);
+        return length;
+    }
+
+    /**
+     * Writes the string unchanged into a char array at the given offset, for inputs that are not blurred.
+     *
+     * @param input  The original string
+     * @param output The char array to write the string into
+     * @param offset The index of the first character written
+     * @return The number of characters written, which is the length of the input
+     * @throws IndexOutOfBoundsException if the input does not fit into the char array from the offset
+     */
+    protected static int copy(String input, char[] output, int offset) {
+        int length = input.length();
+        Objects.checkFromIndexSize(offset, length, output.length);
+        input.getChars(0, length, output, offset);
+        return length;
+    }
+
+    /**
+     * Blurs a column of strings based on the provided regular expression or offsets. The values are
+     * packed into a single char array and masked in one pass, large columns are masked in parallel.
+     *
+     * @param column         The original column, may contain {@code null} values
+     * @param regexp         The regular expression for matching
+     * @param start          The starting offset of sensitive information
+     * @param end            The ending offset of sensitive information
+     * @param placeholder    The character to replace sensitive information
+     * @param conditionClass The {@link Class} of the condition deciding which values are blurred, a {@link BatchCondition}
+     *                       decides for the whole column at once
+     * @return A new column with the values blurred
+     */
+    @SuppressWarnings("unchecked")
+    public final String[] blurColumn(String[] column, String regexp, int start, int end, char placeholder, Class<? extends Condition<?>> conditionClass) {
+        IntPredicate required = null;
+        if (conditionClass != AlwaysTrue.class) {
+            required = InstanceCreators.find(conditionClass).create() instanceof BatchCondition<?> condition
+                    ? ((BatchCondition<T>) condition).required((List<T>) (List<?>) Arrays.asList(column))::get
+                    : index -> required((T) column[index], conditionClass);
+        }
+        ColumnMask mask = new ColumnMask(
+                regexp.isEmpty() ? null : MaskPattern.of(regexp),
+                regexp.equals(MaskKernels.EMAIL),
+                start,
+                end,
+                placeholder,
+                regexBudget,
+                required);
+        return mask.apply(column);
+    }
+
     /**
      * Blurs the input based on the provided regular expression or offsets.
      *
@@ -72,27 +416,110 @@ public abstract class AbstractCharSequenceHandler<T extends CharSequence, A exte
      * @return A char array representing the blurred character sequence
      */
     public final char[] blur(T input, String regexp, int start, int end, char placeholder) {
-        return !regexp.isEmpty() ? blur(input, regexp, placeholder) : blur(input, start, end, placeholder);
+        char[] chars = MaskKernels.chars(input);
+        return blur(chars, chars.length, input, regexp, start, end, placeholder);
+    }
+
+    /**
+     * Blurs the decimal digits of the number based on the provided regular expression or offsets.
+     * The digits are written directly into a scratch buffer, without an intermediate {@link String}.
+     *
+     * @param input       The original number
+     * @param regexp      The regular expression for matching
+     * @param start       The starting offset of sensitive information
+     * @param end         The ending offset of sensitive information
+     * @param placeholder The character to replace sensitive information
+     * @return The blurred decimal digits of the number
+     */
+    public final String blurToString(long input, String regexp, int start, int end, char placeholder) {
+        int length = length(input);
+        char[] chars = ScratchBuffer.acquire(length);
+        if (regexp.isEmpty()) {
+            digits(input, chars, length);
+            return new String(blur(chars, length, start, end, placeholder), 0, length);
+        }
+        // The regular expression is matched against digits that are not masked in place
+        char[] digits = new char[length];
+        digits(input, digits, length);
+        System.arraycopy(digits, 0, chars, 0, length);
+        return new String(blur(chars, length, CharBuffer.wrap(digits), regexp, placeholder), 0, length);
+    }
+
+    /**
+     * Blurs the input into a scratch buffer and returns the result as a {@link String}.
+     * The characters of {@link String} inputs are copied into a buffer reused by the current thread,
+     * so the result is the only allocation unless a regular expression has to be matched.
+     *
+     * @param input       The original character sequence object
+     * @param regexp      The regular expression for matching
+     * @param start       The starting offset of sensitive information
+     * @param end         The ending offset of sensitive information
+     * @param placeholder The character to replace sensitive information
+     * @param length      The length of the input
+     * @return The blurred character sequence
+     */
+    private String blurToString(T input, String regexp, int start, int end, char placeholder, int length) {
+        if (!(input instanceof String string)) {
+            // Other character sequences may run arbitrary code while they are read
+            return String.valueOf(blur(input, regexp, start, end, placeholder));
+        }
+        return new String(blurToScratch(string, regexp, start, end, placeholder, length), 0, length);
+    }
+
+    /**
+     * Blurs the string in a buffer reused by the current thread.
+     *
+     * @param input       The original string
+     * @param regexp      The regular expression for matching
+     * @param start       The starting offset of sensitive information
+     * @param end         The ending offset of sensitive information
+     * @param placeholder The character to replace sensitive information
+     * @param length      The length of the input
+     * @return The buffer holding the blurred string at its start, only valid until the next blurring on the current thread
+     */
+    private char[] blurToScratch(String input, String regexp, int start, int end, char placeholder, int length) {
+        char[] chars = ScratchBuffer.acquire(length);
+        input.getChars(0, length, chars, 0);
+        return blur(chars, length, input, regexp, start, end, placeholder);
+    }
+
+    /**
+     * Blurs the input based on the provided regular expression or offsets.
+     *
+     * @param chars       A copy of the characters of the input, which is blurred in place
+     * @param length      The length of the input
+     * @param input       The original character sequence object
+     * @param regexp      The regular expression for matching
+     * @param start       The starting offset of sensitive information
+     * @param end         The ending offset of sensitive information
+     * @param placeholder The character to replace sensitive information
+     * @return The char array holding the blurred character sequence
+     */
+    private char[] blur(char[] chars, int length, CharSequence input, String regexp, int start, int end, char placeholder) {
+        return !regexp.isEmpty() ? blur(chars, length, input, regexp, placeholder) : blur(chars, length, start, end, placeholder);
     }
 
     /**
      * Blurs the input based on the provided regular expression.
      *
+     * @param chars       A copy of the characters of the input, which is blurred in place
+     * @param length      The length of the input
      * @param input       The original character sequence object
      * @param regexp      The regular expression for matching
      * @param placeholder The character to replace sensitive information
-     * @return A char array representing the blurred character sequence
+     * @return The char array holding the blurred character sequence
      */
-    private char[] blur(T input, String regexp, char placeholder) {
-        char[] chars = chars(input);
-        Matcher matcher = PATTERN_CACHE.computeIfAbsent(regexp, s -> Pattern.compile(regexp)).matcher(input);
-        // Replace each character in the matched groups with the placeholder
-        while (matcher.find()) {
-            // Skip empty strings
-            if (!matcher.group().isEmpty()) {
-                // Replace each character in the matched group with the placeholder
-                replace(chars, matcher.start(), matcher.end(), placeholder);
-            }
+    private char[] blur(char[] chars, int length, CharSequence input, String regexp, char placeholder) {
+        // The default regular expression of Email is a plain scan for the last '@'
+        if (regexp.equals(MaskKernels.EMAIL) && MaskKernels.email(chars, 0, length, placeholder)) {
+            return chars;
+        }
+        MaskPattern.Masker masker = MaskPattern.of(regexp).masker();
+        RegexBudget budget = regexBudget;
+        if (budget == null) {
+            masker.mask(input, 0, length, chars, placeholder);
+        } else {
+            budget.mask(masker, budget.wrap(input), 0, length, chars, placeholder);
         }
         return chars;
     }
@@ -100,42 +527,50 @@ public abstract class AbstractCharSequenceHandler<T extends CharSequence, A exte
     /**
      * Blurs the input based on specified start and end offsets.
      *
-     * @param input       The original character sequence object
+     * @param chars       A copy of the characters of the input, which is blurred in place
+     * @param length      The length of the input
      * @param start       The starting offset of sensitive information
      * @param end         The ending offset of sensitive information
      * @param placeholder The character to replace sensitive information
-     * @return A char array representing the blurred character sequence
+     * @return The char array holding the blurred character sequence
      */
-    private char[] blur(T input, int start, int end, char placeholder) {
-        check(start, end, input);
-        char[] chars = chars(input);
-        replace(chars, start, input.length() - end, placeholder);
+    private char[] blur(char[] chars, int length, int start, int end, char placeholder) {
+        check(start, end, chars, length);
+        MaskKernels.fill(chars, start, length - end, placeholder);
         return chars;
     }
 
     /**
-     * Converts the character sequence to a char array.
+     * Returns the number of characters in the decimal representation of the number.
      *
-     * @param input The original character sequence object
-     * @return A char array representing the characters in the sequence
+     * @param value The number
+     * @return The length of the decimal representation, including the minus sign
      */
-    private char[] chars(T input) {
-        char[] chars = new char[input.length()];
-        IntStream.range(0, input.length()).forEach(i -> chars[i] = input.charAt(i));
-        return chars;
+    private static int length(long value) {
+        int length = value < 0 ? 2 : 1;
+        for (long q = value / 10; q != 0; q /= 10) {
+            length++;
+        }
+        return length;
     }
 
     /**
-     * Replaces sensitive information in the char array with a placeholder.
+     * Writes the decimal digits of the number into the char array.
      *
-     * @param chars       The char array corresponding to the character sequence
-     * @param start       The starting index of sensitive information
-     * @param end         The ending index of sensitive information
-     * @param placeholder The character used to replace sensitive characters
+     * @param value  The number
+     * @param chars  The char array to write into
+     * @param length The length of the decimal representation of the number
      */
-    private void replace(char[] chars, int start, int end, char placeholder) {
-        while (start < end) {
-            chars[start++] = placeholder;
+    private static void digits(long value, char[] chars, int length) {
+        // Work on the negative value so that Long.MIN_VALUE does not overflow
+        long q = value < 0 ? value : -value;
+        int i = length;
+        do {
+            chars[--i] = (char) ('0' - q % 10);
+            q /= 10;
+        } while (q != 0);
+        if (value < 0) {
+            chars[0] = '-';
         }
     }
 
@@ -144,14 +579,119 @@ public abstract class AbstractCharSequenceHandler<T extends CharSequence, A exte
      *
      * @param startOffset The starting offset of sensitive information
      * @param endOffset   The ending offset of sensitive information
-     * @param input       The original character sequence
+     * @param chars       The characters of the original character sequence
+     * @param length      The length of the original character sequence
      * @throws IllegalArgumentException if offsets are invalid
      */
-    private void check(int startOffset, int endOffset, T input) {
+    private void check(int startOffset, int endOffset, char[] chars, int length) {
         if (startOffset < 0 ||
                 endOffset < 0 ||
-                startOffset + endOffset > input.length()) {
-            throw new IllegalArgumentException("startOffset: %s, endOffset: %s, input: %s".formatted(startOffset, endOffset, input));
+                startOffset + endOffset > length) {
+            throw new IllegalArgumentException("startOffset: %s, endOffset: %s, input: %s".formatted(startOffset, endOffset, String.valueOf(chars, 0, length)));
+        }
+    }
+
+    /**
+     * The accessors of the {@code regexp}, {@code startOffset}, {@code endOffset}, {@code placeholder} and
+     * {@code condition} attributes of an annotation type.
+     */
+    private static final class Attributes {
+
+        private final MethodHandle regexp;
+        private final MethodHandle startOffset;
+        private final MethodHandle endOffset;
+        private final MethodHandle placeholder;
+        private final MethodHandle condition;
+
+        private Attributes(Class<?> type) throws ReflectiveOperationException {
+            regexp = accessor(type, "regexp", String.class);
+            startOffset = accessor(type, "startOffset", int.class);
+            endOffset = accessor(type, "endOffset", int.class);
+            placeholder = accessor(type, "placeholder", char.class);
+            condition = accessor(type, "condition", Class.class);
+        }
+
+        /**
+         * Looks up the accessors of the annotation type.
+         *
+         * @param type The annotation type
+         * @return The accessors, or {@code null} if the annotation type does not declare all of the attributes
+         * or they cannot be accessed
+         */
+        static Attributes of(Class<?> type) {
+            try {
+                return new Attributes(type);
+            } catch (ReflectiveOperationException e) {
+                return null;
+            }
+        }
+
+        /**
+         * Looks up the accessor of an attribute, adapted to take any annotation.
+         *
+         * @param type       The annotation type
+         * @param name       The name of the attribute
+         * @param returnType The type of the attribute
+         * @return The accessor
+         * @throws ReflectiveOperationException if the annotation type has no such attribute or it cannot be accessed
+         */
+        private static MethodHandle accessor(Class<?> type, String name, Class<?> returnType) throws ReflectiveOperationException {
+            Method method = type.getMethod(name);
+            if (method.getReturnType() != returnType) {
+                throw new NoSuchMethodException("%s.%s".formatted(type.getName(), name));
+            }
+            return MethodHandles.lookup().unreflect(method).asType(MethodType.methodType(returnType, Annotation.class));
+        }
+
+        String regexp(Annotation annotation) {
+            try {
+                return (String) regexp.invokeExact(annotation);
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        int startOffset(Annotation annotation) {
+            try {
+                return (int) startOffset.invokeExact(annotation);
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        int endOffset(Annotation annotation) {
+            try {
+                return (int) endOffset.invokeExact(annotation);
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        char placeholder(Annotation annotation) {
+            try {
+                return (char) placeholder.invokeExact(annotation);
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        Class<? extends Condition<?>> condition(Annotation annotation) {
+            try {
+                return (Class<? extends Condition<?>>) (Class<?>) condition.invokeExact(annotation);
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new IllegalStateException(e);
+            }
         }
     }
 
@@ -30,6 +30,7 @@ public class BankCardNumberHandler extends AbstractCharSequenceHandler<String, B
      * Default constructor
      */
     public BankCardNumberHandler() {
+        super(true);
     }
 
     /**
@@ -42,8 +43,22 @@ public class BankCardNumberHandler extends AbstractCharSequenceHandler<String, B
     @Override
     public String handle(String input, BankCardNumber annotation) {
         return required(input, annotation.condition())
-                ? String.valueOf(blur(input, annotation.regexp(), annotation.startOffset(), annotation.endOffset(), annotation.placeholder()))
+                ? blurToString(input, annotation.regexp(), annotation.startOffset(), annotation.endOffset(), annotation.placeholder())
                 : input;
     }
 
+    /**
+     * Handles a number holding a bank card number by blurring its decimal digits directly.
+     *
+     * @param input      The original number
+     * @param annotation The {@link BankCardNumber} annotation containing blurring configurations
+     * @return The blurred digits if required; otherwise, returns the digits of the original number
+     */
+    @Override
+    public String handle(long input, BankCardNumber annotation) {
+        return required(input, annotation.condition())
+                ? blurToString(input, annotation.regexp(), annotation.startOffset(), annotation.endOffset(), annotation.placeholder())
+                : Long.toString(input);
+    }
+
 }
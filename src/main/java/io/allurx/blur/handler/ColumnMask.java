@@ -0,0 +1,141 @@
+/*
+ * Copyright 2024 allurx
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.allurx.blur.handler;
+
+import io.allurx.blur.BlurContext;
+
+import java.nio.CharBuffer;
+import java.util.function.IntPredicate;
+import java.util.stream.IntStream;
+
+/**
+ * Blurs a column of strings with a single rule. The values are packed into one contiguous char
+ * array with an offsets array, so the whole column is masked without a char array or a
+ * {@link MaskPattern.Masker} per value. Large columns are split into chunks that are masked in parallel.
+ *
+ * @author allurx
+ */
+final class ColumnMask {
+
+    /**
+     * The number of values masked by a single task.
+     */
+    private static final int CHUNK = 4096;
+
+    private final MaskPattern pattern;
+    private final boolean email;
+    private final int start;
+    private final int end;
+    private final char placeholder;
+    private final RegexBudget budget;
+    private final IntPredicate required;
+
+    /**
+     * Creates a mask for the rule.
+     *
+     * @param pattern     The compiled regular expression, or {@code null} if the offsets are used
+     * @param email       Whether the regular expression is the default one of {@link io.allurx.blur.annotation.Email}
+     * @param start       The starting offset of sensitive information
+     * @param end         The ending offset of sensitive information
+     * @param placeholder The character to replace sensitive information
+     * @param budget      The budget for matching the regular expression of each value, or {@code null} if unbounded
+     * @param required    Determines whether the value at an index of the column is blurred, or {@code null} if every value is
+     */
+    ColumnMask(MaskPattern pattern, boolean email, int start, int end, char placeholder, RegexBudget budget, IntPredicate required) {
+        this.pattern = pattern;
+        this.email = email;
+        this.start = start;
+        this.end = end;
+        this.placeholder = placeholder;
+        this.budget = budget;
+        this.required = required;
+    }
+
+    /**
+     * Blurs every value of the column.
+     *
+     * @param column The column, may contain {@code null} values
+     * @return A new column with the values blurred
+     */
+    String[] apply(String[] column) {
+        int size = column.length;
+        int[] offsets = new int[size + 1];
+        for (int i = 0; i < size; i++) {
+            offsets[i + 1] = offsets[i] + (column[i] == null ? 0 : column[i].length());
+        }
+        char[] source = new char[offsets[size]];
+        for (int i = 0; i < size; i++) {
+            if (column[i] != null) {
+                column[i].getChars(0, column[i].length(), source, offsets[i]);
+            }
+        }
+        // The regular expression is matched against the original characters, not the masked ones
+        char[] target = pattern != null ? source.clone() : source;
+        String[] result = new String[size];
+        int chunks = (size + CHUNK - 1) / CHUNK;
+        if (chunks <= 1) {
+            apply(column, source, target, offsets, result, 0, size);
+            return result;
+        }
+        // Conditions run on the threads of the common pool, which see the context of the caller
+        BlurContext context = BlurContext.current();
+        IntStream.range(0, chunks).parallel().forEach(chunk -> context.run(() ->
+                apply(column, source, target, offsets, result, chunk * CHUNK, Math.min(size, (chunk + 1) * CHUNK))));
+        return result;
+    }
+
+    /**
+     * Blurs the values of the column in the range.
+     *
+     * @param column  The column
+     * @param source  The packed characters of the column
+     * @param target  The packed characters to be masked, which is the source itself unless a regular expression is used
+     * @param offsets The offset of each value in the packed characters, followed by their total length
+     * @param result  The blurred column
+     * @param from    The index of the first value, inclusive
+     * @param to      The index of the last value, exclusive
+     */
+    private void apply(String[] column, char[] source, char[] target, int[] offsets, String[] result, int from, int to) {
+        CharSequence characters = CharBuffer.wrap(source);
+        RegexBudget.Sequence budgeted = budget != null ? budget.wrap(characters) : null;
+        MaskPattern.Masker masker = pattern != null ? pattern.masker() : null;
+        for (int i = from; i < to; i++) {
+            String value = column[i];
+            if (value == null || required != null && !required.test(i)) {
+                result[i] = value;
+                continue;
+            }
+            int begin = offsets[i];
+            int limit = offsets[i + 1];
+            if (masker == null) {
+                if (start < 0 || end < 0 || start + end > limit - begin) {
+                    throw new IllegalArgumentException("startOffset: %s, endOffset: %s, input: %s".formatted(start, end, value));
+                }
+                MaskKernels.fill(target, begin + start, limit - end, placeholder);
+            } else if (!email || !MaskKernels.email(target, begin, limit, placeholder)) {
+                // The region hides the neighbouring values from lookarounds and anchors
+                if (budgeted == null) {
+                    masker.mask(characters, begin, limit, target, placeholder);
+                } else {
+                    budget.mask(masker, budgeted, begin, limit, target, placeholder);
+                }
+            }
+            result[i] = new String(target, begin, limit - begin);
+        }
+    }
+
+}
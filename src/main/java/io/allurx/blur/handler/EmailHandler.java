@@ -30,6 +30,7 @@ public class EmailHandler extends AbstractCharSequenceHandler<String, Email> {
      * Default constructor
      */
     public EmailHandler() {
+        super(true);
     }
 
     /**
@@ -42,7 +43,7 @@ public class EmailHandler extends AbstractCharSequenceHandler<String, Email> {
     @Override
     public String handle(String input, Email annotation) {
         return required(input, annotation.condition())
-                ? String.valueOf(blur(input, annotation.regexp(), annotation.startOffset(), annotation.endOffset(), annotation.placeholder()))
+                ? blurToString(input, annotation.regexp(), annotation.startOffset(), annotation.endOffset(), annotation.placeholder())
                 : input;
     }
 
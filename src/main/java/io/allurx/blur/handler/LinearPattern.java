@@ -0,0 +1,890 @@
+/*
+ * Copyright 2024 allurx
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.allurx.blur.handler;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A regular expression matched by simulating its NFA, so that each match takes time linear in the
+ * length of the input whatever the input is. The threads of the simulation are kept in priority
+ * order, which yields the same matches as the backtracking of {@link java.util.regex}.
+ * <p>
+ * Only a subset of the syntax is supported: literals, {@code .}, character classes with ranges and
+ * negation, {@code \d \D \w \W \s \S}, groups, alternation, greedy and reluctant quantifiers, and the
+ * anchors {@code ^} and {@code $}. Regular expressions using anything else, such as lookarounds,
+ * back references, flags or quantifiers of subexpressions matching the empty string, are not
+ * compiled. Inputs containing surrogates are matched by {@link java.util.regex} as well, since it
+ * matches supplementary characters as a whole.
+ *
+ * @author allurx
+ */
+final class LinearPattern extends MaskPattern {
+
+    /**
+     * The maximum number of instructions of a program, larger programs are matched by {@link java.util.regex}.
+     */
+    private static final int MAX_SIZE = 4096;
+
+    /**
+     * The maximum number of instructions in the precomputed closures of a program.
+     */
+    private static final int MAX_CLOSURES = 65536;
+
+    private static final byte CHAR = 0;
+    private static final byte SET = 1;
+    private static final byte ANY = 2;
+    private static final byte SPLIT = 3;
+    private static final byte JUMP = 4;
+    private static final byte BEGIN = 5;
+    private static final byte END = 6;
+    private static final byte MATCH = 7;
+
+    private final byte[] ops;
+    private final int[] args;
+    private final int[] alternatives;
+    private final char[][] sets;
+    private final MaskPattern fallback;
+
+    /**
+     * The instructions consuming a character reachable from each instruction in priority order,
+     * or {@code null} if the program contains anchors or the closures are too large.
+     */
+    private final int[][] closures;
+
+    /**
+     * The characters that can start a match as a bit set, or {@code null} if a match can be empty.
+     */
+    private final long[] first;
+
+    private LinearPattern(Program program, MaskPattern fallback) {
+        this.ops = Arrays.copyOf(program.ops, program.size);
+        this.args = Arrays.copyOf(program.args, program.size);
+        this.alternatives = Arrays.copyOf(program.alternatives, program.size);
+        this.sets = program.sets.toArray(char[][]::new);
+        this.fallback = fallback;
+        this.closures = closures();
+        this.first = closures != null ? first(closures[0]) : null;
+    }
+
+    /**
+     * Computes the closure of every instruction, which is only possible if no instruction
+     * depends on the position of the input without consuming a character.
+     *
+     * @return The closures, or {@code null} if they cannot be precomputed
+     */
+    private int[][] closures() {
+        for (byte op : ops) {
+            if (op == BEGIN || op == END) {
+                return null;
+            }
+        }
+        int[][] result = new int[ops.length][];
+        boolean[] visited = new boolean[ops.length];
+        int[] stack = new int[2 * ops.length + 1];
+        int[] closure = new int[ops.length];
+        int total = 0;
+        for (int pc = 0; pc < ops.length; pc++) {
+            Arrays.fill(visited, false);
+            int size = 0;
+            int top = 0;
+            stack[top++] = pc;
+            while (top > 0) {
+                int instruction = stack[--top];
+                if (visited[instruction]) {
+                    continue;
+                }
+                visited[instruction] = true;
+                switch (ops[instruction]) {
+                    case JUMP -> stack[top++] = args[instruction];
+                    case SPLIT -> {
+                        stack[top++] = alternatives[instruction];
+                        stack[top++] = args[instruction];
+                    }
+                    default -> closure[size++] = instruction;
+                }
+            }
+            total += size;
+            if (total > MAX_CLOSURES) {
+                return null;
+            }
+            result[pc] = Arrays.copyOf(closure, size);
+        }
+        return result;
+    }
+
+    /**
+     * Computes the characters that can start a match.
+     *
+     * @param start The closure of the first instruction
+     * @return The characters as a bit set, or {@code null} if a match can be empty
+     */
+    private long[] first(int[] start) {
+        long[] bits = new long[1 << 10];
+        for (int pc : start) {
+            switch (ops[pc]) {
+                case CHAR -> bits[args[pc] >>> 6] |= 1L << args[pc];
+                case SET -> {
+                    char[] set = sets[args[pc]];
+                    for (int i = 0; i < set.length; i += 2) {
+                        for (int c = set[i]; c <= set[i + 1]; c++) {
+                            bits[c >>> 6] |= 1L << c;
+                        }
+                    }
+                }
+                case ANY -> {
+                    for (int c = 0; c <= Character.MAX_VALUE; c++) {
+                        if (c != '\n' && c != '\r' && (c | 1) != '\u2029' && c != '\u0085') {
+                            bits[c >>> 6] |= 1L << c;
+                        }
+                    }
+                }
+                default -> {
+                    return null;
+                }
+            }
+        }
+        return bits;
+    }
+
+    /**
+     * Compiles the regular expression if it only uses the supported subset of the syntax.
+     *
+     * @param regexp   The regular expression, which has already been validated by {@link java.util.regex.Pattern}
+     * @param fallback The regular expression compiled by {@link java.util.regex}, which matches inputs containing surrogates
+     * @return The compiled regular expression, or {@code null} if it is not supported
+     */
+    static LinearPattern compile(String regexp, MaskPattern fallback) {
+        try {
+            Node node = new Parser(regexp).parse();
+            Program program = new Program();
+            program.emit(node);
+            program.add(MATCH, 0, 0);
+            return new LinearPattern(program, fallback);
+        } catch (UnsupportedOperationException e) {
+            return null;
+        }
+    }
+
+    @Override
+    Masker masker() {
+        return new Simulation();
+    }
+
+    /**
+     * The simulation of the NFA, which reuses its thread lists between calls.
+     */
+    private final class Simulation implements Masker {
+
+        private final Threads current = new Threads(ops.length);
+        private final Threads next = new Threads(ops.length);
+        private final int[] stack = new int[2 * ops.length + 1];
+        private Masker fallbackMasker;
+        private int start;
+        private int end;
+
+        @Override
+        public void mask(CharSequence input, int from, int to, char[] chars, char placeholder) {
+            for (int i = from; i < to; i++) {
+                if (Character.isSurrogate(input.charAt(i))) {
+                    if (fallbackMasker == null) {
+                        fallbackMasker = fallback.masker();
+                    }
+                    fallbackMasker.mask(input, from, to, chars, placeholder);
+                    return;
+                }
+            }
+            int search = from;
+            while (find(input, from, to, search)) {
+                MaskKernels.fill(chars, start, end, placeholder);
+                // Like Matcher#find(), the next search starts one character later after an empty match
+                search = end == start ? end + 1 : end;
+                if (search > to) {
+                    return;
+                }
+            }
+        }
+
+        /**
+         * Finds the leftmost match starting at or after the search index.
+         *
+         * @param input  The characters to be matched
+         * @param from   The start of the region, inclusive
+         * @param to     The end of the region, exclusive
+         * @param search The index to start searching from
+         * @return {@code true} if a match was found, its bounds are stored in {@link #start} and {@link #end}
+         */
+        private boolean find(CharSequence input, int from, int to, int search) {
+            Threads threads = current;
+            Threads following = next;
+            threads.clear();
+            int matchStart = -1;
+            int matchEnd = -1;
+            for (int position = search; ; position++) {
+                if (matchStart < 0) {
+                    if (threads.size == 0 && first != null) {
+                        // Skip the characters that cannot start a match
+                        while (position < to && (first[input.charAt(position) >>> 6] & 1L << input.charAt(position)) == 0) {
+                            position++;
+                        }
+                        if (position == to) {
+                            break;
+                        }
+                    }
+                    // A thread starting here has a lower priority than the threads started before
+                    add(threads, 0, position, input, from, to, position);
+                } else if (threads.size == 0) {
+                    break;
+                }
+                following.clear();
+                char c = position < to ? input.charAt(position) : 0;
+                for (int i = 0; i < threads.size; i++) {
+                    int pc = threads.pcs[i];
+                    if (ops[pc] == MATCH) {
+                        // Threads with a lower priority can no longer produce the match
+                        matchStart = threads.starts[i];
+                        matchEnd = position;
+                        break;
+                    }
+                    boolean matched = position < to && switch (ops[pc]) {
+                        case CHAR -> c == args[pc];
+                        case SET -> contains(sets[args[pc]], c);
+                        case ANY -> c != '\n' && c != '\r' && (c | 1) != '\u2029' && c != '\u0085';
+                        default -> false;
+                    };
+                    if (matched) {
+                        add(following, pc + 1, threads.starts[i], input, from, to, position + 1);
+                    }
+                }
+                if (position >= to) {
+                    break;
+                }
+                Threads swap = threads;
+                threads = following;
+                following = swap;
+            }
+            start = matchStart;
+            end = matchEnd;
+            return matchStart >= 0;
+        }
+
+        /**
+         * Adds a thread and every thread reachable from it without consuming a character, in priority order.
+         *
+         * @param threads  The threads at the position
+         * @param pc       The instruction of the thread
+         * @param begin    The index at which the match of the thread started
+         * @param input    The characters to be matched
+         * @param from     The start of the region, inclusive
+         * @param to       The end of the region, exclusive
+         * @param position The index of the next character to be consumed
+         */
+        private void add(Threads threads, int pc, int begin, CharSequence input, int from, int to, int position) {
+            if (closures != null) {
+                for (int instruction : closures[pc]) {
+                    threads.add(instruction, begin);
+                }
+            } else {
+                follow(threads, pc, begin, input, from, to, position);
+            }
+        }
+
+        /**
+         * Adds a thread and every thread reachable from it by following the instructions that do not
+         * consume a character, evaluating anchors at the position.
+         *
+         * @param threads  The threads at the position
+         * @param pc       The instruction of the thread
+         * @param begin    The index at which the match of the thread started
+         * @param input    The characters to be matched
+         * @param from     The start of the region, inclusive
+         * @param to       The end of the region, exclusive
+         * @param position The index of the next character to be consumed
+         */
+        private void follow(Threads threads, int pc, int begin, CharSequence input, int from, int to, int position) {
+            int top = 0;
+            stack[top++] = pc;
+            while (top > 0) {
+                int instruction = stack[--top];
+                if (!threads.add(instruction, begin)) {
+                    continue;
+                }
+                switch (ops[instruction]) {
+                    case JUMP -> stack[top++] = args[instruction];
+                    case SPLIT -> {
+                        stack[top++] = alternatives[instruction];
+                        stack[top++] = args[instruction];
+                    }
+                    case BEGIN -> {
+                        if (position == from) {
+                            stack[top++] = instruction + 1;
+                        }
+                    }
+                    case END -> {
+                        if (end(input, position, to)) {
+                            stack[top++] = instruction + 1;
+                        }
+                    }
+                    default -> {
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Determines whether {@code $} matches at the position, which is the end of the region or
+     * before a line terminator at the end of the region.
+     *
+     * @param input    The characters to be matched
+     * @param position The position
+     * @param to       The end of the region, exclusive
+     * @return {@code true} if {@code $} matches
+     */
+    private static boolean end(CharSequence input, int position, int to) {
+        if (position == to) {
+            return true;
+        }
+        if (position == to - 2) {
+            return input.charAt(position) == '\r' && input.charAt(position + 1) == '\n';
+        }
+        if (position == to - 1) {
+            char c = input.charAt(position);
+            if (c == '\n') {
+                return position == 0 || input.charAt(position - 1) != '\r';
+            }
+            return c == '\r' || c == '\u0085' || (c | 1) == '\u2029';
+        }
+        return false;
+    }
+
+    /**
+     * Determines whether the character is in the set.
+     *
+     * @param set The sorted, disjoint ranges of the set as pairs of inclusive bounds
+     * @param c   The character
+     * @return {@code true} if the set contains the character
+     */
+    private static boolean contains(char[] set, char c) {
+        for (int i = 0; i < set.length && set[i] <= c; i += 2) {
+            if (c <= set[i + 1]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * The threads of the simulation at one position, as a sparse set of instructions in priority order.
+     */
+    private static final class Threads {
+
+        private final int[] pcs;
+        private final int[] starts;
+        private final int[] indices;
+        private int size;
+
+        private Threads(int capacity) {
+            pcs = new int[capacity];
+            starts = new int[capacity];
+            indices = new int[capacity];
+        }
+
+        private void clear() {
+            size = 0;
+        }
+
+        /**
+         * Adds the thread unless a thread with a higher priority is at the same instruction.
+         *
+         * @param pc    The instruction of the thread
+         * @param start The index at which the match of the thread started
+         * @return {@code true} if the thread was added
+         */
+        private boolean add(int pc, int start) {
+            int index = indices[pc];
+            if (index < size && pcs[index] == pc) {
+                return false;
+            }
+            indices[pc] = size;
+            pcs[size] = pc;
+            starts[size++] = start;
+            return true;
+        }
+    }
+
+    /**
+     * A node of the syntax tree.
+     */
+    private sealed interface Node {
+    }
+
+    private record Literal(char value) implements Node {
+    }
+
+    private record CharSet(char[] ranges) implements Node {
+    }
+
+    private record Any() implements Node {
+    }
+
+    private record Begin() implements Node {
+    }
+
+    private record End() implements Node {
+    }
+
+    private record Concat(List<Node> nodes) implements Node {
+    }
+
+    private record Alternation(List<Node> nodes) implements Node {
+    }
+
+    private record Repeat(Node node, int min, int max, boolean greedy) implements Node {
+    }
+
+    /**
+     * Determines whether the node matches the empty string.
+     *
+     * @param node The node
+     * @return {@code true} if the node can match without consuming a character
+     */
+    private static boolean nullable(Node node) {
+        return switch (node) {
+            case Literal ignored -> false;
+            case CharSet ignored -> false;
+            case Any ignored -> false;
+            case Begin ignored -> true;
+            case End ignored -> true;
+            case Concat concat -> concat.nodes().stream().allMatch(LinearPattern::nullable);
+            case Alternation alternation -> alternation.nodes().stream().anyMatch(LinearPattern::nullable);
+            case Repeat repeat -> repeat.min() == 0 || nullable(repeat.node());
+        };
+    }
+
+    /**
+     * Parses the supported subset of the syntax, throwing {@link UnsupportedOperationException} on anything else.
+     */
+    private static final class Parser {
+
+        private final String regexp;
+        private int index;
+
+        private Parser(String regexp) {
+            this.regexp = regexp;
+        }
+
+        private Node parse() {
+            Node node = alternation();
+            if (index < regexp.length()) {
+                throw new UnsupportedOperationException();
+            }
+            return node;
+        }
+
+        private Node alternation() {
+            List<Node> nodes = new ArrayList<>();
+            nodes.add(concat());
+            while (peek('|')) {
+                index++;
+                nodes.add(concat());
+            }
+            return nodes.size() == 1 ? nodes.getFirst() : new Alternation(nodes);
+        }
+
+        private Node concat() {
+            List<Node> nodes = new ArrayList<>();
+            while (index < regexp.length() && !peek('|') && !peek(')')) {
+                nodes.add(quantified(atom()));
+            }
+            return nodes.size() == 1 ? nodes.getFirst() : new Concat(nodes);
+        }
+
+        private Node atom() {
+            char c = regexp.charAt(index++);
+            return switch (c) {
+                case '(' -> {
+                    if (peek('?')) {
+                        if (index + 1 >= regexp.length() || regexp.charAt(index + 1) != ':') {
+                            throw new UnsupportedOperationException();
+                        }
+                        index += 2;
+                    }
+                    Node node = alternation();
+                    if (!peek(')')) {
+                        throw new UnsupportedOperationException();
+                    }
+                    index++;
+                    yield node;
+                }
+                case '[' -> charSet();
+                case '.' -> new Any();
+                case '^' -> new Begin();
+                case '$' -> new End();
+                case '\\' -> {
+                    char[] set = predefined();
+                    yield set != null ? new CharSet(set) : new Literal(escape());
+                }
+                case '*', '+', '?', '{' -> throw new UnsupportedOperationException();
+                default -> new Literal(literal(c));
+            };
+        }
+
+        private Node quantified(Node node) {
+            if (index >= regexp.length()) {
+                return node;
+            }
+            int min;
+            int max;
+            switch (regexp.charAt(index)) {
+                case '*' -> {
+                    min = 0;
+                    max = -1;
+                }
+                case '+' -> {
+                    min = 1;
+                    max = -1;
+                }
+                case '?' -> {
+                    min = 0;
+                    max = 1;
+                }
+                case '{' -> {
+                    index++;
+                    min = number();
+                    max = min;
+                    if (peek(',')) {
+                        index++;
+                        max = peek('}') ? -1 : number();
+                    }
+                    if (!peek('}')) {
+                        throw new UnsupportedOperationException();
+                    }
+                }
+                default -> {
+                    return node;
+                }
+            }
+            index++;
+            boolean greedy = true;
+            if (peek('?')) {
+                greedy = false;
+                index++;
+            } else if (peek('+')) {
+                // Possessive quantifiers
+                throw new UnsupportedOperationException();
+            }
+            // Java stops iterating once an iteration matched the empty string, which the simulation does not model
+            if (node instanceof Begin || node instanceof End || max != 1 && nullable(node)) {
+                throw new UnsupportedOperationException();
+            }
+            return new Repeat(node, min, max, greedy);
+        }
+
+        private int number() {
+            int begin = index;
+            while (index < regexp.length() && regexp.charAt(index) >= '0' && regexp.charAt(index) <= '9') {
+                index++;
+            }
+            if (index == begin || index - begin > 4) {
+                throw new UnsupportedOperationException();
+            }
+            return Integer.parseInt(regexp, begin, index, 10);
+        }
+
+        private Node charSet() {
+            boolean negated = peek('^');
+            if (negated) {
+                index++;
+            }
+            if (peek(']')) {
+                throw new UnsupportedOperationException();
+            }
+            List<char[]> ranges = new ArrayList<>();
+            boolean first = true;
+            while (!peek(']')) {
+                if (index >= regexp.length()) {
+                    throw new UnsupportedOperationException();
+                }
+                char c = regexp.charAt(index++);
+                char low;
+                switch (c) {
+                    case '[' -> throw new UnsupportedOperationException();
+                    case '&' -> {
+                        if (peek('&')) {
+                            throw new UnsupportedOperationException();
+                        }
+                        low = c;
+                    }
+                    case '-' -> {
+                        if (!first && !peek(']')) {
+                            throw new UnsupportedOperationException();
+                        }
+                        low = c;
+                    }
+                    case '\\' -> {
+                        char[] set = predefined();
+                        if (set != null) {
+                            ranges.add(set);
+                            first = false;
+                            continue;
+                        }
+                        low = escape();
+                    }
+                    default -> low = literal(c);
+                }
+                first = false;
+                char high = low;
+                if (peek('-') && index + 1 < regexp.length() && regexp.charAt(index + 1) != ']') {
+                    index++;
+                    char bound = regexp.charAt(index++);
+                    if (bound == '\\') {
+                        if (predefined() != null) {
+                            throw new UnsupportedOperationException();
+                        }
+                        high = escape();
+                    } else if (bound == '[' || bound == '&' || bound == '-') {
+                        throw new UnsupportedOperationException();
+                    } else {
+                        high = literal(bound);
+                    }
+                    if (high < low) {
+                        throw new UnsupportedOperationException();
+                    }
+                }
+                ranges.add(new char[]{low, high});
+            }
+            index++;
+            char[] set = union(ranges);
+            return new CharSet(negated ? complement(set) : set);
+        }
+
+        /**
+         * Parses a predefined character class after a backslash.
+         *
+         * @return The ranges of the class, or {@code null} if the escape is not a predefined class
+         */
+        private char[] predefined() {
+            if (index >= regexp.length()) {
+                throw new UnsupportedOperationException();
+            }
+            char[] set = switch (regexp.charAt(index)) {
+                case 'd', 'D' -> new char[]{'0', '9'};
+                case 'w', 'W' -> new char[]{'0', '9', 'A', 'Z', '_', '_', 'a', 'z'};
+                case 's', 'S' -> new char[]{'\t', '\r', ' ', ' '};
+                default -> null;
+            };
+            if (set == null) {
+                return null;
+            }
+            return Character.isUpperCase(regexp.charAt(index++)) ? complement(set) : set;
+        }
+
+        /**
+         * Parses an escaped character after a backslash.
+         *
+         * @return The character
+         */
+        private char escape() {
+            char c = regexp.charAt(index++);
+            return switch (c) {
+                case 't' -> '\t';
+                case 'n' -> '\n';
+                case 'r' -> '\r';
+                case 'f' -> '\f';
+                case 'a' -> '\u0007';
+                case 'e' -> '\u001B';
+                case 'x' -> literal(hex(2));
+                case 'u' -> literal(hex(4));
+                default -> {
+                    // Letters and digits denote constructs such as boundaries and back references
+                    if (c >= '0' && c <= '9' || c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z') {
+                        throw new UnsupportedOperationException();
+                    }
+                    yield literal(c);
+                }
+            };
+        }
+
+        private char hex(int digits) {
+            if (index + digits > regexp.length()) {
+                throw new UnsupportedOperationException();
+            }
+            int value = 0;
+            for (int i = 0; i < digits; i++) {
+                int digit = Character.digit(regexp.charAt(index++), 16);
+                if (digit < 0) {
+                    throw new UnsupportedOperationException();
+                }
+                value = value << 4 | digit;
+            }
+            return (char) value;
+        }
+
+        private char literal(char c) {
+            if (Character.isSurrogate(c)) {
+                throw new UnsupportedOperationException();
+            }
+            return c;
+        }
+
+        private boolean peek(char c) {
+            return index < regexp.length() && regexp.charAt(index) == c;
+        }
+
+        /**
+         * Merges ranges into sorted, disjoint ranges.
+         *
+         * @param sets The ranges as pairs of inclusive bounds
+         * @return The merged ranges
+         */
+        private static char[] union(List<char[]> sets) {
+            List<int[]> ranges = new ArrayList<>();
+            for (char[] set : sets) {
+                for (int i = 0; i < set.length; i += 2) {
+                    ranges.add(new int[]{set[i], set[i + 1]});
+                }
+            }
+            ranges.sort((a, b) -> a[0] - b[0]);
+            int[] merged = new int[ranges.size() * 2];
+            int size = 0;
+            for (int[] range : ranges) {
+                if (size > 0 && range[0] <= merged[size - 1] + 1) {
+                    merged[size - 1] = Math.max(merged[size - 1], range[1]);
+                } else {
+                    merged[size++] = range[0];
+                    merged[size++] = range[1];
+                }
+            }
+            char[] set = new char[size];
+            for (int i = 0; i < size; i++) {
+                set[i] = (char) merged[i];
+            }
+            return set;
+        }
+
+        /**
+         * Returns the characters that are not in the set.
+         *
+         * @param set The sorted, disjoint ranges
+         * @return The complement of the ranges
+         */
+        private static char[] complement(char[] set) {
+            char[] result = new char[set.length + 2];
+            int size = 0;
+            int next = 0;
+            for (int i = 0; i < set.length; i += 2) {
+                if (set[i] > next) {
+                    result[size++] = (char) next;
+                    result[size++] = (char) (set[i] - 1);
+                }
+                next = set[i + 1] + 1;
+            }
+            if (next <= Character.MAX_VALUE) {
+                result[size++] = (char) next;
+                result[size++] = Character.MAX_VALUE;
+            }
+            return Arrays.copyOf(result, size);
+        }
+    }
+
+    /**
+     * The instructions of the NFA, emitted from the syntax tree.
+     */
+    private static final class Program {
+
+        private byte[] ops = new byte[16];
+        private int[] args = new int[16];
+        private int[] alternatives = new int[16];
+        private final List<char[]> sets = new ArrayList<>();
+        private int size;
+
+        private int add(byte op, int arg, int alternative) {
+            if (size == MAX_SIZE) {
+                throw new UnsupportedOperationException();
+            }
+            if (size == ops.length) {
+                ops = Arrays.copyOf(ops, size * 2);
+                args = Arrays.copyOf(args, size * 2);
+                alternatives = Arrays.copyOf(alternatives, size * 2);
+            }
+            ops[size] = op;
+            args[size] = arg;
+            alternatives[size] = alternative;
+            return size++;
+        }
+
+        /**
+         * Points a split to its targets, the preferred one first.
+         */
+        private void split(int pc, int preferred, int other) {
+            args[pc] = preferred;
+            alternatives[pc] = other;
+        }
+
+        private void emit(Node node) {
+            switch (node) {
+                case Literal literal -> add(CHAR, literal.value(), 0);
+                case CharSet set -> {
+                    sets.add(set.ranges());
+                    add(SET, sets.size() - 1, 0);
+                }
+                case Any ignored -> add(ANY, 0, 0);
+                case Begin ignored -> add(BEGIN, 0, 0);
+                case End ignored -> add(END, 0, 0);
+                case Concat concat -> concat.nodes().forEach(this::emit);
+                case Alternation alternation -> {
+                    List<Node> nodes = alternation.nodes();
+                    int[] jumps = new int[nodes.size() - 1];
+                    for (int i = 0; i < jumps.length; i++) {
+                        int split = add(SPLIT, 0, 0);
+                        emit(nodes.get(i));
+                        jumps[i] = add(JUMP, 0, 0);
+                        split(split, split + 1, size);
+                    }
+                    emit(nodes.getLast());
+                    for (int jump : jumps) {
+                        args[jump] = size;
+                    }
+                }
+                case Repeat repeat -> {
+                    for (int i = 0; i < repeat.min(); i++) {
+                        emit(repeat.node());
+                    }
+                    if (repeat.max() < 0) {
+                        int split = add(SPLIT, 0, 0);
+                        emit(repeat.node());
+                        add(JUMP, split, 0);
+                        split(split, repeat.greedy() ? split + 1 : size, repeat.greedy() ? size : split + 1);
+                    } else {
+                        // Each optional iteration is only tried after the previous one matched
+                        int[] splits = new int[repeat.max() - repeat.min()];
+                        for (int i = 0; i < splits.length; i++) {
+                            splits[i] = add(SPLIT, 0, 0);
+                            emit(repeat.node());
+                        }
+                        for (int split : splits) {
+                            split(split, repeat.greedy() ? split + 1 : size, repeat.greedy() ? size : split + 1);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+}
@@ -0,0 +1,236 @@
+/*
+ * Copyright 2024 allurx
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.allurx.blur.handler;
+
+import java.io.Serial;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A bounded cache of blurred strings, keyed on the original string and the blurring rule applied to it.
+ * Entries expire after a fixed time to live and the least recently used entries are evicted once the
+ * cache is full, so the original strings are not retained longer than necessary. Expired entries are swept
+ * from a segment of the cache whenever it is read or written, and at least once per time to live all of
+ * its entries are checked, including the ones read recently.
+ * <p>
+ * The cache is disabled by default and can be enabled with {@link AbstractCharSequenceHandler#cache(MaskCache)}.
+ *
+ * @author allurx
+ */
+public final class MaskCache {
+
+    /**
+     * Number of independently locked segments.
+     */
+    private static final int SEGMENTS = 16;
+
+    private final Segment[] segments = new Segment[SEGMENTS];
+    private final long timeToLive;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * Creates a cache.
+     *
+     * @param maximumSize The maximum number of blurred strings kept in the cache
+     * @param timeToLive  How long a blurred string is kept after it was computed
+     * @throws IllegalArgumentException if the size or the time to live is not positive
+     */
+    public MaskCache(int maximumSize, Duration timeToLive) {
+        if (maximumSize <= 0 || timeToLive.isNegative() || timeToLive.isZero()) {
+            throw new IllegalArgumentException("maximumSize: %s, timeToLive: %s".formatted(maximumSize, timeToLive));
+        }
+        this.timeToLive = timeToLive.toNanos();
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment(Math.max(1, maximumSize / SEGMENTS), System.nanoTime());
+        }
+    }
+
+    /**
+     * Returns the number of lookups that found a blurred string.
+     *
+     * @return The hit count
+     */
+    public long hitCount() {
+        return hits.sum();
+    }
+
+    /**
+     * Returns the number of lookups that did not find a blurred string.
+     *
+     * @return The miss count
+     */
+    public long missCount() {
+        return misses.sum();
+    }
+
+    /**
+     * Returns the ratio of lookups that found a blurred string.
+     *
+     * @return The hit rate, or {@code 0} if there was no lookup yet
+     */
+    public double hitRate() {
+        long hitCount = hitCount();
+        long total = hitCount + missCount();
+        return total == 0 ? 0 : (double) hitCount / total;
+    }
+
+    /**
+     * Returns the number of blurred strings currently cached, after removing the expired ones.
+     *
+     * @return The size of the cache
+     */
+    public int size() {
+        int size = 0;
+        long now = System.nanoTime();
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                segment.sweep(now, true);
+                size += segment.size();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Removes every blurred string from the cache.
+     */
+    public void clear() {
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                segment.clear();
+            }
+        }
+    }
+
+    /**
+     * Returns the cached blurred string.
+     *
+     * @param key The original string and blurring rule
+     * @return The blurred string, or {@code null} if it is not cached or has expired
+     */
+    String get(Key key) {
+        Segment segment = segment(key);
+        long now = System.nanoTime();
+        synchronized (segment) {
+            segment.sweep(now, now - segment.sweptAt - timeToLive >= 0);
+            Entry entry = segment.get(key);
+            if (entry != null && entry.expiresAt - now > 0) {
+                hits.increment();
+                return entry.value;
+            }
+            if (entry != null) {
+                segment.remove(key);
+            }
+        }
+        misses.increment();
+        return null;
+    }
+
+    /**
+     * Caches the blurred string.
+     *
+     * @param key   The original string and blurring rule
+     * @param value The blurred string
+     */
+    void put(Key key, String value) {
+        Segment segment = segment(key);
+        long now = System.nanoTime();
+        Entry entry = new Entry(value, now + timeToLive);
+        synchronized (segment) {
+            segment.sweep(now, now - segment.sweptAt - timeToLive >= 0);
+            segment.put(key, entry);
+        }
+    }
+
+    private Segment segment(Key key) {
+        int hash = key.hashCode();
+        return segments[(hash ^ (hash >>> 16)) & (SEGMENTS - 1)];
+    }
+
+    /**
+     * The original string together with the blurring rule applied to it.
+     *
+     * @param input       The original string
+     * @param regexp      The regular expression for matching
+     * @param start       The starting offset of sensitive information
+     * @param end         The ending offset of sensitive information
+     * @param placeholder The character to replace sensitive information
+     */
+    record Key(String input, String regexp, int start, int end, char placeholder) {
+    }
+
+    /**
+     * A blurred string and the time at which it expires.
+     *
+     * @param value     The blurred string
+     * @param expiresAt The {@link System#nanoTime()} at which the entry expires
+     */
+    private record Entry(String value, long expiresAt) {
+    }
+
+    /**
+     * A least recently used map evicting its eldest entry once it is full, and sweeping its expired entries.
+     */
+    private static final class Segment extends LinkedHashMap<Key, Entry> {
+
+        @Serial
+        private static final long serialVersionUID = 1L;
+
+        private final int capacity;
+
+        /**
+         * The {@link System#nanoTime()} at which all entries were last checked for expiry.
+         */
+        private long sweptAt;
+
+        private Segment(int capacity, long now) {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+            this.sweptAt = now;
+        }
+
+        /**
+         * Removes the expired entries. Entries are mostly in the order they expire, so a partial sweep stops
+         * at the first live entry, while a full sweep also finds expired entries that were read recently.
+         *
+         * @param now  The current {@link System#nanoTime()}
+         * @param full Whether all entries are checked
+         */
+        private void sweep(long now, boolean full) {
+            if (full) {
+                sweptAt = now;
+            }
+            for (Iterator<Entry> iterator = values().iterator(); iterator.hasNext(); ) {
+                if (iterator.next().expiresAt - now <= 0) {
+                    iterator.remove();
+                } else if (!full) {
+                    return;
+                }
+            }
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+            return size() > capacity;
+        }
+    }
+
+}
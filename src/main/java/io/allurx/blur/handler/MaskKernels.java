@@ -0,0 +1,121 @@
+/*
+ * Copyright 2024 allurx
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.allurx.blur.handler;
+
+import java.util.Arrays;
+
+/**
+ * Bulk kernels for the copy, fill and scan steps of blurring. They are written in terms of
+ * {@link String#getChars(int, int, char[], int)}, {@link Arrays#fill(char[], int, int, char)} and
+ * simple counted loops, which the JIT compiles to vectorized code on platforms that support it.
+ *
+ * @author allurx
+ */
+final class MaskKernels {
+
+    private MaskKernels() {
+    }
+
+    /**
+     * The default regular expression of {@link io.allurx.blur.annotation.Email}, which masks
+     * everything between the first character and the last {@code '@'} of a line.
+     */
+    static final String EMAIL = "(?<=.).*(?=@)";
+
+    /**
+     * Copies the characters of the sequence into a new char array.
+     *
+     * @param input The original character sequence
+     * @return A char array containing the characters of the sequence
+     */
+    static char[] chars(CharSequence input) {
+        return switch (input) {
+            case String string -> string.toCharArray();
+            case StringBuilder builder -> {
+                char[] chars = new char[builder.length()];
+                builder.getChars(0, chars.length, chars, 0);
+                yield chars;
+            }
+            case StringBuffer buffer -> {
+                char[] chars = new char[buffer.length()];
+                buffer.getChars(0, chars.length, chars, 0);
+                yield chars;
+            }
+            default -> {
+                char[] chars = new char[input.length()];
+                for (int i = 0; i < chars.length; i++) {
+                    chars[i] = input.charAt(i);
+                }
+                yield chars;
+            }
+        };
+    }
+
+    /**
+     * Replaces the characters of the array in the range with the placeholder.
+     *
+     * @param chars       The char array
+     * @param start       The starting index, inclusive
+     * @param end         The ending index, exclusive
+     * @param placeholder The character used to replace sensitive characters
+     */
+    static void fill(char[] chars, int start, int end, char placeholder) {
+        if (start < end) {
+            Arrays.fill(chars, start, end, placeholder);
+        }
+    }
+
+    /**
+     * Masks the characters matched by {@link #EMAIL} without running the regular expression: everything
+     * from the second character up to the last {@code '@'}. Line terminators split the input into several
+     * lines for the regular expression, so inputs containing one are left to it, as are inputs starting
+     * with a surrogate pair.
+     *
+     * @param chars       The char array, which is blurred in place
+     * @param from        The index of the first character of the input, inclusive
+     * @param to          The index of the last character of the input, exclusive
+     * @param placeholder The character used to replace sensitive characters
+     * @return {@code true} if the input was handled; {@code false} if it must be matched by the regular expression
+     */
+    static boolean email(char[] chars, int from, int to, char placeholder) {
+        if (from < to && Character.isHighSurrogate(chars[from])) {
+            return false;
+        }
+        int at = -1;
+        for (int i = from; i < to; i++) {
+            char c = chars[i];
+            if (c == '@') {
+                at = i;
+            } else if (terminator(c)) {
+                return false;
+            }
+        }
+        fill(chars, from + 1, at, placeholder);
+        return true;
+    }
+
+    /**
+     * Determines whether the character is a line terminator that {@code '.'} does not match.
+     *
+     * @param c The character
+     * @return {@code true} if the character is a line terminator
+     */
+    private static boolean terminator(char c) {
+        return c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029';
+    }
+
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright 2024 allurx
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.allurx.blur.handler;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A compiled regular expression that masks the characters it matches. Regular expressions that only
+ * use the subset supported by {@link LinearPattern} are matched in time linear in the input, any
+ * other regular expression is matched by {@link java.util.regex}.
+ *
+ * @author allurx
+ */
+abstract class MaskPattern {
+
+    /**
+     * Cache for compiled regular expressions.
+     */
+    private static final ConcurrentMap<String, MaskPattern> PATTERN_CACHE = new ConcurrentHashMap<>();
+
+    /**
+     * Returns the compiled regular expression, compiling it on first use.
+     *
+     * @param regexp The regular expression
+     * @return The cached {@link MaskPattern}
+     * @throws java.util.regex.PatternSyntaxException if the regular expression is invalid
+     */
+    static MaskPattern of(String regexp) {
+        return PATTERN_CACHE.computeIfAbsent(regexp, MaskPattern::compile);
+    }
+
+    /**
+     * Compiles the regular expression. It is always compiled by {@link Pattern} as well, so that
+     * invalid regular expressions are rejected the same way whichever engine matches them.
+     *
+     * @param regexp The regular expression
+     * @return The compiled regular expression
+     */
+    private static MaskPattern compile(String regexp) {
+        Backtracking backtracking = new Backtracking(Pattern.compile(regexp));
+        MaskPattern linear = LinearPattern.compile(regexp, backtracking);
+        return linear != null ? linear : backtracking;
+    }
+
+    /**
+     * Creates a masker for this regular expression. A masker keeps the state of the matching
+     * between calls and must only be used by one thread at a time.
+     *
+     * @return A new masker
+     */
+    abstract Masker masker();
+
+    /**
+     * Masks the characters matched by a regular expression.
+     */
+    interface Masker {
+
+        /**
+         * Replaces the characters of every match of the regular expression in the region of the input,
+         * with the same semantics as {@link Matcher#find()} on a {@link Matcher} limited to that region.
+         *
+         * @param input       The characters to be matched
+         * @param from        The start of the region, inclusive
+         * @param to          The end of the region, exclusive
+         * @param chars       The characters to be masked, at the same indices as the input
+         * @param placeholder The character to replace sensitive information
+         */
+        void mask(CharSequence input, int from, int to, char[] chars, char placeholder);
+    }
+
+    /**
+     * A regular expression matched by {@link java.util.regex}.
+     */
+    static final class Backtracking extends MaskPattern {
+
+        private final Pattern pattern;
+
+        private Backtracking(Pattern pattern) {
+            this.pattern = pattern;
+        }
+
+        @Override
+        Masker masker() {
+            return new Masker() {
+
+                private CharSequence input;
+                private Matcher matcher;
+
+                @Override
+                public void mask(CharSequence input, int from, int to, char[] chars, char placeholder) {
+                    if (this.input != input) {
+                        this.input = input;
+                        matcher = pattern.matcher(input);
+                    }
+                    matcher.region(from, to);
+                    // Replace each character in the matched groups with the placeholder, empty groups are skipped
+                    while (matcher.find()) {
+                        MaskKernels.fill(chars, matcher.start(), matcher.end(), placeholder);
+                    }
+                }
+            };
+        }
+    }
+
+}
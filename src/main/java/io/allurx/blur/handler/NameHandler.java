@@ -30,6 +30,7 @@ public class NameHandler extends AbstractCharSequenceHandler<String, Name> {
      * Default constructor
      */
     public NameHandler() {
+        super(true);
     }
 
     /**
@@ -42,8 +43,8 @@ public class NameHandler extends AbstractCharSequenceHandler<String, Name> {
     @Override
     public String handle(String input, Name annotation) {
         return required(input, annotation.condition())
-                ? String.valueOf(blur(input, annotation.regexp(), annotation.startOffset(), annotation.endOffset(), annotation.placeholder()))
+                ? blurToString(input, annotation.regexp(), annotation.startOffset(), annotation.endOffset(), annotation.placeholder())
                 : input;
     }
 
-}
\ No newline at end of file
+}
@@ -30,6 +30,7 @@ public class PasswordHandler extends AbstractCharSequenceHandler<String, Passwor
      * Default constructor
      */
     public PasswordHandler() {
+        super(true);
     }
 
     /**
@@ -42,7 +43,7 @@ public class PasswordHandler extends AbstractCharSequenceHandler<String, Passwor
     @Override
     public String handle(String input, Password annotation) {
         return required(input, annotation.condition())
-                ? String.valueOf(blur(input, annotation.regexp(), annotation.startOffset(), annotation.endOffset(), annotation.placeholder()))
+                ? blurToString(input, annotation.regexp(), annotation.startOffset(), annotation.endOffset(), annotation.placeholder())
                 : input;
     }
 
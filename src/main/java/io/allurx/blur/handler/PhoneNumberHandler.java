@@ -30,6 +30,7 @@ public class PhoneNumberHandler extends AbstractCharSequenceHandler<String, Phon
      * Default constructor
      */
     public PhoneNumberHandler() {
+        super(true);
     }
 
     /**
@@ -42,8 +43,22 @@ public class PhoneNumberHandler extends AbstractCharSequenceHandler<String, Phon
     @Override
     public String handle(String input, PhoneNumber annotation) {
         return required(input, annotation.condition())
-                ? String.valueOf(blur(input, annotation.regexp(), annotation.startOffset(), annotation.endOffset(), annotation.placeholder()))
+                ? blurToString(input, annotation.regexp(), annotation.startOffset(), annotation.endOffset(), annotation.placeholder())
                 : input;
     }
 
+    /**
+     * Handles a number holding a phone number by blurring its decimal digits directly.
+     *
+     * @param input      The original number
+     * @param annotation The {@link PhoneNumber} annotation containing blurring configurations
+     * @return The blurred digits if required; otherwise, returns the digits of the original number
+     */
+    @Override
+    public String handle(long input, PhoneNumber annotation) {
+        return required(input, annotation.condition())
+                ? blurToString(input, annotation.regexp(), annotation.startOffset(), annotation.endOffset(), annotation.placeholder())
+                : Long.toString(input);
+    }
+
 }
@@ -0,0 +1,200 @@
+/*
+ * Copyright 2024 allurx
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.allurx.blur.handler;
+
+import io.allurx.blur.BudgetExceededException;
+
+import java.io.Serial;
+import java.time.Duration;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounds the time and the number of steps spent matching the regular expression of a single value, so that
+ * huge or adversarial values cannot keep a thread busy. A step is one character read by the regular expression
+ * engine, which grows with backtracking. Once a budget is exceeded, the matching is aborted and the
+ * {@link Fallback} decides the result.
+ * <p>
+ * No budget is applied by default, one can be set with {@link AbstractCharSequenceHandler#regexBudget(RegexBudget)}.
+ *
+ * @author allurx
+ */
+public final class RegexBudget {
+
+    /**
+     * The number of steps between two reads of the clock.
+     */
+    private static final int CHECK_INTERVAL = 1024;
+
+    private final long timeout;
+    private final long maxSteps;
+    private final Fallback fallback;
+    private final LongAdder exceeded = new LongAdder();
+
+    /**
+     * Creates a budget.
+     *
+     * @param timeout  The maximum time spent matching a single value
+     * @param maxSteps The maximum number of characters read while matching a single value
+     * @param fallback What happens to a value whose matching exceeded the budget
+     * @throws IllegalArgumentException if the time or the number of steps is not positive
+     */
+    public RegexBudget(Duration timeout, long maxSteps, Fallback fallback) {
+        if (timeout.isNegative() || timeout.isZero() || maxSteps <= 0) {
+            throw new IllegalArgumentException("timeout: %s, maxSteps: %s".formatted(timeout, maxSteps));
+        }
+        this.timeout = timeout.compareTo(Duration.ofNanos(Long.MAX_VALUE)) < 0 ? timeout.toNanos() : Long.MAX_VALUE;
+        this.maxSteps = maxSteps;
+        this.fallback = fallback;
+    }
+
+    /**
+     * Returns the number of values whose matching exceeded the budget.
+     *
+     * @return The exceeded count
+     */
+    public long exceededCount() {
+        return exceeded.sum();
+    }
+
+    /**
+     * Masks the characters matched by a regular expression within the budget.
+     *
+     * @param masker      The masker of the regular expression
+     * @param input       The characters to be matched, wrapped by {@link #wrap(CharSequence)}
+     * @param from        The start of the region, inclusive
+     * @param to          The end of the region, exclusive
+     * @param chars       The characters to be masked, at the same indices as the input
+     * @param placeholder The character to replace sensitive information
+     * @throws BudgetExceededException if the budget is exceeded and the fallback is {@link Fallback#FAIL}
+     */
+    void mask(MaskPattern.Masker masker, Sequence input, int from, int to, char[] chars, char placeholder) {
+        input.start();
+        try {
+            masker.mask(input, from, to, chars, placeholder);
+        } catch (Exceeded e) {
+            exceeded.increment();
+            if (fallback == Fallback.FAIL) {
+                throw new BudgetExceededException("regular expression matching exceeded %s ns or %s steps".formatted(timeout, maxSteps));
+            }
+            MaskKernels.fill(chars, from, to, placeholder);
+        }
+    }
+
+    /**
+     * Wraps the characters to be matched, so that every character read is counted against the budget.
+     *
+     * @param input The characters to be matched
+     * @return The wrapped characters, which can be matched again after each call to {@link #mask}
+     */
+    Sequence wrap(CharSequence input) {
+        return new Sequence(input);
+    }
+
+    /**
+     * What happens to a value whose matching exceeded the budget.
+     */
+    public enum Fallback {
+
+        /**
+         * Masks the value entirely with the placeholder.
+         */
+        MASK,
+
+        /**
+         * Aborts the call with a {@link BudgetExceededException}.
+         */
+        FAIL
+    }
+
+    /**
+     * A {@link CharSequence} counting the characters read and aborting the matching once the budget is exceeded.
+     * Its subsequences count the characters read against the same budget.
+     */
+    final class Sequence implements CharSequence {
+
+        private final CharSequence input;
+        private final Sequence counter;
+        private long started;
+        private long steps;
+        private long checkpoint;
+
+        private Sequence(CharSequence input) {
+            this.input = input;
+            this.counter = this;
+        }
+
+        private Sequence(CharSequence input, Sequence counter) {
+            this.input = input;
+            this.counter = counter;
+        }
+
+        /**
+         * Starts the budget of a new matching.
+         */
+        private void start() {
+            started = System.nanoTime();
+            steps = 0;
+            checkpoint = Math.min(CHECK_INTERVAL, maxSteps);
+        }
+
+        @Override
+        public char charAt(int index) {
+            Sequence sequence = counter;
+            if (++sequence.steps > sequence.checkpoint) {
+                sequence.check();
+            }
+            return input.charAt(index);
+        }
+
+        private void check() {
+            if (steps > maxSteps || System.nanoTime() - started > timeout) {
+                throw Exceeded.INSTANCE;
+            }
+            checkpoint = Math.min(steps + CHECK_INTERVAL, maxSteps);
+        }
+
+        @Override
+        public int length() {
+            return input.length();
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return new Sequence(input.subSequence(start, end), counter);
+        }
+
+        @Override
+        public String toString() {
+            return input.toString();
+        }
+    }
+
+    /**
+     * Thrown to abort the matching, without a stack trace since it is always caught.
+     */
+    private static final class Exceeded extends RuntimeException {
+
+        @Serial
+        private static final long serialVersionUID = 1L;
+
+        private static final Exceeded INSTANCE = new Exceeded();
+
+        private Exceeded() {
+            super(null, null, false, false);
+        }
+    }
+
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2024 allurx
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.allurx.blur.handler;
+
+/**
+ * Char arrays reused by each platform thread for blurring, so that the blurred {@link String} is the
+ * only allocation of a call. Virtual threads are cheap and numerous, so they do not keep a buffer of
+ * their own and allocate a new array instead, as do inputs longer than the configured maximum.
+ *
+ * @author allurx
+ */
+final class ScratchBuffer {
+
+    private ScratchBuffer() {
+    }
+
+    /**
+     * The default maximum length of the buffer of each thread.
+     */
+    static final int DEFAULT_MAX_LENGTH = 1024;
+
+    /**
+     * The smallest buffer allocated for a thread.
+     */
+    private static final int MIN_LENGTH = 64;
+
+    /**
+     * The buffer of each platform thread.
+     */
+    private static final ThreadLocal<char[]> BUFFERS = new ThreadLocal<>();
+
+    /**
+     * The maximum length of the buffer of each thread.
+     */
+    private static volatile int maxLength = DEFAULT_MAX_LENGTH;
+
+    /**
+     * Sets the maximum length of the buffer of each thread. Buffers already larger than it are
+     * dropped when they are next acquired.
+     *
+     * @param length The maximum length, {@code 0} disables the buffers
+     * @throws IllegalArgumentException if the length is negative
+     */
+    static void maxLength(int length) {
+        if (length < 0) {
+            throw new IllegalArgumentException("maxLength: %s".formatted(length));
+        }
+        maxLength = length;
+    }
+
+    /**
+     * Returns a char array of at least the given length. The array is only valid until the
+     * next call on the same thread, and its contents are unspecified.
+     *
+     * @param length The required length
+     * @return The buffer of the current thread, or a new array
+     */
+    static char[] acquire(int length) {
+        int max = maxLength;
+        if (length > max || Thread.currentThread().isVirtual()) {
+            return new char[length];
+        }
+        char[] buffer = BUFFERS.get();
+        if (buffer == null || buffer.length < length || buffer.length > max) {
+            buffer = new char[Math.min(max, Math.max(length, MIN_LENGTH))];
+            BUFFERS.set(buffer);
+        }
+        return buffer;
+    }
+
+}
@@ -30,6 +30,7 @@ public class StringHandler extends AbstractCharSequenceHandler<String, Strings>
      * Default constructor
      */
     public StringHandler() {
+        super(true);
     }
 
     /**
@@ -42,9 +43,8 @@ public class StringHandler extends AbstractCharSequenceHandler<String, Strings>
     @Override
     public String handle(String input, Strings annotation) {
         return required(input, annotation.condition())
-                ? String.valueOf(blur(input, annotation.regexp(), annotation.startOffset(), annotation.endOffset(), annotation.placeholder()))
+                ? blurToString(input, annotation.regexp(), annotation.startOffset(), annotation.endOffset(), annotation.placeholder())
                 : input;
     }
 
-
 }
@@ -0,0 +1,170 @@
+/*
+ * Copyright 2024 allurx
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.allurx.blur.plan;
+
+import java.lang.annotation.Annotation;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.stream.Collectors;
+
+/**
+ * Creates instances of annotation types at runtime, for annotations that are not declared in the
+ * source code, such as those built by rules or with attributes overridden by policies.
+ *
+ * @author allurx
+ */
+public final class Annotations {
+
+    private Annotations() {
+    }
+
+    /**
+     * Creates an annotation of the type. Attributes without a value take their default value.
+     *
+     * @param type   The annotation type
+     * @param values The values of the attributes by name
+     * @param <A>    The annotation type
+     * @return The annotation
+     * @throws IllegalArgumentException if an attribute is unknown, has a value of the wrong type, or has no value
+     */
+    public static <A extends Annotation> A synthesize(Class<A> type, Map<String, ?> values) {
+        Map<String, Object> attributes = new LinkedHashMap<>();
+        for (Method method : type.getDeclaredMethods()) {
+            Object value = values.containsKey(method.getName()) ? values.get(method.getName()) : method.getDefaultValue();
+            if (value == null) {
+                throw new IllegalArgumentException("Missing attribute %s of %s".formatted(method.getName(), type.getName()));
+            }
+            if (!MethodType.methodType(method.getReturnType()).wrap().returnType().isInstance(value)) {
+                throw new IllegalArgumentException("attribute: %s, value: %s".formatted(method.getName(), value));
+            }
+            attributes.put(method.getName(), value);
+        }
+        for (String name : values.keySet()) {
+            if (!attributes.containsKey(name)) {
+                throw new IllegalArgumentException("Unknown attribute %s of %s".formatted(name, type.getName()));
+            }
+        }
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, new Handler(type, attributes)));
+    }
+
+    /**
+     * Returns the values of the attributes of the annotation.
+     *
+     * @param annotation The annotation
+     * @return The values of the attributes by name
+     */
+    static Map<String, Object> values(Annotation annotation) {
+        Map<String, Object> values = new LinkedHashMap<>();
+        for (Method method : annotation.annotationType().getDeclaredMethods()) {
+            try {
+                method.trySetAccessible();
+                values.put(method.getName(), method.invoke(annotation));
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalStateException("Failed to read %s of %s".formatted(method.getName(), annotation), e);
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Implements the methods of a synthesized annotation as specified by {@link Annotation}.
+     *
+     * @param type       The annotation type
+     * @param attributes The values of the attributes by name
+     */
+    private record Handler(Class<? extends Annotation> type, Map<String, Object> attributes) implements InvocationHandler {
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if (method.getParameterCount() == 1 && name.equals("equals")) {
+                return same(args[0]);
+            }
+            if (method.getParameterCount() != 0) {
+                throw new UnsupportedOperationException(name);
+            }
+            return switch (name) {
+                case "annotationType" -> type;
+                // Wrapping each value in an array covers primitive arrays and arrays of annotations
+                case "hashCode" -> attributes.entrySet().stream()
+                        .mapToInt(entry -> (127 * entry.getKey().hashCode()) ^ (Arrays.deepHashCode(new Object[]{entry.getValue()}) - 31))
+                        .sum();
+                case "toString" -> attributes.entrySet().stream()
+                        .map(entry -> {
+                            String value = Arrays.deepToString(new Object[]{entry.getValue()});
+                            return entry.getKey() + "=" + value.substring(1, value.length() - 1);
+                        })
+                        .collect(Collectors.joining(", ", "@" + type.getName() + "(", ")"));
+                default -> copy(attributes.get(name));
+            };
+        }
+
+        /**
+         * Compares the annotation with another one attribute by attribute.
+         *
+         * @param other The other object
+         * @return {@code true} if the other object is an annotation of the same type with equal attributes
+         * @throws ReflectiveOperationException if an attribute of the other annotation cannot be read
+         */
+        private boolean same(Object other) throws ReflectiveOperationException {
+            if (!type.isInstance(other)) {
+                return false;
+            }
+            for (Map.Entry<String, Object> entry : attributes.entrySet()) {
+                Method method = type.getDeclaredMethod(entry.getKey());
+                method.trySetAccessible();
+                try {
+                    if (!Objects.deepEquals(entry.getValue(), method.invoke(other))) {
+                        return false;
+                    }
+                } catch (InvocationTargetException e) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Clones the value if it is an array, so that callers cannot modify the attribute.
+         *
+         * @param value The value of an attribute
+         * @return The value, or a copy of it if it is an array
+         */
+        private static Object copy(Object value) {
+            return switch (value) {
+                case Object[] array -> array.clone();
+                case int[] array -> array.clone();
+                case long[] array -> array.clone();
+                case char[] array -> array.clone();
+                case byte[] array -> array.clone();
+                case short[] array -> array.clone();
+                case float[] array -> array.clone();
+                case double[] array -> array.clone();
+                case boolean[] array -> array.clone();
+                default -> value;
+            };
+        }
+    }
+
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright 2024 allurx
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.allurx.blur.plan;
+
+import java.io.IOException;
+import java.lang.reflect.Array;
+import java.util.Arrays;
+import java.util.Set;
+
+/**
+ * A {@link Plan} that blurs each element of an object array into a new array.
+ * In copy-on-write traversal the array is only copied once an element changed.
+ *
+ * @author allurx
+ */
+public final class ArrayPlan implements Plan {
+
+    private final Plan componentPlan;
+
+    /**
+     * Creates a plan for arrays whose elements are blurred by the given plan.
+     *
+     * @param componentPlan The plan for the component type
+     */
+    ArrayPlan(Plan componentPlan) {
+        this.componentPlan = componentPlan;
+    }
+
+    @Override
+    public Object apply(Object value, Traversal traversal) {
+        if (!(value instanceof Object[] array)) {
+            return value;
+        }
+        Traversal.Visit visit = traversal.visit(array, this);
+        if (visit.started()) {
+            return visit.result() != null ? visit.result() : array;
+        }
+        if (!traversal.enter()) {
+            return traversal.exceeded(array);
+        }
+        try {
+            Class<?> componentType = array.getClass().getComponentType();
+            Object[] result = traversal.copyOnWrite() ? null : (Object[]) Array.newInstance(componentType, array.length);
+            visit.start(result);
+            HandlerPlan.Batch batch = batch(array);
+            for (int i = 0; i < array.length; i++) {
+                Object element;
+                if (traversal.step()) {
+                    element = Traversal.fit(batch == null ? componentPlan.apply(array[i], traversal) : batch.apply(i, array[i], traversal), componentType);
+                } else if (traversal.truncating()) {
+                    result = Arrays.copyOf(result == null ? array : result, i);
+                    break;
+                } else {
+                    element = Traversal.fit(traversal.exceeded(array[i]), componentType);
+                }
+                if (result == null && element != array[i]) {
+                    // Copy on first change, the elements before it are unchanged
+                    result = array.clone();
+                }
+                if (result != null) {
+                    result[i] = element;
+                }
+            }
+            return visit.complete(result == null ? array : result);
+        } finally {
+            traversal.exit();
+        }
+    }
+
+    @Override
+    public void render(Object value, Rendering output, Traversal traversal) throws IOException {
+        if (!(value instanceof Object[] array)) {
+            output.value(value, traversal);
+            return;
+        }
+        if (!traversal.render(array)) {
+            output.backReference(array);
+            return;
+        }
+        try {
+            output.beginArray();
+            HandlerPlan.Batch batch = batch(array);
+            for (int i = 0; i < array.length; i++) {
+                output.element(i == 0);
+                if (batch == null) {
+                    componentPlan.render(array[i], output, traversal);
+                } else {
+                    batch.render(i, array[i], output, traversal);
+                }
+            }
+            output.endArray();
+        } finally {
+            traversal.rendered(array);
+        }
+    }
+
+    /**
+     * Returns the batch evaluating the {@link io.allurx.blur.annotation.BatchCondition} of the elements chunk by chunk,
+     * if the component plan has one. The array is only wrapped, not copied.
+     *
+     * @param array The array
+     * @return The batch, or {@code null} if the elements are blurred one by one
+     */
+    private HandlerPlan.Batch batch(Object[] array) {
+        return componentPlan instanceof HandlerPlan handlerPlan ? handlerPlan.batch(Arrays.asList(array)) : null;
+    }
+
+    @Override
+    public void prepare(Set<Class<?>> prepared) {
+        componentPlan.prepare(prepared);
+    }
+
+    @Override
+    public boolean sensitive(Set<Class<?>> visited) {
+        return componentPlan.sensitive(visited);
+    }
+
+}
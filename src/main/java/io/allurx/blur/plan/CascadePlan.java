@@ -0,0 +1,90 @@
+/*
+ * Copyright 2024 allurx
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.allurx.blur.plan;
+
+import io.allurx.annotation.parser.AnnotationParser;
+import io.allurx.annotation.parser.type.Cascade;
+
+import java.io.IOException;
+import java.lang.reflect.AnnotatedType;
+import java.lang.reflect.Modifier;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * A {@link Plan} for types annotated with {@link Cascade}. The fields of the value are blurred
+ * according to the plan of its runtime class, which is compiled on first use and cached.
+ * Values whose class contains nothing to blur are returned as is, and values whose class cannot
+ * be copied reflectively are handed over to {@link AnnotationParser}. Rendering only reads the fields,
+ * so it never creates a blurred copy unless the fields of the class cannot be read at all.
+ *
+ * @author allurx
+ */
+public final class CascadePlan implements Plan {
+
+    private final AnnotatedType annotatedType;
+    private final boolean inherited;
+
+    /**
+     * Creates a plan for the cascaded type.
+     *
+     * @param annotatedType The annotated type carrying the {@link Cascade} annotation
+     * @param inherited     Whether the fields inherited from superclasses are blurred as well
+     */
+    CascadePlan(AnnotatedType annotatedType, boolean inherited) {
+        this.annotatedType = annotatedType;
+        this.inherited = inherited;
+    }
+
+    @Override
+    public Object apply(Object value, Traversal traversal) {
+        if (value == null) {
+            return null;
+        }
+        Optional<Plan> plan = ObjectPlan.of(value.getClass(), inherited);
+        return plan.isPresent() && ObjectPlan.copies(plan.get()) ? plan.get().apply(value, traversal) : AnnotationParser.parse(value, annotatedType);
+    }
+
+    @Override
+    public void render(Object value, Rendering output, Traversal traversal) throws IOException {
+        if (value == null) {
+            output.value(null, traversal);
+            return;
+        }
+        Optional<Plan> plan = ObjectPlan.of(value.getClass(), inherited);
+        if (plan.isPresent()) {
+            plan.get().render(value, output, traversal);
+        } else {
+            output.value(AnnotationParser.parse(value, annotatedType), traversal);
+        }
+    }
+
+    @Override
+    public void prepare(Set<Class<?>> prepared) {
+        Class<?> type = Plans.erase(annotatedType.getType());
+        if (!type.isInterface() && !Modifier.isAbstract(type.getModifiers()) && prepared.add(type)) {
+            ObjectPlan.of(type, inherited).ifPresent(plan -> plan.prepare(prepared));
+        }
+    }
+
+    @Override
+    public boolean sensitive(Set<Class<?>> visited) {
+        Class<?> type = Plans.erase(annotatedType.getType());
+        // A subclass of the declared type may always declare sensitive fields, so only final types are pruned here
+        return !Modifier.isFinal(type.getModifiers()) || ObjectPlan.sensitive(type, inherited, visited);
+    }
+
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright 2024 allurx
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.allurx.blur.plan;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Set;
+
+/**
+ * A {@link Plan} that blurs each element of a {@link Collection} into a new collection.
+ * In copy-on-write traversal the collection is only copied once an element changed.
+ *
+ * @author allurx
+ */
+public final class CollectionPlan implements Plan {
+
+    private final Plan elementPlan;
+
+    /**
+     * Creates a plan for collections whose elements are blurred by the given plan.
+     *
+     * @param elementPlan The plan for the element type
+     */
+    CollectionPlan(Plan elementPlan) {
+        this.elementPlan = elementPlan;
+    }
+
+    @Override
+    public Object apply(Object value, Traversal traversal) {
+        if (!(value instanceof Collection<?> collection)) {
+            return value;
+        }
+        Traversal.Visit visit = traversal.visit(collection, this);
+        if (visit.started()) {
+            return visit.result() != null ? visit.result() : collection;
+        }
+        if (!traversal.enter()) {
+            return traversal.exceeded(collection);
+        }
+        try {
+            Collection<Object> result = traversal.copyOnWrite() ? null : Containers.newCollection(collection);
+            visit.start(result);
+            HandlerPlan.Batch batch = batch(collection);
+            int index = 0;
+            for (Object element : collection) {
+                Object blurred;
+                if (traversal.step()) {
+                    blurred = batch == null ? elementPlan.apply(element, traversal) : batch.apply(index, element, traversal);
+                } else if (traversal.truncating()) {
+                    result = result == null ? copy(collection, index) : result;
+                    break;
+                } else {
+                    blurred = traversal.exceeded(element);
+                }
+                if (result == null && blurred != element) {
+                    // Copy on first change, the elements before it are unchanged
+                    result = copy(collection, index);
+                }
+                if (result != null) {
+                    result.add(blurred);
+                }
+                index++;
+            }
+            return visit.complete(result == null ? collection : result);
+        } finally {
+            traversal.exit();
+        }
+    }
+
+    @Override
+    public void render(Object value, Rendering output, Traversal traversal) throws IOException {
+        if (!(value instanceof Collection<?> collection)) {
+            output.value(value, traversal);
+            return;
+        }
+        if (!traversal.render(collection)) {
+            output.backReference(collection);
+            return;
+        }
+        try {
+            output.beginArray();
+            HandlerPlan.Batch batch = batch(collection);
+            int index = 0;
+            for (Object element : collection) {
+                output.element(index == 0);
+                if (batch == null) {
+                    elementPlan.render(element, output, traversal);
+                } else {
+                    batch.render(index, element, output, traversal);
+                }
+                index++;
+            }
+            output.endArray();
+        } finally {
+            traversal.rendered(collection);
+        }
+    }
+
+    /**
+     * Returns the batch evaluating the {@link io.allurx.blur.annotation.BatchCondition} of the elements chunk by chunk,
+     * if the element plan has one.
+     *
+     * @param collection The collection
+     * @return The batch, or {@code null} if the elements are blurred one by one
+     */
+    private HandlerPlan.Batch batch(Collection<?> collection) {
+        return elementPlan instanceof HandlerPlan handlerPlan ? handlerPlan.batch(collection) : null;
+    }
+
+    /**
+     * Copies the leading elements of the collection into a new collection.
+     *
+     * @param collection The source collection
+     * @param count      The number of leading elements to copy
+     * @return A new collection of the same kind
+     */
+    private static Collection<Object> copy(Collection<?> collection, int count) {
+        Collection<Object> result = Containers.newCollection(collection);
+        Iterator<?> iterator = collection.iterator();
+        for (int i = 0; i < count; i++) {
+            result.add(iterator.next());
+        }
+        return result;
+    }
+
+    @Override
+    public void prepare(Set<Class<?>> prepared) {
+        elementPlan.prepare(prepared);
+    }
+
+    @Override
+    public boolean sensitive(Set<Class<?>> visited) {
+        return elementPlan.sensitive(visited);
+    }
+
+}
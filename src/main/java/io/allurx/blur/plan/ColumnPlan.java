@@ -0,0 +1,85 @@
+/*
+ * Copyright 2024 allurx
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.allurx.blur.plan;
+
+import java.lang.reflect.AnnotatedType;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Blurs a column of strings, such as one column of an export, by the sensitive annotations of an
+ * annotated type. Each annotation is applied to the whole column at once instead of value by value.
+ *
+ * @author allurx
+ */
+public final class ColumnPlan {
+
+    /**
+     * Cache for compiled plans.
+     */
+    private static final ConcurrentMap<AnnotatedType, ColumnPlan> PLAN_CACHE = new ConcurrentHashMap<>();
+
+    private final HandlerPlan[] plans;
+
+    /**
+     * Creates a plan for the sensitive annotations.
+     *
+     * @param plans The plans of the sensitive annotations, in declaration order
+     */
+    private ColumnPlan(HandlerPlan[] plans) {
+        this.plans = plans;
+    }
+
+    /**
+     * Discards every compiled plan, so that the handlers registered since are dispatched on next use.
+     */
+    static void reset() {
+        PLAN_CACHE.clear();
+    }
+
+    /**
+     * Returns the plan for the annotated type, compiling it on first use.
+     *
+     * @param annotatedType The annotated type of the values of the column
+     * @return The plan for columns of the annotated type
+     */
+    public static ColumnPlan of(AnnotatedType annotatedType) {
+        return PLAN_CACHE.computeIfAbsent(annotatedType, type -> new ColumnPlan(Arrays.stream(type.getAnnotations())
+                .filter(HandlerPlan::supports)
+                .map(HandlerPlan::new)
+                .toArray(HandlerPlan[]::new)));
+    }
+
+    /**
+     * Blurs every value of the column.
+     *
+     * @param column The column to be blurred, may contain {@code null} values
+     * @return A new column with the values blurred, or {@code null} if the column is {@code null}
+     */
+    public String[] apply(String[] column) {
+        if (column == null) {
+            return null;
+        }
+        String[] result = column;
+        for (HandlerPlan plan : plans) {
+            result = plan.handle(result);
+        }
+        return result == column ? column.clone() : result;
+    }
+
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright 2024 allurx
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.allurx.blur.plan;
+
+import java.io.IOException;
+import java.util.Set;
+
+/**
+ * A {@link Plan} that applies several plans one after another.
+ *
+ * @author allurx
+ */
+public final class CompositePlan implements Plan {
+
+    private final Plan[] plans;
+
+    /**
+     * Creates a plan applying the given plans in order.
+     *
+     * @param plans The plans to apply
+     */
+    CompositePlan(Plan[] plans) {
+        this.plans = plans;
+    }
+
+    @Override
+    public Object apply(Object value, Traversal traversal) {
+        for (Plan plan : plans) {
+            value = plan.apply(value, traversal);
+        }
+        return value;
+    }
+
+    @Override
+    public void render(Object value, Rendering output, Traversal traversal) throws IOException {
+        // Only the last plan writes, the plans before it have to create their result for it
+        for (int i = 0; i < plans.length - 1; i++) {
+            value = plans[i].apply(value, traversal);
+        }
+        plans[plans.length - 1].render(value, output, traversal);
+    }
+
+    @Override
+    public void prepare(Set<Class<?>> prepared) {
+        for (Plan plan : plans) {
+            plan.prepare(prepared);
+        }
+    }
+
+    @Override
+    public boolean sensitive(Set<Class<?>> visited) {
+        for (Plan plan : plans) {
+            if (plan.sensitive(visited)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+}
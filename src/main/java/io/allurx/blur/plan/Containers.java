@@ -0,0 +1,120 @@
+/*
+ * Copyright 2024 allurx
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.allurx.blur.plan;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.function.Supplier;
+
+/**
+ * Creates empty containers of the same kind as a source container.
+ * A public no-arg constructor of the source class is used when available,
+ * otherwise the most general mutable implementation of the same interface.
+ *
+ * @author allurx
+ */
+final class Containers {
+
+    private Containers() {
+    }
+
+    /**
+     * Cache for collection factories.
+     */
+    private static final ClassValue<Supplier<Object>> COLLECTION_FACTORIES = new ClassValue<>() {
+        @Override
+        protected Supplier<Object> computeValue(Class<?> type) {
+            return constructor(type).orElseGet(() ->
+                    Set.class.isAssignableFrom(type) ? LinkedHashSet::new :
+                            Queue.class.isAssignableFrom(type) ? LinkedList::new : ArrayList::new);
+        }
+    };
+
+    /**
+     * Cache for map factories.
+     */
+    private static final ClassValue<Supplier<Object>> MAP_FACTORIES = new ClassValue<>() {
+        @Override
+        protected Supplier<Object> computeValue(Class<?> type) {
+            return constructor(type).orElse(LinkedHashMap::new);
+        }
+    };
+
+    /**
+     * Creates an empty collection of the same kind as the source.
+     *
+     * @param source The source collection
+     * @return A new empty collection
+     */
+    @SuppressWarnings("unchecked")
+    static Collection<Object> newCollection(Collection<?> source) {
+        return source instanceof SortedSet<?> sortedSet
+                ? new TreeSet<>((Comparator<Object>) sortedSet.comparator())
+                : (Collection<Object>) COLLECTION_FACTORIES.get(source.getClass()).get();
+    }
+
+    /**
+     * Creates an empty map of the same kind as the source.
+     *
+     * @param source The source map
+     * @return A new empty map
+     */
+    @SuppressWarnings("unchecked")
+    static Map<Object, Object> newMap(Map<?, ?> source) {
+        return source instanceof SortedMap<?, ?> sortedMap
+                ? new TreeMap<>((Comparator<Object>) sortedMap.comparator())
+                : (Map<Object, Object>) MAP_FACTORIES.get(source.getClass()).get();
+    }
+
+    /**
+     * Finds the public no-arg constructor of a public class.
+     *
+     * @param type The container class
+     * @return A factory invoking the constructor, or empty if there is none
+     */
+    private static Optional<Supplier<Object>> constructor(Class<?> type) {
+        if (!Modifier.isPublic(type.getModifiers())) {
+            return Optional.empty();
+        }
+        try {
+            Constructor<?> constructor = type.getConstructor();
+            return Optional.of(() -> {
+                try {
+                    return constructor.newInstance();
+                } catch (ReflectiveOperationException e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+        } catch (NoSuchMethodException e) {
+            return Optional.empty();
+        }
+    }
+
+}
@@ -0,0 +1,46 @@
+/*
+ * Copyright 2024 allurx
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.allurx.blur.plan;
+
+import io.allurx.annotation.parser.AnnotationParser;
+
+import java.lang.reflect.AnnotatedType;
+
+/**
+ * A {@link Plan} for annotated types whose structure is not understood by the precompiled plans.
+ * Such values are handed over to {@link AnnotationParser} unchanged.
+ *
+ * @author allurx
+ */
+public final class FallbackPlan implements Plan {
+
+    private final AnnotatedType annotatedType;
+
+    /**
+     * Creates a plan delegating to {@link AnnotationParser}.
+     *
+     * @param annotatedType The annotated type of the values
+     */
+    FallbackPlan(AnnotatedType annotatedType) {
+        this.annotatedType = annotatedType;
+    }
+
+    @Override
+    public Object apply(Object value, Traversal traversal) {
+        return AnnotationParser.parse(value, annotatedType);
+    }
+
+}
@@ -0,0 +1,355 @@
+/*
+ * Copyright 2024 allurx
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.allurx.blur.plan;
+
+import io.allurx.annotation.parser.handler.AnnotationHandler;
+import io.allurx.annotation.parser.util.InstanceCreators;
+import io.allurx.blur.annotation.AlwaysTrue;
+import io.allurx.blur.annotation.BatchCondition;
+import io.allurx.blur.handler.AbstractCharSequenceHandler;
+
+import java.io.IOException;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A {@link Plan} that applies the {@link AnnotationHandler} of a sensitive annotation, as dispatched
+ * by {@link Handlers}. The handler instance and the type of input it accepts are resolved once
+ * when the plan is created. The attributes of the annotation may be overridden at runtime by
+ * {@link Policies}, the effective annotation is resolved again whenever the policies change.
+ *
+ * @author allurx
+ */
+public final class HandlerPlan implements Plan {
+
+    private final Annotation annotation;
+    private final Field site;
+    private volatile Resolved resolved;
+    private final AnnotationHandler<Object, Annotation, Object> handler;
+    private final Class<?> inputType;
+
+    /**
+     * Creates a plan for the sensitive annotation.
+     *
+     * @param annotation The sensitive annotation, its type must be {@link Handlers#supports(Class) supported}
+     */
+    HandlerPlan(Annotation annotation) {
+        this(annotation, null);
+    }
+
+    /**
+     * Creates a plan for the sensitive annotation declared on a field.
+     *
+     * @param annotation The sensitive annotation, its type must be {@link Handlers#supports(Class) supported}
+     * @param site       The field declaring the annotation, or {@code null} if unknown
+     */
+    HandlerPlan(Annotation annotation, Field site) {
+        this.annotation = annotation;
+        this.site = site;
+        Handlers.Dispatch dispatch = Handlers.dispatch(annotation.annotationType()).orElseThrow();
+        this.handler = dispatch.handler();
+        this.inputType = dispatch.inputType();
+        this.resolved = resolve(Policies.current());
+    }
+
+    /**
+     * Determines whether a handler is dispatched for the annotation.
+     *
+     * @param annotation The annotation to check
+     * @return {@code true} if the annotation type is {@link Handlers#supports(Class) supported}
+     */
+    static boolean supports(Annotation annotation) {
+        return Handlers.supports(annotation.annotationType());
+    }
+
+    @Override
+    public Object apply(Object value, Traversal traversal) {
+        if (value instanceof CharSequence input && traversal.oversized(input)) {
+            if (!traversal.truncating()) {
+                return traversal.exceeded(value);
+            }
+            value = input.subSequence(0, traversal.maxStringLength());
+        }
+        return handle(value);
+    }
+
+    @Override
+    public void render(Object value, Rendering output, Traversal traversal) throws IOException {
+        if (!render(value, output, traversal, annotation())) {
+            output.value(apply(value, traversal), traversal);
+        }
+    }
+
+    /**
+     * Writes the blurred value into the output without creating a {@link String}, which handlers extending
+     * {@link AbstractCharSequenceHandler} support.
+     *
+     * @param value      The value to be rendered
+     * @param output     The output to write to
+     * @param traversal  The traversal of the current call
+     * @param annotation The annotation to blur the value with
+     * @return {@code true} if the value was written, otherwise it has to be written from the result of the handler
+     * @throws IOException if the output cannot be written
+     */
+    @SuppressWarnings("unchecked")
+    private boolean render(Object value, Rendering output, Traversal traversal, Annotation annotation) throws IOException {
+        if (handler instanceof AbstractCharSequenceHandler<?, ?> charSequenceHandler
+                && inputType.isInstance(value)
+                && !traversal.oversized((CharSequence) value)) {
+            ((AbstractCharSequenceHandler<CharSequence, Annotation>) charSequenceHandler).handle((CharSequence) value, annotation, output.beginString());
+            output.endString();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Returns the batch evaluating the condition of the annotation for the elements of an array or a collection,
+     * if it is a {@link BatchCondition}. The condition is evaluated lazily, a chunk of elements at a time.
+     *
+     * @param elements The elements, in the order they are blurred, such as {@link java.util.Arrays#asList(Object[])} of an array
+     * @return The batch deciding which elements are blurred, or {@code null} if the elements have to be blurred one by one
+     */
+    Batch batch(Collection<?> elements) {
+        Resolved current = resolved();
+        return current.condition() == null ? null : new Batch(current.condition(), current.unconditional(), elements);
+    }
+
+    /**
+     * Applies the handler to the value if the handler accepts it.
+     *
+     * @param value The value to be blurred
+     * @return The blurred value, or the value itself if the handler does not accept it
+     */
+    Object handle(Object value) {
+        return inputType.isInstance(value) ? handler.handle(value, annotation()) : value;
+    }
+
+    /**
+     * Applies the handler to the decimal digits of the number. Handlers extending
+     * {@link AbstractCharSequenceHandler} blur the digits directly, any other handler receives
+     * the number as a {@link String}.
+     *
+     * @param value The number to be blurred
+     * @return The blurred decimal digits of the number
+     */
+    @SuppressWarnings("unchecked")
+    String handle(long value) {
+        if (handler instanceof AbstractCharSequenceHandler<?, ?> charSequenceHandler) {
+            return ((AbstractCharSequenceHandler<?, Annotation>) charSequenceHandler).handle(value, annotation());
+        }
+        return String.valueOf(handle(Long.toString(value)));
+    }
+
+    /**
+     * Applies the handler to a column of strings. Handlers extending {@link AbstractCharSequenceHandler}
+     * blur the whole column at once, any other handler receives the values one by one.
+     *
+     * @param column The column to be blurred, may contain {@code null} values
+     * @return A new column with the values blurred
+     */
+    @SuppressWarnings("unchecked")
+    String[] handle(String[] column) {
+        if (handler instanceof AbstractCharSequenceHandler<?, ?> charSequenceHandler) {
+            return ((AbstractCharSequenceHandler<?, Annotation>) charSequenceHandler).handle(column, annotation());
+        }
+        String[] result = new String[column.length];
+        for (int i = 0; i < column.length; i++) {
+            result[i] = column[i] == null ? null : String.valueOf(handle(column[i]));
+        }
+        return result;
+    }
+
+    /**
+     * Returns the annotation in effect under the current policies.
+     *
+     * @return The declared annotation, or the annotation with the attributes overridden by the policies
+     */
+    private Annotation annotation() {
+        return resolved().annotation();
+    }
+
+    /**
+     * Returns the annotation and condition in effect under the current policies.
+     *
+     * @return The resolved annotation
+     */
+    private Resolved resolved() {
+        Resolved current = resolved;
+        Policies.Snapshot snapshot = Policies.current();
+        if (current.snapshot() != snapshot) {
+            // Racing threads resolve the same annotation, so the last write wins
+            current = resolve(snapshot);
+            resolved = current;
+        }
+        return current;
+    }
+
+    /**
+     * Resolves the annotation in effect under the policies and prepares the handler for it.
+     *
+     * @param snapshot The policies
+     * @return The resolved annotation
+     */
+    @SuppressWarnings("unchecked")
+    private Resolved resolve(Policies.Snapshot snapshot) {
+        Annotation effective = Policies.resolve(snapshot, annotation, site);
+        if (handler instanceof AbstractCharSequenceHandler<?, ?> charSequenceHandler) {
+            ((AbstractCharSequenceHandler<?, Annotation>) charSequenceHandler).prepare(effective);
+        }
+        Map<String, Object> attributes = Annotations.values(effective);
+        if (attributes.get("condition") instanceof Class<?> conditionClass && BatchCondition.class.isAssignableFrom(conditionClass)) {
+            // Elements the batch decided to blur are handled without evaluating the condition again
+            attributes.put("condition", AlwaysTrue.class);
+            return new Resolved(snapshot, effective, (BatchCondition<Object>) InstanceCreators.find(conditionClass).create(),
+                    Annotations.synthesize(effective.annotationType(), attributes));
+        }
+        return new Resolved(snapshot, effective, null, null);
+    }
+
+    /**
+     * The annotation in effect under a snapshot of the policies.
+     *
+     * @param snapshot      The policies
+     * @param annotation    The effective annotation
+     * @param condition     The condition of the effective annotation if it is a {@link BatchCondition}, otherwise {@code null}
+     * @param unconditional The effective annotation whose condition is {@link AlwaysTrue}, if the condition is a {@link BatchCondition}
+     */
+    private record Resolved(Policies.Snapshot snapshot, Annotation annotation, BatchCondition<Object> condition,
+                            Annotation unconditional) {
+    }
+
+    /**
+     * The decision of a {@link BatchCondition} for the elements of an array or a collection, which must be asked
+     * for the elements in order. The condition is evaluated for a chunk of elements when the first of them is
+     * asked for, and chunks never extend past the element budget of the traversal, so elements beyond the
+     * budget are never evaluated.
+     */
+    final class Batch {
+
+        /**
+         * The maximum number of elements evaluated by a single call to the condition.
+         */
+        private static final int CHUNK = 1024;
+
+        private final BatchCondition<Object> condition;
+        private final Annotation unconditional;
+        private final int size;
+
+        /**
+         * The elements if they are a list, whose chunks are passed to the condition as views.
+         */
+        private final List<?> list;
+
+        /**
+         * Reads the elements ahead of the traversal if they are not a list.
+         */
+        private final Iterator<?> iterator;
+
+        /**
+         * The chunk read from the iterator, reused for every chunk.
+         */
+        private final List<Object> buffer;
+
+        /**
+         * The decision for the elements of the current chunk, starting at {@link #from}.
+         */
+        private BitSet required;
+        private int from;
+        private int to;
+
+        private Batch(BatchCondition<Object> condition, Annotation unconditional, Collection<?> elements) {
+            this.condition = condition;
+            this.unconditional = unconditional;
+            this.size = elements.size();
+            this.list = elements instanceof List<?> elementList ? elementList : null;
+            this.iterator = list == null ? elements.iterator() : null;
+            this.buffer = list == null ? new ArrayList<>() : null;
+        }
+
+        /**
+         * Returns whether the element is blurred, evaluating the condition for the chunk starting at the
+         * element if it has not been evaluated yet.
+         *
+         * @param index     The index of the element
+         * @param traversal The traversal of the current call
+         * @return {@code true} if the element is blurred
+         */
+        private boolean required(int index, Traversal traversal) {
+            if (index >= to) {
+                // The element being asked for was already counted, the rest of the chunk has to fit into the budget
+                int count = (int) Math.min(size - index, Math.min(CHUNK - 1, traversal.remainingElements()) + 1);
+                List<?> chunk;
+                if (list != null) {
+                    chunk = list.subList(index, index + count);
+                } else {
+                    for (int skipped = to; skipped < index; skipped++) {
+                        iterator.next();
+                    }
+                    buffer.clear();
+                    for (int i = 0; i < count; i++) {
+                        buffer.add(iterator.next());
+                    }
+                    chunk = buffer;
+                }
+                required = condition.required(chunk);
+                from = index;
+                to = index + count;
+            }
+            return required.get(index - from);
+        }
+
+        /**
+         * Blurs an element if the batch decided so.
+         *
+         * @param index     The index of the element
+         * @param value     The element
+         * @param traversal The traversal of the current call
+         * @return The blurred element, or the element itself if it is not blurred
+         */
+        Object apply(int index, Object value, Traversal traversal) {
+            if (value instanceof CharSequence input && traversal.oversized(input)) {
+                if (!traversal.truncating()) {
+                    return traversal.exceeded(value);
+                }
+                value = input.subSequence(0, traversal.maxStringLength());
+            }
+            return required(index, traversal) && inputType.isInstance(value) ? handler.handle(value, unconditional) : value;
+        }
+
+        /**
+         * Writes an element into the output, blurred if the batch decided so.
+         *
+         * @param index     The index of the element
+         * @param value     The element
+         * @param output    The output to write to
+         * @param traversal The traversal of the current call
+         * @throws IOException if the output cannot be written
+         */
+        void render(int index, Object value, Rendering output, Traversal traversal) throws IOException {
+            if (!required(index, traversal) || !HandlerPlan.this.render(value, output, traversal, unconditional)) {
+                output.value(apply(index, value, traversal), traversal);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,181 @@
+/*
+ * Copyright 2024 allurx
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.allurx.blur.plan;
+
+import io.allurx.annotation.parser.handler.AnnotationHandler;
+import io.allurx.annotation.parser.handler.Parse;
+import io.allurx.annotation.parser.util.InstanceCreators;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.lang.reflect.TypeVariable;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.stream.Stream;
+
+/**
+ * The dispatch table from sensitive annotation types to their {@link AnnotationHandler handlers}.
+ * A handler is either registered at runtime or declared by the annotation type through {@link Parse},
+ * registered handlers taking precedence. The entry of each annotation type is resolved once and cached
+ * in a {@link ClassValue}, so custom annotations are dispatched as cheaply as the built-in ones.
+ *
+ * @author allurx
+ */
+public final class Handlers {
+
+    private Handlers() {
+    }
+
+    /**
+     * Cache for handler instances, shared by every annotation type declaring the same handler class.
+     */
+    private static final ClassValue<AnnotationHandler<?, ?, ?>> INSTANCES = new ClassValue<>() {
+        @Override
+        protected AnnotationHandler<?, ?, ?> computeValue(Class<?> type) {
+            return (AnnotationHandler<?, ?, ?>) InstanceCreators.find(type).create();
+        }
+    };
+
+    /**
+     * Handlers registered at runtime by annotation type.
+     */
+    private static final ConcurrentMap<Class<?>, Dispatch> REGISTERED = new ConcurrentHashMap<>();
+
+    /**
+     * Cache for the handler of each annotation type.
+     */
+    private static final ClassValue<Optional<Dispatch>> DISPATCH = new ClassValue<>() {
+        @Override
+        protected Optional<Dispatch> computeValue(Class<?> type) {
+            Dispatch registered = REGISTERED.get(type);
+            if (registered != null) {
+                return Optional.of(registered);
+            }
+            Parse parse = type.getAnnotation(Parse.class);
+            if (parse == null) {
+                return Optional.empty();
+            }
+            return Optional.of(Dispatch.of(INSTANCES.get(parse.handler()), inputType(parse.handler(), Map.of()).orElse(Object.class)));
+        }
+    };
+
+    /**
+     * Registers the handler of the annotation type, replacing the handler declared through {@link Parse}
+     * or registered before. The plans compiled so far are discarded.
+     *
+     * @param annotationType The sensitive annotation type
+     * @param inputType      The type of values the handler accepts, other values are left as is
+     * @param handler        The handler
+     * @param <T>            The type of values the handler accepts
+     * @param <A>            The sensitive annotation type
+     */
+    public static <T, A extends Annotation> void register(Class<A> annotationType, Class<T> inputType, AnnotationHandler<? super T, A, ?> handler) {
+        REGISTERED.put(annotationType, Dispatch.of(handler, Objects.requireNonNull(inputType)));
+        DISPATCH.remove(annotationType);
+        Plans.reset();
+    }
+
+    /**
+     * Removes the handler registered for the annotation type, so that the handler declared through
+     * {@link Parse}, if any, takes effect again. The plans compiled so far are discarded.
+     *
+     * @param annotationType The sensitive annotation type
+     */
+    public static void unregister(Class<? extends Annotation> annotationType) {
+        REGISTERED.remove(annotationType);
+        DISPATCH.remove(annotationType);
+        Plans.reset();
+    }
+
+    /**
+     * Determines whether a handler is dispatched for the annotation type.
+     *
+     * @param annotationType The annotation type
+     * @return {@code true} if a handler is registered for the annotation type or declared through {@link Parse}
+     */
+    public static boolean supports(Class<? extends Annotation> annotationType) {
+        return DISPATCH.get(annotationType).isPresent();
+    }
+
+    /**
+     * Returns the handler of the annotation type.
+     *
+     * @param annotationType The annotation type
+     * @return The handler, or empty if the annotation type is not sensitive
+     */
+    static Optional<Dispatch> dispatch(Class<? extends Annotation> annotationType) {
+        return DISPATCH.get(annotationType);
+    }
+
+    /**
+     * The handler of an annotation type.
+     *
+     * @param handler   The handler instance
+     * @param inputType The erased type of values the handler accepts
+     */
+    record Dispatch(AnnotationHandler<Object, Annotation, Object> handler, Class<?> inputType) {
+
+        /**
+         * Creates the entry of a handler.
+         *
+         * @param handler   The handler instance
+         * @param inputType The erased type of values the handler accepts
+         * @return The entry
+         */
+        @SuppressWarnings("unchecked")
+        static Dispatch of(AnnotationHandler<?, ?, ?> handler, Class<?> inputType) {
+            return new Dispatch((AnnotationHandler<Object, Annotation, Object>) handler, inputType);
+        }
+    }
+
+    /**
+     * Resolves the first type argument of {@link AnnotationHandler} as seen from the given type.
+     *
+     * @param type     The type to search from
+     * @param bindings The type variables already bound by subclasses
+     * @return The erased input type of the handler, or empty if it cannot be resolved
+     */
+    private static Optional<Class<?>> inputType(Type type, Map<TypeVariable<?>, Type> bindings) {
+        Class<?> raw;
+        Map<TypeVariable<?>, Type> resolved = new HashMap<>();
+        if (type instanceof ParameterizedType parameterizedType) {
+            raw = (Class<?>) parameterizedType.getRawType();
+            TypeVariable<?>[] variables = raw.getTypeParameters();
+            Type[] arguments = parameterizedType.getActualTypeArguments();
+            for (int i = 0; i < variables.length; i++) {
+                resolved.put(variables[i], bindings.getOrDefault(arguments[i], arguments[i]));
+            }
+        } else if (type instanceof Class<?> clazz) {
+            raw = clazz;
+        } else {
+            return Optional.empty();
+        }
+        if (raw == AnnotationHandler.class) {
+            return Optional.of(Plans.erase(resolved.get(raw.getTypeParameters()[0])));
+        }
+        return Stream.concat(Stream.of(raw.getGenericInterfaces()), Stream.ofNullable(raw.getGenericSuperclass()))
+                .map(t -> inputType(t, resolved))
+                .flatMap(Optional::stream)
+                .findFirst();
+    }
+
+}
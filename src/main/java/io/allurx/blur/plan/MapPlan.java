@@ -0,0 +1,143 @@
+/*
+ * Copyright 2024 allurx
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.allurx.blur.plan;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A {@link Plan} that blurs the keys and values of a {@link Map} into a new map.
+ * In copy-on-write traversal the map is only copied once a key or value changed.
+ *
+ * @author allurx
+ */
+public final class MapPlan implements Plan {
+
+    private final Plan keyPlan;
+    private final Plan valuePlan;
+
+    /**
+     * Creates a plan for maps whose keys and values are blurred by the given plans.
+     *
+     * @param keyPlan   The plan for the key type
+     * @param valuePlan The plan for the value type
+     */
+    MapPlan(Plan keyPlan, Plan valuePlan) {
+        this.keyPlan = keyPlan;
+        this.valuePlan = valuePlan;
+    }
+
+    @Override
+    public Object apply(Object value, Traversal traversal) {
+        if (!(value instanceof Map<?, ?> map)) {
+            return value;
+        }
+        Traversal.Visit visit = traversal.visit(map, this);
+        if (visit.started()) {
+            return visit.result() != null ? visit.result() : map;
+        }
+        if (!traversal.enter()) {
+            return traversal.exceeded(map);
+        }
+        try {
+            Map<Object, Object> result = traversal.copyOnWrite() ? null : Containers.newMap(map);
+            visit.start(result);
+            int index = 0;
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                Object key;
+                Object blurred;
+                if (traversal.step()) {
+                    key = keyPlan.apply(entry.getKey(), traversal);
+                    blurred = valuePlan.apply(entry.getValue(), traversal);
+                } else if (traversal.truncating()) {
+                    result = result == null ? copy(map, index) : result;
+                    break;
+                } else {
+                    key = keyPlan == IDENTITY ? entry.getKey() : traversal.exceeded(entry.getKey());
+                    blurred = valuePlan == IDENTITY ? entry.getValue() : traversal.exceeded(entry.getValue());
+                }
+                if (result == null && (key != entry.getKey() || blurred != entry.getValue())) {
+                    // Copy on first change, the entries before it are unchanged
+                    result = copy(map, index);
+                }
+                if (result != null) {
+                    result.put(key, blurred);
+                }
+                index++;
+            }
+            return visit.complete(result == null ? map : result);
+        } finally {
+            traversal.exit();
+        }
+    }
+
+    @Override
+    public void render(Object value, Rendering output, Traversal traversal) throws IOException {
+        if (!(value instanceof Map<?, ?> map)) {
+            output.value(value, traversal);
+            return;
+        }
+        if (!traversal.render(map)) {
+            output.backReference(map);
+            return;
+        }
+        try {
+            output.beginMap();
+            boolean first = true;
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                output.key(first);
+                keyPlan.render(entry.getKey(), output, traversal);
+                output.entryValue();
+                valuePlan.render(entry.getValue(), output, traversal);
+                first = false;
+            }
+            output.endMap();
+        } finally {
+            traversal.rendered(map);
+        }
+    }
+
+    /**
+     * Copies the leading entries of the map into a new map.
+     *
+     * @param map   The source map
+     * @param count The number of leading entries to copy
+     * @return A new map of the same kind
+     */
+    private static Map<Object, Object> copy(Map<?, ?> map, int count) {
+        Map<Object, Object> result = Containers.newMap(map);
+        Iterator<? extends Map.Entry<?, ?>> iterator = map.entrySet().iterator();
+        for (int i = 0; i < count; i++) {
+            Map.Entry<?, ?> entry = iterator.next();
+            result.put(entry.getKey(), entry.getValue());
+        }
+        return result;
+    }
+
+    @Override
+    public void prepare(Set<Class<?>> prepared) {
+        keyPlan.prepare(prepared);
+        valuePlan.prepare(prepared);
+    }
+
+    @Override
+    public boolean sensitive(Set<Class<?>> visited) {
+        return keyPlan.sensitive(visited) || valuePlan.sensitive(visited);
+    }
+
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright 2024 allurx
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.allurx.blur.plan;
+
+import java.lang.reflect.AnnotatedType;
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Blurs numbers, such as bank card numbers stored in a {@code long} or {@link BigInteger}, by the
+ * sensitive annotations of an annotated type. Since a number cannot hold a masked value, the result
+ * is always the blurred decimal digits as a {@link String}. Integral numbers are formatted without
+ * an intermediate {@link Long#toString(long)} and without boxing.
+ *
+ * @author allurx
+ */
+public final class NumberPlan {
+
+    /**
+     * Cache for compiled plans.
+     */
+    private static final ConcurrentMap<AnnotatedType, NumberPlan> PLAN_CACHE = new ConcurrentHashMap<>();
+
+    private final HandlerPlan[] plans;
+
+    /**
+     * Creates a plan for the sensitive annotations.
+     *
+     * @param plans The plans of the sensitive annotations, in declaration order
+     */
+    private NumberPlan(HandlerPlan[] plans) {
+        this.plans = plans;
+    }
+
+    /**
+     * Discards every compiled plan, so that the handlers registered since are dispatched on next use.
+     */
+    static void reset() {
+        PLAN_CACHE.clear();
+    }
+
+    /**
+     * Returns the plan for the annotated type, compiling it on first use.
+     *
+     * @param annotatedType The annotated type of the numbers
+     * @return The plan for numbers of the annotated type
+     */
+    public static NumberPlan of(AnnotatedType annotatedType) {
+        return PLAN_CACHE.computeIfAbsent(annotatedType, type -> new NumberPlan(Arrays.stream(type.getAnnotations())
+                .filter(HandlerPlan::supports)
+                .map(HandlerPlan::new)
+                .toArray(HandlerPlan[]::new)));
+    }
+
+    /**
+     * Blurs the decimal digits of the number.
+     *
+     * @param value The number to be blurred
+     * @return The blurred decimal digits of the number
+     */
+    public String apply(long value) {
+        if (plans.length == 0) {
+            return Long.toString(value);
+        }
+        return chain(plans[0].handle(value));
+    }
+
+    /**
+     * Blurs the decimal digits of the number. {@link Long}, {@link Integer}, {@link Short} and
+     * {@link Byte} values are blurred as {@code long}, any other number by its {@link Number#toString()}.
+     *
+     * @param value The number to be blurred
+     * @return The blurred decimal digits of the number, or {@code null} if the number is {@code null}
+     */
+    public String apply(Number value) {
+        return switch (value) {
+            case null -> null;
+            case Long number -> apply(number.longValue());
+            case Integer number -> apply(number.longValue());
+            case Short number -> apply(number.longValue());
+            case Byte number -> apply(number.longValue());
+            default -> plans.length == 0 ? value.toString() : chain(String.valueOf(plans[0].handle(value.toString())));
+        };
+    }
+
+    /**
+     * Blurs the decimal digits of each number without boxing them.
+     *
+     * @param values The numbers to be blurred
+     * @return The blurred decimal digits of each number, or {@code null} if the array is {@code null}
+     */
+    public String[] apply(long[] values) {
+        if (values == null) {
+            return null;
+        }
+        String[] result = new String[values.length];
+        for (int i = 0; i < values.length; i++) {
+            result[i] = apply(values[i]);
+        }
+        return result;
+    }
+
+    /**
+     * Applies the remaining sensitive annotations to the digits blurred by the first one.
+     *
+     * @param digits The digits blurred by the first sensitive annotation
+     * @return The blurred digits
+     */
+    private String chain(String digits) {
+        Object value = digits;
+        for (int i = 1; i < plans.length; i++) {
+            value = plans[i].handle(value);
+        }
+        return String.valueOf(value);
+    }
+
+}
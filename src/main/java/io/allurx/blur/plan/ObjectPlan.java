@@ -0,0 +1,309 @@
+/*
+ * Copyright 2024 allurx
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.allurx.blur.plan;
+
+import java.io.IOException;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * A {@link Plan} that copies an object of a specific class field by field,
+ * blurring every field whose annotated type requires it. In copy-on-write traversal
+ * the object is only copied once a field changed. Records are blurred
+ * through their canonical constructor by {@link RecordPlan} instead.
+ * <p>
+ * Classes without an accessible no-arg constructor get a read-only plan, which renders,
+ * prepares and prunes their fields like any other plan but cannot create a blurred copy,
+ * see {@link #copies(Plan)}.
+ *
+ * @author allurx
+ */
+public final class ObjectPlan implements Plan {
+
+    /**
+     * Caches for compiled plans, replaced as a whole when they are reset.
+     */
+    private static volatile Caches caches = new Caches();
+
+    /**
+     * The no-arg constructor, or {@code null} if the plan is read-only.
+     */
+    private final Constructor<?> constructor;
+    private final Field[] fields;
+    private final Plan[] plans;
+
+    private ObjectPlan(Constructor<?> constructor, Field[] fields, Plan[] plans) {
+        this.constructor = constructor;
+        this.fields = fields;
+        this.plans = plans;
+    }
+
+    /**
+     * Returns the plan for objects of the class. Fields that contain nothing to blur are copied
+     * by reference, and objects of classes that contain nothing to blur at all are returned as is.
+     *
+     * @param type      The runtime class of the objects
+     * @param inherited Whether the fields inherited from superclasses are blurred as well
+     * @return The plan, or empty if the fields of the class cannot be read reflectively
+     */
+    static Optional<Plan> of(Class<?> type, boolean inherited) {
+        Caches current = caches;
+        return (inherited ? current.prunedInherited : current.prunedDeclared).get(type);
+    }
+
+    /**
+     * Returns the plan for objects of the class that keeps every field, including the fields inherited from
+     * superclasses, whether they contain anything to blur or not.
+     *
+     * @param type The runtime class of the objects
+     * @return The plan, or empty if the fields of the class cannot be read reflectively
+     */
+    static Optional<Plan> unpruned(Class<?> type) {
+        return caches.inherited.get(type);
+    }
+
+    /**
+     * Determines whether the plan can blur a value, that is unless it is a read-only plan of a class
+     * without an accessible no-arg constructor which still has fields to blur.
+     *
+     * @param plan The plan returned by {@link #of(Class, boolean)}
+     * @return {@code true} if {@link #apply(Object, Traversal)} can be called with the plan
+     */
+    static boolean copies(Plan plan) {
+        return !(plan instanceof ObjectPlan objectPlan) || objectPlan.constructor != null;
+    }
+
+    /**
+     * Discards every compiled plan, so that plans are compiled again on next use.
+     */
+    static void reset() {
+        caches = new Caches();
+    }
+
+    /**
+     * Determines whether any sensitive annotation is reachable from the class.
+     *
+     * @param type      The class
+     * @param inherited Whether the fields inherited from superclasses are blurred as well
+     * @param visited   The classes that have already been visited during the current check
+     * @return {@code true} if objects of the class may be blurred
+     */
+    static boolean sensitive(Class<?> type, boolean inherited, Set<Class<?>> visited) {
+        if (!visited.add(type)) {
+            return false;
+        }
+        Caches current = caches;
+        Optional<Plan> plan = (inherited ? current.inherited : current.declared).get(type);
+        return plan.isEmpty() || plan.get().sensitive(visited);
+    }
+
+    @Override
+    public Object apply(Object value, Traversal traversal) {
+        try {
+            Traversal.Visit visit = traversal.visit(value, this);
+            if (visit.started()) {
+                // A back-reference to an object whose copy has not been created yet forces the copy
+                return visit.result() != null ? visit.result() : visit.complete(copy(value));
+            }
+            if (!traversal.enter()) {
+                return traversal.exceeded(value);
+            }
+            try {
+                visit.start(traversal.copyOnWrite() ? null : copy(value));
+                for (int i = 0; i < fields.length; i++) {
+                    if (plans[i] == IDENTITY) {
+                        continue;
+                    }
+                    Object original = fields[i].get(value);
+                    Object blurred = Traversal.fit(traversal.step() ? plans[i].apply(original, traversal) : traversal.exceeded(original), fields[i].getType());
+                    if (blurred != original) {
+                        Object instance = visit.result() != null ? visit.result() : visit.complete(copy(value));
+                        fields[i].set(instance, blurred);
+                    }
+                }
+                return visit.result() != null ? visit.result() : visit.complete(value);
+            } finally {
+                traversal.exit();
+            }
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Failed to blur %s".formatted(value.getClass().getName()), e);
+        }
+    }
+
+    @Override
+    public void render(Object value, Rendering output, Traversal traversal) throws IOException {
+        if (!traversal.render(value)) {
+            output.backReference(value);
+            return;
+        }
+        try {
+            output.beginObject(value);
+            for (int i = 0; i < fields.length; i++) {
+                output.name(fields[i].getName(), i == 0);
+                plans[i].render(fields[i].get(value), output, traversal);
+            }
+            output.endObject();
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException("Failed to render %s".formatted(value.getClass().getName()), e);
+        } finally {
+            traversal.rendered(value);
+        }
+    }
+
+    /**
+     * Creates a shallow copy of the object.
+     *
+     * @param value The object to copy
+     * @return A new instance with the same field values
+     * @throws ReflectiveOperationException if the instance cannot be created or its fields cannot be accessed
+     */
+    private Object copy(Object value) throws ReflectiveOperationException {
+        if (constructor == null) {
+            throw new InstantiationException("%s has no accessible no-arg constructor".formatted(value.getClass().getName()));
+        }
+        Object instance = constructor.newInstance();
+        for (Field field : fields) {
+            field.set(instance, field.get(value));
+        }
+        return instance;
+    }
+
+    @Override
+    public void prepare(Set<Class<?>> prepared) {
+        for (Plan plan : plans) {
+            plan.prepare(prepared);
+        }
+    }
+
+    @Override
+    public boolean sensitive(Set<Class<?>> visited) {
+        for (Plan plan : plans) {
+            if (plan.sensitive(visited)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Prunes the fields that contain nothing to blur from the plan.
+     *
+     * @param plan The compiled plan
+     * @return The pruned plan
+     */
+    private static Optional<Plan> prune(Optional<Plan> plan) {
+        return plan.map(p -> switch (p) {
+            case ObjectPlan objectPlan -> {
+                Plan[] pruned = Plans.prune(objectPlan.plans);
+                yield pruned == null ? IDENTITY : new ObjectPlan(objectPlan.constructor, objectPlan.fields, pruned);
+            }
+            case RecordPlan recordPlan -> recordPlan.prune();
+            default -> p;
+        });
+    }
+
+    /**
+     * Compiles the plan for the class.
+     *
+     * @param type      The runtime class of the objects
+     * @param inherited Whether the fields inherited from superclasses are blurred as well
+     * @return The plan, or empty if the fields of the class cannot be read reflectively
+     */
+    private static Optional<Plan> compile(Class<?> type, boolean inherited) {
+        if (type.isEnum() || type.isPrimitive() || "java.lang".equals(type.getPackageName())) {
+            return Optional.of(IDENTITY);
+        }
+        if (type.isRecord()) {
+            return RecordPlan.compile(type);
+        }
+        if (type.isArray() || type.isInterface() || Modifier.isAbstract(type.getModifiers())) {
+            return Optional.empty();
+        }
+        Constructor<?> constructor;
+        try {
+            constructor = type.getDeclaredConstructor();
+            if (!constructor.trySetAccessible()) {
+                constructor = null;
+            }
+        } catch (NoSuchMethodException e) {
+            // The fields can still be read to render, prepare and prune the plan
+            constructor = null;
+        }
+        List<Field> fields = new ArrayList<>();
+        List<Plan> plans = new ArrayList<>();
+        for (Class<?> clazz = type; clazz != null && clazz != Object.class; clazz = clazz.getSuperclass()) {
+            for (Field field : clazz.getDeclaredFields()) {
+                if (Modifier.isStatic(field.getModifiers())) {
+                    continue;
+                }
+                if (!field.trySetAccessible()) {
+                    return Optional.empty();
+                }
+                fields.add(field);
+                plans.add(clazz == type || inherited ? Plans.compile(field.getAnnotatedType(), field) : IDENTITY);
+            }
+        }
+        return Optional.of(new ObjectPlan(constructor, fields.toArray(Field[]::new), plans.toArray(Plan[]::new)));
+    }
+
+    /**
+     * Caches for plans compiled per class.
+     */
+    private static final class Caches {
+
+        /**
+         * Cache for plans that only blur the fields declared by the class itself.
+         */
+        private final ClassValue<Optional<Plan>> declared = cache(type -> compile(type, false));
+
+        /**
+         * Cache for plans that also blur the fields inherited from superclasses.
+         */
+        private final ClassValue<Optional<Plan>> inherited = cache(type -> compile(type, true));
+
+        /**
+         * Cache for {@link #declared} plans without the fields that contain nothing to blur.
+         */
+        private final ClassValue<Optional<Plan>> prunedDeclared = cache(type -> prune(declared.get(type)));
+
+        /**
+         * Cache for {@link #inherited} plans without the fields that contain nothing to blur.
+         */
+        private final ClassValue<Optional<Plan>> prunedInherited = cache(type -> prune(inherited.get(type)));
+
+        /**
+         * Creates a cache for plans compiled per class.
+         *
+         * @param compiler The function compiling the plan of a class
+         * @return The cache
+         */
+        private static ClassValue<Optional<Plan>> cache(Function<Class<?>, Optional<Plan>> compiler) {
+            return new ClassValue<>() {
+                @Override
+                protected Optional<Plan> computeValue(Class<?> type) {
+                    return compiler.apply(type);
+                }
+            };
+        }
+    }
+
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2024 allurx
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.allurx.blur.plan;
+
+import java.io.IOException;
+import java.util.Set;
+
+/**
+ * A precompiled blurring step for the values of a single annotated type.
+ * Plans are built once per annotated type by {@link Plans} and can then be applied
+ * to any number of values without inspecting annotations or types again.
+ *
+ * @author allurx
+ */
+@FunctionalInterface
+public interface Plan {
+
+    /**
+     * A plan that returns its input unchanged.
+     */
+    Plan IDENTITY = new Plan() {
+
+        @Override
+        public Object apply(Object value, Traversal traversal) {
+            return value;
+        }
+
+        @Override
+        public boolean sensitive(Set<Class<?>> visited) {
+            return false;
+        }
+    };
+
+    /**
+     * Applies this plan to the value.
+     *
+     * @param value     The value to be blurred, may be {@code null}
+     * @param traversal The state of the current traversal
+     * @return The blurred value
+     */
+    Object apply(Object value, Traversal traversal);
+
+    /**
+     * Writes the blurred value to the output in the format of the {@link Rendering}, without creating
+     * the blurred objects and containers along the way. The default implementation blurs the value
+     * and writes the result.
+     *
+     * @param value     The value to be blurred, may be {@code null}
+     * @param output    The rendering writing to the output
+     * @param traversal The state of the current traversal
+     * @throws IOException if the output cannot be written
+     */
+    default void render(Object value, Rendering output, Traversal traversal) throws IOException {
+        output.value(apply(value, traversal), traversal);
+    }
+
+    /**
+     * Eagerly compiles every plan reachable from this plan, including the plans of
+     * cascaded classes that would otherwise only be compiled on first use.
+     *
+     * @param prepared The classes that have already been prepared during the current walk
+     */
+    default void prepare(Set<Class<?>> prepared) {
+    }
+
+    /**
+     * Determines whether this plan may change a value, that is whether any sensitive annotation
+     * is reachable from it. Plans that cannot change a value are skipped during traversal.
+     *
+     * @param visited The classes that have already been visited during the current check
+     * @return {@code true} if a value may be blurred by this plan
+     */
+    default boolean sensitive(Set<Class<?>> visited) {
+        return true;
+    }
+
+}
@@ -0,0 +1,278 @@
+/*
+ * Copyright 2024 allurx
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.allurx.blur.plan;
+
+import io.allurx.annotation.parser.type.Cascade;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.AnnotatedArrayType;
+import java.lang.reflect.AnnotatedParameterizedType;
+import java.lang.reflect.AnnotatedType;
+import java.lang.reflect.AnnotatedTypeVariable;
+import java.lang.reflect.AnnotatedWildcardType;
+import java.lang.reflect.Field;
+import java.lang.reflect.GenericArrayType;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.lang.reflect.TypeVariable;
+import java.lang.reflect.WildcardType;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.stream.Stream;
+
+/**
+ * Compiles annotated types into {@link Plan plans} and caches them.
+ * <p>
+ * Arrays, {@link Collection collections} and {@link Map maps} are traversed by the plan of their
+ * element types, types annotated with {@link Cascade} are blurred field by field, and every sensitive
+ * annotation on a type is applied through its {@link HandlerPlan}. Annotated types whose structure is
+ * not understood here are handed over to {@link FallbackPlan}.
+ *
+ * @author allurx
+ */
+public final class Plans {
+
+    private Plans() {
+    }
+
+    /**
+     * Cache for compiled plans.
+     */
+    private static final ConcurrentMap<AnnotatedType, Plan> PLAN_CACHE = new ConcurrentHashMap<>();
+
+    /**
+     * Returns the plan for the annotated type, compiling it on first use.
+     *
+     * @param annotatedType The annotated type
+     * @return The plan for values of the annotated type
+     */
+    public static Plan of(AnnotatedType annotatedType) {
+        Plan plan = PLAN_CACHE.get(annotatedType);
+        if (plan == null) {
+            // Compile outside the map since nested types may be compiled recursively
+            plan = compile(annotatedType);
+            plan = plan.sensitive(new HashSet<>()) ? plan : Plan.IDENTITY;
+            Plan previous = PLAN_CACHE.putIfAbsent(annotatedType, plan);
+            plan = previous != null ? previous : plan;
+        }
+        return plan;
+    }
+
+    /**
+     * Returns a plan applying the handler of the sensitive annotation, which is not cached.
+     *
+     * @param annotation The sensitive annotation
+     * @return The plan for values the annotation applies to
+     * @throws IllegalArgumentException if no handler is dispatched for the annotation type
+     */
+    public static Plan of(Annotation annotation) {
+        if (!HandlerPlan.supports(annotation)) {
+            throw new IllegalArgumentException("annotation: %s".formatted(annotation));
+        }
+        return new HandlerPlan(annotation);
+    }
+
+    /**
+     * Discards every compiled plan, so that plans are compiled again on next use.
+     * Plans already held by callers keep working as compiled.
+     */
+    static void reset() {
+        PLAN_CACHE.clear();
+        ObjectPlan.reset();
+        ColumnPlan.reset();
+        NumberPlan.reset();
+    }
+
+    /**
+     * Compiles the plan for the annotated type and every plan reachable from it.
+     *
+     * @param annotatedType The annotated type
+     */
+    public static void prepare(AnnotatedType annotatedType) {
+        of(annotatedType).prepare(new HashSet<>());
+    }
+
+    /**
+     * Compiles the plan for objects of the class and every plan reachable from it.
+     *
+     * @param type      The class
+     * @param inherited Whether the fields inherited from superclasses are blurred as well
+     */
+    public static void prepare(Class<?> type, boolean inherited) {
+        Set<Class<?>> prepared = new HashSet<>();
+        prepared.add(type);
+        ObjectPlan.of(type, inherited).ifPresent(plan -> plan.prepare(prepared));
+    }
+
+    /**
+     * Replaces every plan that cannot change a value with {@link Plan#IDENTITY}. Whether a plan can change
+     * a value is decided from the declared types only: a cascaded type that is not final is kept, since
+     * a subclass may declare sensitive fields, and its objects are only skipped once the plan of their
+     * runtime class turns out to have nothing to blur.
+     *
+     * @param plans The plans of the fields or components of a class
+     * @return The pruned plans, or {@code null} if none of them can change a value
+     */
+    static Plan[] prune(Plan[] plans) {
+        Plan[] pruned = new Plan[plans.length];
+        boolean sensitive = false;
+        for (int i = 0; i < plans.length; i++) {
+            pruned[i] = plans[i].sensitive(new HashSet<>()) ? plans[i] : Plan.IDENTITY;
+            sensitive |= pruned[i] != Plan.IDENTITY;
+        }
+        return sensitive ? pruned : null;
+    }
+
+    /**
+     * Compiles the plan for the annotated type without caching it.
+     *
+     * @param annotatedType The annotated type
+     * @return The plan for values of the annotated type
+     */
+    static Plan compile(AnnotatedType annotatedType) {
+        return compile(annotatedType, null);
+    }
+
+    /**
+     * Compiles the plan for the annotated type of a field without caching it, including the
+     * {@link Rules rules} registered for the field.
+     *
+     * @param annotatedType The annotated type
+     * @param site          The field declaring the annotated type, or {@code null} if unknown
+     * @return The plan for values of the annotated type
+     */
+    static Plan compile(AnnotatedType annotatedType, Field site) {
+        Plan plan = compile(annotatedType, site, new HashSet<>());
+        return site == null ? plan : Rules.apply(plan, annotatedType, site);
+    }
+
+    /**
+     * Compiles the plan for the annotated type.
+     *
+     * @param annotatedType The annotated type
+     * @param site          The field declaring the annotated type, or {@code null} if unknown
+     * @param resolving     The type variables whose bounds are currently being compiled
+     * @return The plan for values of the annotated type
+     */
+    private static Plan compile(AnnotatedType annotatedType, Field site, Set<TypeVariable<?>> resolving) {
+        List<Plan> plans = new ArrayList<>();
+        Plan structure = structure(annotatedType, site, resolving);
+        Cascade cascade = annotatedType.getAnnotation(Cascade.class);
+        if (structure != Plan.IDENTITY) {
+            plans.add(structure);
+        } else if (cascade != null) {
+            plans.add(new CascadePlan(annotatedType, cascade.inherited()));
+        }
+        for (Annotation annotation : annotatedType.getAnnotations()) {
+            if (HandlerPlan.supports(annotation)) {
+                plans.add(new HandlerPlan(annotation, site));
+            }
+        }
+        return switch (plans.size()) {
+            case 0 -> Plan.IDENTITY;
+            case 1 -> plans.getFirst();
+            default -> new CompositePlan(plans.toArray(Plan[]::new));
+        };
+    }
+
+    /**
+     * Compiles the plan for the elements of the annotated type.
+     *
+     * @param annotatedType The annotated type
+     * @param site          The field declaring the annotated type, or {@code null} if unknown
+     * @param resolving     The type variables whose bounds are currently being compiled
+     * @return The plan for the elements, or {@link Plan#IDENTITY} if no element needs blurring
+     */
+    private static Plan structure(AnnotatedType annotatedType, Field site, Set<TypeVariable<?>> resolving) {
+        return switch (annotatedType) {
+            case AnnotatedArrayType arrayType -> {
+                Plan componentPlan = compile(arrayType.getAnnotatedGenericComponentType(), site, resolving);
+                yield componentPlan == Plan.IDENTITY ? Plan.IDENTITY : new ArrayPlan(componentPlan);
+            }
+            case AnnotatedParameterizedType parameterizedType -> {
+                Class<?> raw = erase(parameterizedType.getType());
+                AnnotatedType[] arguments = parameterizedType.getAnnotatedActualTypeArguments();
+                if (Collection.class.isAssignableFrom(raw) && arguments.length == 1) {
+                    Plan elementPlan = compile(arguments[0], site, resolving);
+                    yield elementPlan == Plan.IDENTITY ? Plan.IDENTITY : new CollectionPlan(elementPlan);
+                }
+                if (Map.class.isAssignableFrom(raw) && arguments.length == 2) {
+                    Plan keyPlan = compile(arguments[0], site, resolving);
+                    Plan valuePlan = compile(arguments[1], site, resolving);
+                    yield keyPlan == Plan.IDENTITY && valuePlan == Plan.IDENTITY ? Plan.IDENTITY : new MapPlan(keyPlan, valuePlan);
+                }
+                yield Stream.of(arguments).anyMatch(Plans::annotated) ? new FallbackPlan(parameterizedType) : Plan.IDENTITY;
+            }
+            case AnnotatedTypeVariable typeVariable -> {
+                TypeVariable<?> variable = (TypeVariable<?>) typeVariable.getType();
+                if (!resolving.add(variable)) {
+                    yield Plan.IDENTITY;
+                }
+                try {
+                    yield compile(typeVariable.getAnnotatedBounds()[0], site, resolving);
+                } finally {
+                    resolving.remove(variable);
+                }
+            }
+            case AnnotatedWildcardType wildcardType -> {
+                AnnotatedType[] upperBounds = wildcardType.getAnnotatedUpperBounds();
+                yield upperBounds.length == 0 ? Plan.IDENTITY : compile(upperBounds[0], site, resolving);
+            }
+            default -> Plan.IDENTITY;
+        };
+    }
+
+    /**
+     * Determines whether the annotated type or any type nested in it carries annotations.
+     *
+     * @param annotatedType The annotated type
+     * @return {@code true} if an annotation is present
+     */
+    private static boolean annotated(AnnotatedType annotatedType) {
+        return annotatedType.getAnnotations().length > 0 || switch (annotatedType) {
+            case AnnotatedArrayType arrayType -> annotated(arrayType.getAnnotatedGenericComponentType());
+            case AnnotatedParameterizedType parameterizedType ->
+                    Stream.of(parameterizedType.getAnnotatedActualTypeArguments()).anyMatch(Plans::annotated);
+            case AnnotatedWildcardType wildcardType ->
+                    Stream.of(wildcardType.getAnnotatedUpperBounds()).anyMatch(Plans::annotated);
+            default -> false;
+        };
+    }
+
+    /**
+     * Erases the type to a class.
+     *
+     * @param type The type to erase
+     * @return The erased class
+     */
+    static Class<?> erase(Type type) {
+        return switch (type) {
+            case Class<?> clazz -> clazz;
+            case ParameterizedType parameterizedType -> erase(parameterizedType.getRawType());
+            case GenericArrayType arrayType -> erase(arrayType.getGenericComponentType()).arrayType();
+            case TypeVariable<?> typeVariable -> erase(typeVariable.getBounds()[0]);
+            case WildcardType wildcardType -> erase(wildcardType.getUpperBounds()[0]);
+            case null, default -> Object.class;
+        };
+    }
+
+}
@@ -0,0 +1,179 @@
+/*
+ * Copyright 2024 allurx
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.allurx.blur.plan;
+
+import io.allurx.blur.BlurPolicy;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Field;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.UnaryOperator;
+
+/**
+ * Holds the {@link BlurPolicy policies} overriding the attributes of sensitive annotations. All policies
+ * form one immutable snapshot that is replaced atomically on every change, so reading them never takes a lock.
+ * Every {@link HandlerPlan} resolves its effective annotation against the current snapshot once and keeps it
+ * until the snapshot changes.
+ *
+ * @author allurx
+ */
+public final class Policies {
+
+    private Policies() {
+    }
+
+    /**
+     * The current policies.
+     */
+    private static final AtomicReference<Snapshot> SNAPSHOT = new AtomicReference<>(new Snapshot(Map.of(), Map.of()));
+
+    /**
+     * Registers the policy for every annotation of the type, replacing the previous one.
+     *
+     * @param annotationType The type of the sensitive annotations
+     * @param policy         The policy
+     */
+    public static void put(Class<? extends Annotation> annotationType, BlurPolicy policy) {
+        update(snapshot -> new Snapshot(with(snapshot.types(), annotationType, policy), snapshot.fields()));
+    }
+
+    /**
+     * Registers the policy for every sensitive annotation of the field, replacing the previous one.
+     * Policies of fields take precedence over policies of annotation types.
+     *
+     * @param field  The field
+     * @param policy The policy
+     */
+    public static void put(Field field, BlurPolicy policy) {
+        update(snapshot -> new Snapshot(snapshot.types(), with(snapshot.fields(), field, policy)));
+    }
+
+    /**
+     * Removes the policy of the annotation type.
+     *
+     * @param annotationType The type of the sensitive annotations
+     */
+    public static void remove(Class<? extends Annotation> annotationType) {
+        update(snapshot -> new Snapshot(with(snapshot.types(), annotationType, null), snapshot.fields()));
+    }
+
+    /**
+     * Removes the policy of the field.
+     *
+     * @param field The field
+     */
+    public static void remove(Field field) {
+        update(snapshot -> new Snapshot(snapshot.types(), with(snapshot.fields(), field, null)));
+    }
+
+    /**
+     * Replaces all policies at once.
+     *
+     * @param types  The policies by annotation type
+     * @param fields The policies by field
+     */
+    public static void replace(Map<Class<? extends Annotation>, BlurPolicy> types, Map<Field, BlurPolicy> fields) {
+        SNAPSHOT.set(new Snapshot(Map.copyOf(types), Map.copyOf(fields)));
+    }
+
+    /**
+     * Returns the current policies.
+     *
+     * @return The current snapshot
+     */
+    static Snapshot current() {
+        return SNAPSHOT.get();
+    }
+
+    /**
+     * Resolves the annotation with the attributes overridden by the policies of the snapshot.
+     *
+     * @param snapshot   The policies
+     * @param annotation The declared annotation
+     * @param site       The field declaring the annotation, or {@code null} if unknown
+     * @return The declared annotation if no policy applies; otherwise, an annotation with the overridden attributes
+     */
+    static Annotation resolve(Snapshot snapshot, Annotation annotation, Field site) {
+        BlurPolicy typePolicy = snapshot.types().get(annotation.annotationType());
+        BlurPolicy fieldPolicy = site == null ? null : snapshot.fields().get(site);
+        if (typePolicy == null && fieldPolicy == null) {
+            return annotation;
+        }
+        BlurPolicy policy = typePolicy == null ? fieldPolicy : fieldPolicy == null ? typePolicy : typePolicy.merge(fieldPolicy);
+        return override(annotation, policy.attributes());
+    }
+
+    /**
+     * Creates an annotation that returns the overridden attributes and delegates everything else.
+     *
+     * @param annotation The declared annotation
+     * @param attributes The overridden attributes by name
+     * @return The declared annotation if none of the attributes apply to it; otherwise, the overriding annotation
+     */
+    private static Annotation override(Annotation annotation, Map<String, Object> attributes) {
+        Map<String, Object> values = Annotations.values(annotation);
+        boolean overridden = false;
+        for (Map.Entry<String, Object> entry : attributes.entrySet()) {
+            Object value = values.get(entry.getKey());
+            if (value != null && value.getClass().isInstance(entry.getValue())) {
+                values.put(entry.getKey(), entry.getValue());
+                overridden = true;
+            }
+        }
+        return overridden ? Annotations.synthesize(annotation.annotationType(), values) : annotation;
+    }
+
+    /**
+     * Updates the snapshot atomically.
+     *
+     * @param function The function computing the new snapshot from the current one
+     */
+    private static void update(UnaryOperator<Snapshot> function) {
+        SNAPSHOT.updateAndGet(function);
+    }
+
+    /**
+     * Copies the map with the entry replaced.
+     *
+     * @param map   The map
+     * @param key   The key
+     * @param value The value, or {@code null} to remove the entry
+     * @param <K>   The type of the keys
+     * @return An immutable copy of the map
+     */
+    private static <K> Map<K, BlurPolicy> with(Map<K, BlurPolicy> map, K key, BlurPolicy value) {
+        Map<K, BlurPolicy> copy = new HashMap<>(map);
+        if (value == null) {
+            copy.remove(key);
+        } else {
+            copy.put(key, value);
+        }
+        return Map.copyOf(copy);
+    }
+
+    /**
+     * An immutable set of policies.
+     *
+     * @param types  The policies by annotation type
+     * @param fields The policies by field
+     */
+    record Snapshot(Map<Class<? extends Annotation>, BlurPolicy> types, Map<Field, BlurPolicy> fields) {
+    }
+
+}
@@ -0,0 +1,203 @@
+/*
+ * Copyright 2024 allurx
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.allurx.blur.plan;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.RecordComponent;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * A {@link Plan} for {@link Record records}. The components are read through their accessors,
+ * blurred according to their annotated types and passed to a single invocation of the canonical
+ * constructor. Records without any component to blur are returned as is.
+ *
+ * @author allurx
+ */
+public final class RecordPlan implements Plan {
+
+    private static final MethodType ACCESSOR_TYPE = MethodType.methodType(Object.class, Object.class);
+    private static final MethodType CONSTRUCTOR_TYPE = MethodType.methodType(Object.class, Object[].class);
+
+    private final String[] names;
+    private final Class<?>[] types;
+    private final MethodHandle[] accessors;
+    private final Plan[] plans;
+    private final MethodHandle constructor;
+
+    private RecordPlan(String[] names, Class<?>[] types, MethodHandle[] accessors, Plan[] plans, MethodHandle constructor) {
+        this.names = names;
+        this.types = types;
+        this.accessors = accessors;
+        this.plans = plans;
+        this.constructor = constructor;
+    }
+
+    /**
+     * Returns a plan that skips every component without anything to blur.
+     *
+     * @return The pruned plan, or {@link Plan#IDENTITY} if no component needs blurring
+     */
+    Plan prune() {
+        Plan[] pruned = Plans.prune(plans);
+        return pruned == null ? IDENTITY : new RecordPlan(names, types, accessors, pruned, constructor);
+    }
+
+    @Override
+    public Object apply(Object value, Traversal traversal) {
+        Traversal.Visit visit = traversal.visit(value, this);
+        if (visit.started()) {
+            // A record is only created once all of its components are blurred, so a back-reference to a record
+            // still being blurred gets a copy of its own, blurred without being tracked again. The cycle always
+            // runs through a mutable object, whose back-reference resolves to its copy and ends the recursion.
+            return visit.result() != null ? visit.result() : blur(value, traversal, null);
+        }
+        return blur(value, traversal, visit);
+    }
+
+    /**
+     * Blurs the components of the record and creates the blurred record.
+     *
+     * @param value     The record
+     * @param traversal The traversal of the current call
+     * @param visit     The visit of the record, or {@code null} if the record is not tracked
+     * @return The blurred record
+     */
+    private Object blur(Object value, Traversal traversal, Traversal.Visit visit) {
+        if (!traversal.enter()) {
+            return traversal.exceeded(value);
+        }
+        if (visit != null) {
+            visit.start(null);
+        }
+        Object[] arguments = new Object[accessors.length];
+        try {
+            boolean changed = false;
+            for (int i = 0; i < accessors.length; i++) {
+                Object component = accessors[i].invokeExact(value);
+                arguments[i] = plans[i] == IDENTITY ? component
+                        : Traversal.fit(traversal.step() ? plans[i].apply(component, traversal) : traversal.exceeded(component), types[i]);
+                changed |= arguments[i] != component;
+            }
+            Object result = changed || !traversal.copyOnWrite() ? constructor.invokeExact(arguments) : value;
+            return visit != null ? visit.complete(result) : result;
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalStateException("Failed to blur %s".formatted(value.getClass().getName()), e);
+        } finally {
+            traversal.exit();
+        }
+    }
+
+    @Override
+    public void render(Object value, Rendering output, Traversal traversal) throws IOException {
+        if (!traversal.render(value)) {
+            output.backReference(value);
+            return;
+        }
+        try {
+            output.beginObject(value);
+            for (int i = 0; i < accessors.length; i++) {
+                output.name(names[i], i == 0);
+                plans[i].render(accessors[i].invokeExact(value), output, traversal);
+            }
+            output.endObject();
+        } catch (IOException | RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalStateException("Failed to render %s".formatted(value.getClass().getName()), e);
+        } finally {
+            traversal.rendered(value);
+        }
+    }
+
+    @Override
+    public void prepare(Set<Class<?>> prepared) {
+        for (Plan plan : plans) {
+            plan.prepare(prepared);
+        }
+    }
+
+    @Override
+    public boolean sensitive(Set<Class<?>> visited) {
+        for (Plan plan : plans) {
+            if (plan.sensitive(visited)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Compiles the plan for the record class. The plan keeps every component, {@link #prune()} removes the
+     * components without anything to blur.
+     *
+     * @param type The record class
+     * @return The plan, {@link Plan#IDENTITY} if it cannot be created and no component needs blurring, or empty
+     * if the accessors or the canonical constructor are not accessible
+     */
+    static Optional<Plan> compile(Class<?> type) {
+        RecordComponent[] components = type.getRecordComponents();
+        Plan[] plans = Stream.of(components).map(component -> Plans.compile(component.getAnnotatedType(), field(type, component))).toArray(Plan[]::new);
+        Optional<Plan> inaccessible = Stream.of(plans).allMatch(plan -> plan == IDENTITY) ? Optional.of(IDENTITY) : Optional.empty();
+        try {
+            Constructor<?> constructor = type.getDeclaredConstructor(Stream.of(components).map(RecordComponent::getType).toArray(Class<?>[]::new));
+            if (!constructor.trySetAccessible()) {
+                return inaccessible;
+            }
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            Class<?>[] types = constructor.getParameterTypes();
+            MethodHandle[] accessors = new MethodHandle[components.length];
+            for (int i = 0; i < components.length; i++) {
+                Method accessor = components[i].getAccessor();
+                if (!accessor.trySetAccessible()) {
+                    return inaccessible;
+                }
+                accessors[i] = lookup.unreflect(accessor).asType(ACCESSOR_TYPE);
+            }
+            MethodHandle canonical = lookup.unreflectConstructor(constructor)
+                    .asSpreader(Object[].class, components.length)
+                    .asType(CONSTRUCTOR_TYPE);
+            return Optional.of(new RecordPlan(Stream.of(components).map(RecordComponent::getName).toArray(String[]::new), types, accessors, plans, canonical));
+        } catch (ReflectiveOperationException e) {
+            return inaccessible;
+        }
+    }
+
+    /**
+     * Returns the private field backing the record component.
+     *
+     * @param type      The record class
+     * @param component The record component
+     * @return The field, or {@code null} if it cannot be found
+     */
+    private static Field field(Class<?> type, RecordComponent component) {
+        try {
+            return type.getDeclaredField(component.getName());
+        } catch (NoSuchFieldException e) {
+            return null;
+        }
+    }
+
+}
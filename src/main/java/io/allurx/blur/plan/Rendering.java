@@ -0,0 +1,594 @@
+/*
+ * Copyright 2024 allurx
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.allurx.blur.plan;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.reflect.Array;
+import java.nio.CharBuffer;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * The format {@link Plan plans} write blurred values in, without creating the blurred objects and containers
+ * along the way. Plans write the structure of what they traverse through this class, and hand the values that
+ * have nothing left to blur over to {@link #value(Object, Traversal)}.
+ * <ul>
+ *     <li>{@link #text(Appendable)} writes objects blurred field by field like records, {@code Type[name=value, ...]},
+ *     collections and arrays as {@code [a, b]}, maps as {@code {k=v}}, any other value by its {@link Object#toString()},
+ *     and a back-reference to an object or container that is being written further up as {@code ...}.</li>
+ *     <li>{@link #json(Appendable)} writes JSON. Objects are written field by field with the plans of their classes
+ *     whether they contain sensitive data or not, map keys are written as strings, and back-references as {@code null}.
+ *     Objects that cannot be read reflectively are written as the string of their {@link Object#toString()}.</li>
+ * </ul>
+ * A rendering keeps the state of a single call and is not thread-safe.
+ *
+ * @author allurx
+ */
+public abstract class Rendering {
+
+    Rendering() {
+    }
+
+    /**
+     * Returns a rendering writing the text format.
+     *
+     * @param output The output
+     * @return The rendering
+     */
+    public static Rendering text(Appendable output) {
+        return new Text(output);
+    }
+
+    /**
+     * Returns a rendering writing JSON.
+     *
+     * @param output The output
+     * @return The rendering
+     */
+    public static Rendering json(Appendable output) {
+        return new Json(output);
+    }
+
+    /**
+     * Starts writing an object field by field.
+     *
+     * @param object The object
+     * @throws IOException if the output cannot be written
+     */
+    abstract void beginObject(Object object) throws IOException;
+
+    /**
+     * Writes the name of the next field of an object, followed by its value.
+     *
+     * @param name  The name of the field
+     * @param first Whether it is the first field of the object
+     * @throws IOException if the output cannot be written
+     */
+    abstract void name(String name, boolean first) throws IOException;
+
+    /**
+     * Finishes writing an object.
+     *
+     * @throws IOException if the output cannot be written
+     */
+    abstract void endObject() throws IOException;
+
+    /**
+     * Starts writing the elements of a collection or an array.
+     *
+     * @throws IOException if the output cannot be written
+     */
+    abstract void beginArray() throws IOException;
+
+    /**
+     * Writes what precedes the next element of a collection or an array.
+     *
+     * @param first Whether it is the first element
+     * @throws IOException if the output cannot be written
+     */
+    abstract void element(boolean first) throws IOException;
+
+    /**
+     * Finishes writing the elements of a collection or an array.
+     *
+     * @throws IOException if the output cannot be written
+     */
+    abstract void endArray() throws IOException;
+
+    /**
+     * Starts writing the entries of a map.
+     *
+     * @throws IOException if the output cannot be written
+     */
+    abstract void beginMap() throws IOException;
+
+    /**
+     * Writes what precedes the key of the next entry of a map.
+     *
+     * @param first Whether it is the first entry
+     * @throws IOException if the output cannot be written
+     */
+    abstract void key(boolean first) throws IOException;
+
+    /**
+     * Writes what separates the key of an entry from its value.
+     *
+     * @throws IOException if the output cannot be written
+     */
+    abstract void entryValue() throws IOException;
+
+    /**
+     * Finishes writing the entries of a map.
+     *
+     * @throws IOException if the output cannot be written
+     */
+    abstract void endMap() throws IOException;
+
+    /**
+     * Writes a back-reference to an object or container that is being written further up.
+     *
+     * @param node The object or container
+     * @throws IOException if the output cannot be written
+     */
+    abstract void backReference(Object node) throws IOException;
+
+    /**
+     * Starts writing a string, whose characters are then appended to the returned output.
+     * Every call must be followed by a call to {@link #endString()}.
+     *
+     * @return The output of the characters of the string
+     * @throws IOException if the output cannot be written
+     */
+    abstract Appendable beginString() throws IOException;
+
+    /**
+     * Finishes writing a string started by {@link #beginString()}.
+     *
+     * @throws IOException if the output cannot be written
+     */
+    abstract void endString() throws IOException;
+
+    /**
+     * Writes a value that has nothing left to blur.
+     *
+     * @param value     The value, may be {@code null}
+     * @param traversal The state of the current traversal
+     * @throws IOException if the output cannot be written
+     */
+    abstract void value(Object value, Traversal traversal) throws IOException;
+
+    /**
+     * The text format.
+     */
+    private static final class Text extends Rendering {
+
+        private final Appendable output;
+
+        private Text(Appendable output) {
+            this.output = output;
+        }
+
+        @Override
+        void beginObject(Object object) throws IOException {
+            output.append(object.getClass().getSimpleName()).append('[');
+        }
+
+        @Override
+        void name(String name, boolean first) throws IOException {
+            if (!first) {
+                output.append(", ");
+            }
+            output.append(name).append('=');
+        }
+
+        @Override
+        void endObject() throws IOException {
+            output.append(']');
+        }
+
+        @Override
+        void beginArray() throws IOException {
+            output.append('[');
+        }
+
+        @Override
+        void element(boolean first) throws IOException {
+            if (!first) {
+                output.append(", ");
+            }
+        }
+
+        @Override
+        void endArray() throws IOException {
+            output.append(']');
+        }
+
+        @Override
+        void beginMap() throws IOException {
+            output.append('{');
+        }
+
+        @Override
+        void key(boolean first) throws IOException {
+            element(first);
+        }
+
+        @Override
+        void entryValue() throws IOException {
+            output.append('=');
+        }
+
+        @Override
+        void endMap() throws IOException {
+            output.append('}');
+        }
+
+        @Override
+        void backReference(Object node) throws IOException {
+            if (node instanceof Collection<?> || node instanceof Map<?, ?> || node.getClass().isArray()) {
+                output.append("...");
+            } else {
+                output.append(node.getClass().getSimpleName()).append("[...]");
+            }
+        }
+
+        @Override
+        Appendable beginString() {
+            return output;
+        }
+
+        @Override
+        void endString() {
+        }
+
+        @Override
+        void value(Object value, Traversal traversal) throws IOException {
+            switch (value) {
+                case null -> output.append("null");
+                case CharSequence sequence -> output.append(sequence);
+                case Object[] array -> output.append(Arrays.deepToString(array));
+                default -> {
+                    if (!value.getClass().isArray()) {
+                        output.append(value.toString());
+                        return;
+                    }
+                    output.append('[');
+                    for (int i = 0, length = Array.getLength(value); i < length; i++) {
+                        if (i > 0) {
+                            output.append(", ");
+                        }
+                        output.append(String.valueOf(Array.get(value, i)));
+                    }
+                    output.append(']');
+                }
+            }
+        }
+    }
+
+    /**
+     * The JSON format.
+     */
+    private static final class Json extends Rendering {
+
+        private final Appendable output;
+        private final Escaper escaper;
+
+        /**
+         * The number of map keys being written, the outermost of which is written as a single string.
+         */
+        private int keys;
+
+        private Json(Appendable output) {
+            this.output = output;
+            this.escaper = new Escaper(output);
+        }
+
+        /**
+         * Returns the output of the structure, which is escaped within a key.
+         *
+         * @return The output
+         */
+        private Appendable structure() {
+            return keys > 0 ? escaper : output;
+        }
+
+        @Override
+        void beginObject(Object object) throws IOException {
+            structure().append('{');
+        }
+
+        @Override
+        void name(String name, boolean first) throws IOException {
+            if (!first) {
+                structure().append(',');
+            }
+            string(name);
+            structure().append(':');
+        }
+
+        @Override
+        void endObject() throws IOException {
+            structure().append('}');
+        }
+
+        @Override
+        void beginArray() throws IOException {
+            structure().append('[');
+        }
+
+        @Override
+        void element(boolean first) throws IOException {
+            if (!first) {
+                structure().append(',');
+            }
+        }
+
+        @Override
+        void endArray() throws IOException {
+            structure().append(']');
+        }
+
+        @Override
+        void beginMap() throws IOException {
+            structure().append('{');
+        }
+
+        @Override
+        void key(boolean first) throws IOException {
+            element(first);
+            if (keys++ == 0) {
+                output.append('"');
+            }
+        }
+
+        @Override
+        void entryValue() throws IOException {
+            // Maps nested in a key stay within the string of the outermost key
+            if (--keys == 0) {
+                output.append('"').append(':');
+            } else {
+                escaper.append(':');
+            }
+        }
+
+        @Override
+        void endMap() throws IOException {
+            structure().append('}');
+        }
+
+        @Override
+        void backReference(Object node) throws IOException {
+            structure().append("null");
+        }
+
+        @Override
+        Appendable beginString() throws IOException {
+            if (keys == 0) {
+                output.append('"');
+            }
+            return escaper;
+        }
+
+        @Override
+        void endString() throws IOException {
+            if (keys == 0) {
+                output.append('"');
+            }
+        }
+
+        /**
+         * Writes a string.
+         *
+         * @param value The string
+         * @throws IOException if the output cannot be written
+         */
+        private void string(CharSequence value) throws IOException {
+            beginString().append(value);
+            endString();
+        }
+
+        @Override
+        void value(Object value, Traversal traversal) throws IOException {
+            switch (value) {
+                case null -> structure().append("null");
+                case Boolean bool -> structure().append(bool.toString());
+                case Double number when !Double.isFinite(number) -> string(number.toString());
+                case Float number when !Float.isFinite(number) -> string(number.toString());
+                case Number number -> structure().append(number.toString());
+                case CharSequence sequence -> string(sequence);
+                case Character character -> string(character.toString());
+                case Enum<?> constant -> string(constant.name());
+                case char[] chars -> {
+                    beginString();
+                    escaper.write(chars, 0, chars.length);
+                    endString();
+                }
+                default -> container(value, traversal);
+            }
+        }
+
+        /**
+         * Writes a container or an object that has nothing left to blur.
+         *
+         * @param value     The container or object
+         * @param traversal The state of the current traversal
+         * @throws IOException if the output cannot be written
+         */
+        private void container(Object value, Traversal traversal) throws IOException {
+            boolean array = value.getClass().isArray();
+            if (!array && !(value instanceof Collection<?>) && !(value instanceof Map<?, ?>)) {
+                Optional<Plan> plan = ObjectPlan.unpruned(value.getClass());
+                if (plan.isEmpty() || plan.get() == Plan.IDENTITY) {
+                    string(value.toString());
+                } else {
+                    plan.get().render(value, this, traversal);
+                }
+                return;
+            }
+            if (!traversal.render(value)) {
+                backReference(value);
+                return;
+            }
+            try {
+                if (value instanceof Map<?, ?> map) {
+                    beginMap();
+                    boolean first = true;
+                    for (Map.Entry<?, ?> entry : map.entrySet()) {
+                        key(first);
+                        value(entry.getKey(), traversal);
+                        entryValue();
+                        value(entry.getValue(), traversal);
+                        first = false;
+                    }
+                    endMap();
+                    return;
+                }
+                beginArray();
+                if (array) {
+                    for (int i = 0, length = Array.getLength(value); i < length; i++) {
+                        element(i == 0);
+                        value(Array.get(value, i), traversal);
+                    }
+                } else {
+                    boolean first = true;
+                    for (Object element : (Collection<?>) value) {
+                        element(first);
+                        value(element, traversal);
+                        first = false;
+                    }
+                }
+                endArray();
+            } finally {
+                traversal.rendered(value);
+            }
+        }
+    }
+
+    /**
+     * Escapes the characters of JSON strings. It is a {@link Writer} so that handlers can write char arrays
+     * into it directly.
+     */
+    private static final class Escaper extends Writer {
+
+        private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+        private final Appendable output;
+
+        private Escaper(Appendable output) {
+            this.output = output;
+        }
+
+        @Override
+        public void write(char[] chars, int offset, int length) throws IOException {
+            int start = offset;
+            for (int i = offset, end = offset + length; i < end; i++) {
+                if (escaped(chars[i])) {
+                    run(chars, start, i);
+                    escape(chars[i]);
+                    start = i + 1;
+                }
+            }
+            run(chars, start, offset + length);
+        }
+
+        @Override
+        public void write(int c) throws IOException {
+            if (escaped((char) c)) {
+                escape((char) c);
+            } else {
+                output.append((char) c);
+            }
+        }
+
+        @Override
+        public void write(String value, int offset, int length) throws IOException {
+            append(value, offset, offset + length);
+        }
+
+        @Override
+        public Writer append(CharSequence value) throws IOException {
+            return append(value, 0, value.length());
+        }
+
+        @Override
+        public Writer append(CharSequence value, int from, int to) throws IOException {
+            int start = from;
+            for (int i = from; i < to; i++) {
+                char c = value.charAt(i);
+                if (escaped(c)) {
+                    output.append(value, start, i);
+                    escape(c);
+                    start = i + 1;
+                }
+            }
+            output.append(value, start, to);
+            return this;
+        }
+
+        @Override
+        public Writer append(char c) throws IOException {
+            write(c);
+            return this;
+        }
+
+        /**
+         * Writes a run of characters that need no escaping.
+         */
+        private void run(char[] chars, int from, int to) throws IOException {
+            if (from == to) {
+                return;
+            }
+            switch (output) {
+                case StringBuilder builder -> builder.append(chars, from, to - from);
+                case Writer writer -> writer.write(chars, from, to - from);
+                default -> output.append(CharBuffer.wrap(chars, from, to - from));
+            }
+        }
+
+        /**
+         * Determines whether the character has to be escaped in a JSON string. Line and paragraph
+         * separators are escaped as well, so that the output can be embedded in JavaScript.
+         */
+        private static boolean escaped(char c) {
+            return c < 0x20 || c == '"' || c == '\\' || c == '\u2028' || c == '\u2029';
+        }
+
+        private void escape(char c) throws IOException {
+            switch (c) {
+                case '"' -> output.append("\\\"");
+                case '\\' -> output.append("\\\\");
+                case '\n' -> output.append("\\n");
+                case '\r' -> output.append("\\r");
+                case '\t' -> output.append("\\t");
+                case '\b' -> output.append("\\b");
+                case '\f' -> output.append("\\f");
+                default -> output.append("\\u").append(HEX[c >> 12]).append(HEX[c >> 8 & 0xF]).append(HEX[c >> 4 & 0xF]).append(HEX[c & 0xF]);
+            }
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+}
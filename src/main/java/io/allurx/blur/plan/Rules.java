@@ -0,0 +1,142 @@
+/*
+ * Copyright 2024 allurx
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.allurx.blur.plan;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.AnnotatedArrayType;
+import java.lang.reflect.AnnotatedParameterizedType;
+import java.lang.reflect.AnnotatedType;
+import java.lang.reflect.AnnotatedWildcardType;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Holds the rules that blur fields of classes which cannot be annotated, such as third-party classes.
+ * A rule is a sensitive annotation created at runtime, so the fields are blurred by the same
+ * {@link HandlerPlan handler plans} as annotated fields. Registering rules discards the compiled plans.
+ *
+ * @author allurx
+ */
+public final class Rules {
+
+    private Rules() {
+    }
+
+    /**
+     * The rules of each class by the name of the field they apply to.
+     */
+    private static final ConcurrentMap<Class<?>, Map<String, FieldRules>> RULES = new ConcurrentHashMap<>();
+
+    /**
+     * Replaces the rules of the class and discards the compiled plans.
+     *
+     * @param type   The class declaring the fields
+     * @param fields The rules by the name of the field they apply to, empty to remove the rules of the class
+     */
+    public static void register(Class<?> type, Map<String, FieldRules> fields) {
+        if (fields.isEmpty()) {
+            RULES.remove(type);
+        } else {
+            RULES.put(type, Map.copyOf(fields));
+        }
+        Plans.reset();
+    }
+
+    /**
+     * Adds the plans of the rules registered for the field to its compiled plan.
+     *
+     * @param plan          The plan compiled from the annotated type of the field
+     * @param annotatedType The annotated type of the field
+     * @param site          The field
+     * @return The plan of the field including its rules
+     */
+    static Plan apply(Plan plan, AnnotatedType annotatedType, Field site) {
+        Map<String, FieldRules> fields = RULES.get(site.getDeclaringClass());
+        FieldRules rules = fields == null ? null : fields.get(site.getName());
+        if (rules == null) {
+            return plan;
+        }
+        List<Plan> plans = new ArrayList<>();
+        if (plan != Plan.IDENTITY) {
+            plans.add(plan);
+        }
+        if (rules.cascade()) {
+            plans.add(cascade(annotatedType));
+        }
+        for (Annotation annotation : rules.annotations()) {
+            plans.add(new HandlerPlan(annotation, site));
+        }
+        return switch (plans.size()) {
+            case 0 -> Plan.IDENTITY;
+            case 1 -> plans.getFirst();
+            default -> new CompositePlan(plans.toArray(Plan[]::new));
+        };
+    }
+
+    /**
+     * Compiles the plan cascading into the values of the annotated type. The elements of arrays and collections
+     * and the values of maps are cascaded rather than the containers themselves, which declare no fields to blur.
+     *
+     * @param annotatedType The annotated type of the field, or of an element of it
+     * @return The plan cascading into the values
+     */
+    private static Plan cascade(AnnotatedType annotatedType) {
+        return switch (annotatedType) {
+            case AnnotatedArrayType arrayType
+                    when !(arrayType.getAnnotatedGenericComponentType().getType() instanceof Class<?> component && component.isPrimitive()) ->
+                    new ArrayPlan(cascade(arrayType.getAnnotatedGenericComponentType()));
+            case AnnotatedParameterizedType parameterizedType
+                    when Collection.class.isAssignableFrom(Plans.erase(parameterizedType.getType()))
+                    && parameterizedType.getAnnotatedActualTypeArguments().length == 1 ->
+                    new CollectionPlan(cascade(parameterizedType.getAnnotatedActualTypeArguments()[0]));
+            case AnnotatedParameterizedType parameterizedType
+                    when Map.class.isAssignableFrom(Plans.erase(parameterizedType.getType()))
+                    && parameterizedType.getAnnotatedActualTypeArguments().length == 2 ->
+                    new MapPlan(Plan.IDENTITY, cascade(parameterizedType.getAnnotatedActualTypeArguments()[1]));
+            case AnnotatedWildcardType wildcardType when wildcardType.getAnnotatedUpperBounds().length > 0 ->
+                    cascade(wildcardType.getAnnotatedUpperBounds()[0]);
+            default -> new CascadePlan(annotatedType, false);
+        };
+    }
+
+    /**
+     * The rules of a field.
+     *
+     * @param annotations The sensitive annotations applied to the field, in order
+     * @param cascade     Whether the value of the field is blurred field by field, as if annotated with
+     *                    {@link io.allurx.annotation.parser.type.Cascade}, or its elements if it is an array,
+     *                    a collection or a map
+     */
+    public record FieldRules(List<Annotation> annotations, boolean cascade) {
+
+        /**
+         * Creates the rules of a field.
+         *
+         * @param annotations The sensitive annotations applied to the field, in order
+         * @param cascade     Whether the value of the field is blurred field by field
+         */
+        public FieldRules {
+            annotations = List.copyOf(annotations);
+        }
+    }
+
+}
@@ -0,0 +1,320 @@
+/*
+ * Copyright 2024 allurx
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.allurx.blur.plan;
+
+import io.allurx.blur.BlurOptions;
+import io.allurx.blur.BudgetExceededException;
+import io.allurx.blur.BudgetPolicy;
+
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Array;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * The state of a single traversal of an input by its {@link Plan}.
+ * A new instance is created for every call to blur and is never shared between threads.
+ * <p>
+ * The traversal remembers every object and container it visited by identity, so that a node
+ * referenced from several places is blurred once and the blurred graph keeps the shape of the
+ * input, and so that back-references of cyclic graphs terminate.
+ * <p>
+ * It also keeps track of the budgets of the call: the elements visited, the nesting depth,
+ * the length of the character sequences passed to handlers and the deadline.
+ *
+ * @author allurx
+ */
+public final class Traversal {
+
+    /**
+     * The number of elements between two checks of the deadline.
+     */
+    private static final int DEADLINE_CHECK_INTERVAL = 256;
+
+    private final boolean copyOnWrite;
+    private final long maxElements;
+    private final int maxDepth;
+    private final int maxStringLength;
+    private final long deadline;
+    private final BudgetPolicy budgetPolicy;
+    private long elements;
+    private int depth;
+    private String exceeded;
+
+    /**
+     * The nodes visited so far, created on first use.
+     */
+    private Map<Object, Visit> visits;
+
+    /**
+     * The nodes currently being rendered from the root down, created on first use. The path is
+     * usually short, so it is searched linearly instead of being hashed.
+     */
+    private Object[] rendering;
+
+    /**
+     * The number of nodes currently being rendered.
+     */
+    private int renderingDepth;
+
+    /**
+     * Creates a traversal with the given options.
+     *
+     * @param options The options of the current call
+     */
+    public Traversal(BlurOptions options) {
+        this.copyOnWrite = options.copyOnWrite();
+        this.maxElements = options.maxElements();
+        this.maxDepth = options.maxDepth();
+        this.maxStringLength = options.maxStringLength();
+        this.deadline = options.timeout() == null ? 0 : System.nanoTime() + options.timeout().toNanos();
+        this.budgetPolicy = options.budgetPolicy();
+    }
+
+    /**
+     * Returns whether unchanged objects and containers are shared with the input instead of being copied.
+     *
+     * @return {@code true} if copy-on-write traversal is enabled
+     */
+    public boolean copyOnWrite() {
+        return copyOnWrite;
+    }
+
+    /**
+     * Counts an element of a container or a field of an object and checks the element budget and the deadline.
+     *
+     * @return {@code true} if the element is within budget, otherwise {@link #exceeded(Object)} decides its value
+     */
+    boolean step() {
+        if (exceeded != null) {
+            return false;
+        }
+        if (++elements > maxElements) {
+            exceeded = "maxElements: %s".formatted(maxElements);
+        } else if (deadline != 0 && elements % DEADLINE_CHECK_INTERVAL == 0 && System.nanoTime() - deadline > 0) {
+            exceeded = "timeout exceeded after %s elements".formatted(elements);
+        }
+        return exceeded == null;
+    }
+
+    /**
+     * Returns the number of elements that can still be counted by {@link #step()} after the last one.
+     *
+     * @return The remaining element budget, {@code 0} once a budget was exceeded
+     */
+    long remainingElements() {
+        return exceeded != null ? 0 : Math.max(0, maxElements - elements);
+    }
+
+    /**
+     * Descends into an object or container and checks the depth budget.
+     * Every successful call must be followed by a call to {@link #exit()}.
+     *
+     * @return {@code true} if the node is within budget, otherwise {@link #exceeded(Object)} decides its value
+     */
+    boolean enter() {
+        if (depth >= maxDepth) {
+            if (exceeded == null && budgetPolicy == BudgetPolicy.FAIL) {
+                exceeded = "maxDepth: %s".formatted(maxDepth);
+            }
+            return false;
+        }
+        depth++;
+        return true;
+    }
+
+    /**
+     * Returns from an object or container entered by {@link #enter()}.
+     */
+    void exit() {
+        depth--;
+    }
+
+    /**
+     * Returns whether the character sequence is longer than the string length budget.
+     *
+     * @param input The character sequence passed to a handler
+     * @return {@code true} if the character sequence exceeds the budget
+     */
+    boolean oversized(CharSequence input) {
+        if (input.length() <= maxStringLength) {
+            return false;
+        }
+        if (exceeded == null && budgetPolicy == BudgetPolicy.FAIL) {
+            exceeded = "maxStringLength: %s".formatted(maxStringLength);
+        }
+        return true;
+    }
+
+    /**
+     * Returns the maximum length of a character sequence passed to a handler.
+     *
+     * @return The string length budget
+     */
+    int maxStringLength() {
+        return maxStringLength;
+    }
+
+    /**
+     * Returns whether values beyond the budget are left out rather than masked.
+     *
+     * @return {@code true} if the budget policy is {@link BudgetPolicy#TRUNCATE}
+     */
+    boolean truncating() {
+        return budgetPolicy == BudgetPolicy.TRUNCATE;
+    }
+
+    /**
+     * Returns the value to use for a value beyond the budget according to the {@link BudgetPolicy}.
+     *
+     * @param value The value beyond the budget
+     * @return {@code null} when truncating, or the masked value
+     * @throws BudgetExceededException if the budget policy is {@link BudgetPolicy#FAIL}
+     */
+    Object exceeded(Object value) {
+        return switch (budgetPolicy) {
+            case FAIL -> throw new BudgetExceededException("Blur budget exceeded, %s".formatted(exceeded));
+            case TRUNCATE -> null;
+            case MASK -> value instanceof CharSequence input ? "*".repeat(input.length()) : null;
+        };
+    }
+
+    /**
+     * Returns the value to store in a field, a record component or an array element of the type. Values that
+     * cannot be stored there are replaced with the default value of the type, such as the {@code null}
+     * substituted beyond the budget for a primitive or the masked {@link String} substituted for a
+     * {@link StringBuilder}, so that the original value is never kept.
+     *
+     * @param value The blurred value or the value substituted for it
+     * @param type  The type of the field, record component or array element
+     * @return The value, or the default value of the type if the value cannot be stored there
+     */
+    static Object fit(Object value, Class<?> type) {
+        if (type.isPrimitive()) {
+            return MethodType.methodType(type).wrap().returnType().isInstance(value) ? value : Array.get(Array.newInstance(type, 1), 0);
+        }
+        return value == null || type.isInstance(value) ? value : null;
+    }
+
+    /**
+     * Returns the visit of the node by the plan, creating it if the node has not been visited yet.
+     * A node visited by a different plan before is not tracked again.
+     *
+     * @param node The object or container being blurred
+     * @param plan The plan blurring it
+     * @return The visit of the node
+     */
+    Visit visit(Object node, Plan plan) {
+        if (visits == null) {
+            visits = new IdentityHashMap<>();
+        }
+        Visit visit = visits.get(node);
+        if (visit == null) {
+            visit = new Visit(plan);
+            visits.put(node, visit);
+        }
+        return visit.plan == plan ? visit : new Visit(plan);
+    }
+
+    /**
+     * Starts rendering an object or container.
+     * Every successful call must be followed by a call to {@link #rendered(Object)}.
+     *
+     * @param node The object or container being rendered
+     * @return {@code true} if the node is not already being rendered further up, that is unless it is a back-reference
+     */
+    boolean render(Object node) {
+        if (rendering == null) {
+            rendering = new Object[8];
+        }
+        for (int i = 0; i < renderingDepth; i++) {
+            if (rendering[i] == node) {
+                return false;
+            }
+        }
+        if (renderingDepth == rendering.length) {
+            rendering = Arrays.copyOf(rendering, renderingDepth * 2);
+        }
+        rendering[renderingDepth++] = node;
+        return true;
+    }
+
+    /**
+     * Finishes rendering an object or container started by {@link #render(Object)}.
+     *
+     * @param node The object or container that has been rendered
+     */
+    void rendered(Object node) {
+        // Nodes are rendered depth first, so the node is the last one on the path
+        rendering[--renderingDepth] = null;
+    }
+
+    /**
+     * The visit of a single node.
+     */
+    static final class Visit {
+
+        private final Plan plan;
+        private boolean started;
+        private Object result;
+
+        private Visit(Plan plan) {
+            this.plan = plan;
+        }
+
+        /**
+         * Returns whether the node has been visited before, its traversal may still be in progress
+         * if it is reached again through a back-reference.
+         *
+         * @return {@code true} if the node has been visited before
+         */
+        boolean started() {
+            return started;
+        }
+
+        /**
+         * Marks the node as being visited.
+         *
+         * @param result The blurred node if it is already known, otherwise {@code null}
+         */
+        void start(Object result) {
+            this.started = true;
+            this.result = result;
+        }
+
+        /**
+         * Returns the blurred node, or {@code null} if it is not known yet.
+         *
+         * @return The blurred node
+         */
+        Object result() {
+            return result;
+        }
+
+        /**
+         * Records the blurred node.
+         *
+         * @param result The blurred node
+         * @return The blurred node
+         */
+        Object complete(Object result) {
+            this.result = result;
+            return result;
+        }
+    }
+
+}
@@ -21,6 +21,7 @@
 module io.allurx.blur {
     requires io.allurx.kit.base;
     requires io.allurx.annotation.parser;
+    requires static java.sql;
     exports io.allurx.blur;
     exports io.allurx.blur.annotation;
     exports io.allurx.blur.handler;
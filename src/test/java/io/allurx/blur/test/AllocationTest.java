@@ -0,0 +1,271 @@
+/*
+ * Copyright 2024 allurx
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.allurx.blur.test;
+
+import com.sun.management.HotSpotDiagnosticMXBean;
+import com.sun.management.ThreadMXBean;
+import io.allurx.blur.Blur;
+import io.allurx.blur.annotation.BankCardNumber;
+import io.allurx.blur.annotation.Email;
+import io.allurx.blur.annotation.IdCardNumber;
+import io.allurx.blur.annotation.Name;
+import io.allurx.blur.annotation.Password;
+import io.allurx.blur.annotation.PhoneNumber;
+import io.allurx.blur.annotation.Strings;
+import io.allurx.blur.handler.BankCardNumberHandler;
+import io.allurx.blur.handler.EmailHandler;
+import io.allurx.blur.handler.IdCardNumberHandler;
+import io.allurx.blur.handler.NameHandler;
+import io.allurx.blur.handler.PasswordHandler;
+import io.allurx.blur.handler.PhoneNumberHandler;
+import io.allurx.blur.handler.StringHandler;
+import io.allurx.blur.test.model.Child;
+import io.allurx.kit.base.reflection.AnnotatedTypeToken;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.function.UnaryOperator;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * This class tests the bytes allocated per call on the hot paths.
+ * <p>
+ * Allocations are measured per thread after a warm-up, so that compiling the plans is not counted, and the
+ * lowest of several rounds is kept, so that a recompilation in the middle of a round is not counted either.
+ * A handler called directly allocates nothing but the {@link String} it returns. A call through {@link Blur}
+ * additionally allocates a fixed overhead for looking up the plan and traversing the value, part of which
+ * escape analysis removes, and a path records the highest overhead measured on JDK 21 with at least 64 bytes
+ * of headroom, rounded up to a multiple of 64 bytes. When a change legitimately allocates more, the overhead
+ * must be raised together with it.
+ *
+ * @author allurx
+ */
+class AllocationTest {
+
+    /**
+     * The number of calls before measuring.
+     */
+    private static final int WARM_UP = 50_000;
+
+    /**
+     * The number of calls measured in a round.
+     */
+    private static final int CALLS = 10_000;
+
+    /**
+     * The number of rounds measured.
+     */
+    private static final int ROUNDS = 3;
+
+    /**
+     * The size of a {@link String} object with compressed oops, not counting the array holding its bytes.
+     */
+    private static final int STRING = 24;
+
+    /**
+     * The size of the header of a byte array with compressed oops.
+     */
+    private static final int BYTE_ARRAY = 16;
+
+    /**
+     * The alignment of objects in the heap.
+     */
+    private static final int ALIGNMENT = 8;
+
+    private static final AnnotatedTypeToken<@BankCardNumber String> BANK_CARD_NUMBER = new AnnotatedTypeToken<@BankCardNumber String>() {
+    };
+    private static final AnnotatedTypeToken<@Email String> EMAIL = new AnnotatedTypeToken<@Email String>() {
+    };
+    private static final AnnotatedTypeToken<@IdCardNumber String> ID_CARD_NUMBER = new AnnotatedTypeToken<@IdCardNumber String>() {
+    };
+    private static final AnnotatedTypeToken<@Name String> NAME = new AnnotatedTypeToken<@Name String>() {
+    };
+    private static final AnnotatedTypeToken<@Password String> PASSWORD = new AnnotatedTypeToken<@Password String>() {
+    };
+    private static final AnnotatedTypeToken<@PhoneNumber String> PHONE_NUMBER = new AnnotatedTypeToken<@PhoneNumber String>() {
+    };
+    private static final AnnotatedTypeToken<@Strings String> STRINGS = new AnnotatedTypeToken<@Strings String>() {
+    };
+
+    /**
+     * The handlers, each called directly with the annotation of its token.
+     *
+     * @return The arguments of {@link #handle(String, long, Supplier)}
+     */
+    static Stream<Arguments> handlers() {
+        var bankCardNumber = BANK_CARD_NUMBER.getAnnotatedType().getAnnotation(BankCardNumber.class);
+        var email = EMAIL.getAnnotatedType().getAnnotation(Email.class);
+        var idCardNumber = ID_CARD_NUMBER.getAnnotatedType().getAnnotation(IdCardNumber.class);
+        var name = NAME.getAnnotatedType().getAnnotation(Name.class);
+        var password = PASSWORD.getAnnotatedType().getAnnotation(Password.class);
+        var phoneNumber = PHONE_NUMBER.getAnnotatedType().getAnnotation(PhoneNumber.class);
+        var strings = STRINGS.getAnnotatedType().getAnnotation(Strings.class);
+        var bankCardNumberHandler = new BankCardNumberHandler();
+        var emailHandler = new EmailHandler();
+        var idCardNumberHandler = new IdCardNumberHandler();
+        var nameHandler = new NameHandler();
+        var passwordHandler = new PasswordHandler();
+        var phoneNumberHandler = new PhoneNumberHandler();
+        var stringHandler = new StringHandler();
+        return Stream.of(
+                handler("BankCardNumber", "6222600260001072440", input -> bankCardNumberHandler.handle(input, bankCardNumber)),
+                handler("Email", "123456@qq.com", input -> emailHandler.handle(input, email)),
+                handler("IdCardNumber", "321181199301096000", input -> idCardNumberHandler.handle(input, idCardNumber)),
+                handler("Name", "allurx", input -> nameHandler.handle(input, name)),
+                handler("Password", "123456789", input -> passwordHandler.handle(input, password)),
+                handler("PhoneNumber", "19962000001", input -> phoneNumberHandler.handle(input, phoneNumber)),
+                handler("Strings", "allurx", input -> stringHandler.handle(input, strings)));
+    }
+
+    /**
+     * The calls through {@link Blur}, each with the overhead recorded for it.
+     *
+     * @return The arguments of {@link #blur(String, long, long, Supplier)}
+     */
+    static Stream<Arguments> paths() {
+
+        // Objects
+        var child = new Child<>();
+
+        // Collections, arrays and maps
+        var list = List.of("111111@qq.com", "222222@qq.com", "333333@qq.com");
+        var listToken = new AnnotatedTypeToken<List<@Email String>>() {
+        };
+        var array = new String[]{"111111@qq.com", "222222@qq.com", "333333@qq.com"};
+        var arrayToken = new AnnotatedTypeToken<@Email String[]>() {
+        };
+        var map = Map.of("allurx", "111111@qq.com", "alice", "222222@qq.com", "bob", "333333@qq.com");
+        var mapToken = new AnnotatedTypeToken<Map<@Name String, @Email String>>() {
+        };
+
+        return Stream.of(
+                path("BankCardNumber", 384, () -> Blur.blur("6222600260001072440", BANK_CARD_NUMBER), 19),
+                path("Email", 384, () -> Blur.blur("123456@qq.com", EMAIL), 13),
+                path("IdCardNumber", 384, () -> Blur.blur("321181199301096000", ID_CARD_NUMBER), 18),
+                path("Name", 320, () -> Blur.blur("allurx", NAME), 6),
+                path("Password", 448, () -> Blur.blur("123456789", PASSWORD), 9),
+                path("PhoneNumber", 320, () -> Blur.blur("19962000001", PHONE_NUMBER), 11),
+                path("Strings", 512, () -> Blur.blur("allurx", STRINGS), 6),
+                // The fields of the child, its emails, then the fields of the father and the mother
+                path("Child", 1_664, () -> Blur.blur(child), 6, 11, 18, 9, 19, 13, 13, 13, 6, 6, 11, 13, 18, 19, 6, 6, 11, 13, 18, 19),
+                path("List", 1_216, () -> Blur.blur(list, listToken), 13, 13, 13),
+                path("Array", 1_024, () -> Blur.blur(array, arrayToken), 13, 13, 13),
+                path("Map", 1_856, () -> Blur.blur(map, mapToken), 6, 5, 3, 13, 13, 13));
+    }
+
+    /**
+     * Asserts that a handler allocates nothing but the string it returns.
+     *
+     * @param name   The name of the handler
+     * @param result The size of the string returned
+     * @param call   The call
+     */
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("handlers")
+    void handle(String name, long result, Supplier<?> call) {
+
+        // The size of the string is only known for the default layout of objects
+        HotSpotDiagnosticMXBean diagnostic = ManagementFactory.getPlatformMXBean(HotSpotDiagnosticMXBean.class);
+        assumeTrue(diagnostic != null && Boolean.parseBoolean(diagnostic.getVMOption("UseCompressedOops").getValue()), "Compressed oops are not used");
+
+        long perCall = allocated(call);
+        assertTrue(perCall <= result, "%s allocated %s bytes per call, more than the %s bytes of the string it returns".formatted(name, perCall, result));
+    }
+
+    /**
+     * Asserts that a call through {@link Blur} allocates at most its results and the overhead recorded for it.
+     *
+     * @param name     The name of the path
+     * @param results  The size of the strings returned by the handlers
+     * @param overhead The number of bytes per call recorded besides the results
+     * @param call     The call
+     */
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("paths")
+    void blur(String name, long results, long overhead, Supplier<?> call) {
+        long perCall = allocated(call);
+        assertTrue(perCall <= results + overhead, "%s allocated %s bytes per call, more than its results of %s bytes and the overhead of %s bytes".formatted(name, perCall, results, overhead));
+    }
+
+    /**
+     * Returns the bytes allocated per call by the current thread, the lowest of all rounds.
+     *
+     * @param call The call
+     * @return The number of bytes allocated per call
+     */
+    private static long allocated(Supplier<?> call) {
+        assumeTrue(ManagementFactory.getThreadMXBean() instanceof ThreadMXBean bean
+                && bean.isThreadAllocatedMemorySupported()
+                && bean.isThreadAllocatedMemoryEnabled(), "Allocated memory is not measured per thread");
+        ThreadMXBean bean = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+        for (int i = 0; i < WARM_UP; i++) {
+            call.get();
+        }
+        long perCall = Long.MAX_VALUE;
+        for (int round = 0; round < ROUNDS; round++) {
+            long before = bean.getCurrentThreadAllocatedBytes();
+            for (int i = 0; i < CALLS; i++) {
+                call.get();
+            }
+            perCall = Math.min(perCall, (bean.getCurrentThreadAllocatedBytes() - before) / CALLS);
+        }
+        return perCall;
+    }
+
+    /**
+     * Returns the size of a string of Latin-1 characters.
+     *
+     * @param length The length of the string
+     * @return The size of the string and the array holding its bytes
+     */
+    private static long string(int length) {
+        return STRING + (BYTE_ARRAY + length + ALIGNMENT - 1) / ALIGNMENT * ALIGNMENT;
+    }
+
+    /**
+     * Describes a handler called directly.
+     *
+     * @param name   The name of the handler
+     * @param input  The input
+     * @param handle The call of the handler
+     * @return The arguments of {@link #handle(String, long, Supplier)}
+     */
+    private static Arguments handler(String name, String input, UnaryOperator<String> handle) {
+        return Arguments.of(name, string(input.length()), (Supplier<String>) () -> handle.apply(input));
+    }
+
+    /**
+     * Describes a call through {@link Blur}.
+     *
+     * @param name     The name of the path
+     * @param overhead The number of bytes per call recorded besides the results
+     * @param call     The call
+     * @param lengths  The lengths of the strings returned by the handlers
+     * @return The arguments of {@link #blur(String, long, long, Supplier)}
+     */
+    private static Arguments path(String name, long overhead, Supplier<?> call, int... lengths) {
+        return Arguments.of(name, Arrays.stream(lengths).mapToLong(AllocationTest::string).sum(), overhead, call);
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright 2024 allurx
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.allurx.blur.test;
+
+import io.allurx.blur.Blur;
+import io.allurx.blur.BlurOptions;
+import io.allurx.blur.BudgetPolicy;
+import io.allurx.blur.annotation.BatchCondition;
+import io.allurx.blur.annotation.Strings;
+import io.allurx.kit.base.reflection.AnnotatedTypeToken;
+import org.junit.jupiter.api.Test;
+
+import java.util.BitSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * This class tests conditions deciding for all the elements of a container at once.
+ * <p>
+ * The condition is evaluated once per array, collection or column instead of once per element.
+ *
+ * @author allurx
+ */
+class BatchConditionTest {
+
+    @Test
+    void blur() {
+
+        // An array is decided by a single call, null values are never blurred
+        var array = Blur.blur(new String[]{"123456", null, "public", "654321"}, new AnnotatedTypeToken<@Strings(condition = Private.class) String[]>() {
+        });
+        assertArrayEquals(new String[]{"******", null, "public", "******"}, array);
+        assertEquals(1, Private.CALLS.getAndSet(0));
+
+        // So are lists and other collections
+        var list = Blur.blur(List.of("public", "123456"), new AnnotatedTypeToken<List<@Strings(condition = Private.class) String>>() {
+        });
+        assertEquals(List.of("public", "******"), list);
+        var set = Blur.blur(new LinkedHashSet<>(List.of("123456", "public")), new AnnotatedTypeToken<Set<@Strings(condition = Private.class) String>>() {
+        });
+        assertEquals(List.of("******", "public"), List.copyOf(set));
+        assertEquals(2, Private.CALLS.getAndSet(0));
+
+        // And columns, and collections as they are written as JSON
+        var column = Blur.blurColumn(new String[]{"public", "123456"}, new AnnotatedTypeToken<@Strings(condition = Private.class) String>() {
+        });
+        assertArrayEquals(new String[]{"public", "******"}, column);
+        assertEquals("[\"******\",\"public\"]", Blur.toJson(List.of("123456", "public"), new AnnotatedTypeToken<List<@Strings(condition = Private.class) String>>() {
+        }));
+        assertEquals(2, Private.CALLS.getAndSet(0));
+
+        // Large collections are decided a chunk at a time, and elements beyond the element budget are never evaluated
+        var values = IntStream.range(0, 3000).mapToObj(i -> (i % 2 == 0 ? "public" : "secret") + i).toList();
+        var blurred = Blur.blur(new LinkedHashSet<>(values), new AnnotatedTypeToken<Set<@Strings(condition = Private.class) String>>() {
+        });
+        assertEquals(values.stream().map(value -> value.startsWith("public") ? value : "*".repeat(value.length())).distinct().toList(), List.copyOf(blurred));
+        assertEquals(3, Private.CALLS.getAndSet(0));
+        Private.EVALUATED.set(0);
+        var truncated = Blur.blur(values, new AnnotatedTypeToken<List<@Strings(condition = Private.class) String>>() {
+        }, BlurOptions.builder().maxElements(10).budgetPolicy(BudgetPolicy.TRUNCATE).build());
+        assertEquals(10, truncated.size());
+        assertEquals(10, Private.EVALUATED.getAndSet(0));
+        Private.CALLS.set(0);
+
+        // A single value is decided by a batch of one
+        assertEquals("******", Blur.blur("123456", new AnnotatedTypeToken<@Strings(condition = Private.class) String>() {
+        }));
+        assertEquals(1, Private.CALLS.getAndSet(0));
+    }
+
+    /**
+     * Blurs every value except the ones starting with {@code public}, counting the batches and the values evaluated.
+     */
+    static class Private implements BatchCondition<String> {
+
+        static final AtomicInteger CALLS = new AtomicInteger();
+        static final AtomicInteger EVALUATED = new AtomicInteger();
+
+        @Override
+        public BitSet required(List<? extends String> inputs) {
+            CALLS.incrementAndGet();
+            EVALUATED.addAndGet(inputs.size());
+            var required = new BitSet(inputs.size());
+            for (int i = 0; i < inputs.size(); i++) {
+                if (inputs.get(i) != null && !inputs.get(i).startsWith("public")) {
+                    required.set(i);
+                }
+            }
+            return required;
+        }
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright 2024 allurx
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.allurx.blur.test;
+
+import io.allurx.blur.Blur;
+import io.allurx.blur.BlurOptions;
+import io.allurx.blur.BudgetExceededException;
+import io.allurx.blur.BudgetPolicy;
+import io.allurx.blur.annotation.Email;
+import io.allurx.blur.annotation.Strings;
+import io.allurx.blur.test.model.Child;
+import io.allurx.kit.base.reflection.AnnotatedTypeToken;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * This class tests the budgets of {@link BlurOptions} and the {@link BudgetPolicy} applied when they are exceeded.
+ *
+ * @author allurx
+ */
+class BudgetTest {
+
+    @Test
+    void blur() {
+
+        var token = new AnnotatedTypeToken<List<@Email String>>() {
+        };
+        var before = IntStream.range(0, 100)
+                .mapToObj(value -> "123456@qq.com")
+                .collect(Collectors.toList());
+
+        // Fail fast once the element budget is exceeded
+        assertThrows(BudgetExceededException.class, () -> Blur.blur(before, token, BlurOptions.builder()
+                .maxElements(10)
+                .build()));
+
+        // Leave out the elements beyond the budget
+        var truncated = Blur.blur(before, token, BlurOptions.builder()
+                .maxElements(10)
+                .budgetPolicy(BudgetPolicy.TRUNCATE)
+                .build());
+        assertEquals(10, truncated.size());
+        truncated.forEach(s -> assertEquals("1*****@qq.com", s));
+
+        // Mask the elements beyond the budget entirely
+        var masked = Blur.blur(before, token, BlurOptions.builder()
+                .maxElements(10)
+                .budgetPolicy(BudgetPolicy.MASK)
+                .build());
+        assertEquals(100, masked.size());
+        assertEquals("1*****@qq.com", masked.get(9));
+        assertEquals("*************", masked.get(10));
+
+        // Cut oversized strings before they reach the regular expression
+        var cut = Blur.blur(List.of("123456@qq.com"), token, BlurOptions.builder()
+                .maxStringLength(9)
+                .budgetPolicy(BudgetPolicy.TRUNCATE)
+                .build());
+        assertEquals("1*****@qq", cut.getFirst());
+
+        // Drop the objects nested deeper than the depth budget
+        var child = Blur.blur(new Child<>(), BlurOptions.builder()
+                .maxDepth(1)
+                .budgetPolicy(BudgetPolicy.TRUNCATE)
+                .build());
+        assertEquals("a#####", child.name);
+        assertNull(child.parents);
+
+        // Values that cannot be stored in their primitive or non-String target take the default value of its type
+        var options = BlurOptions.builder().maxElements(1);
+        assertThrows(BudgetExceededException.class, () -> Blur.blur(new Ticket(), options.build()));
+        assertThrows(BudgetExceededException.class, () -> Blur.blur(new Receipt("123456@qq.com", 7, new StringBuilder("note")), options.build()));
+        for (var policy : List.of(BudgetPolicy.TRUNCATE, BudgetPolicy.MASK)) {
+            var ticket = Blur.blur(new Ticket(), options.budgetPolicy(policy).build());
+            assertEquals("1*****@qq.com", ticket.email);
+            assertEquals(0, ticket.code);
+            assertNull(ticket.note);
+            var receipt = Blur.blur(new Receipt("123456@qq.com", 7, new StringBuilder("note")), options.budgetPolicy(policy).build());
+            assertEquals("1*****@qq.com", receipt.email());
+            assertEquals(0, receipt.code());
+            assertNull(receipt.note());
+        }
+        var notes = new StringBuilder[]{new StringBuilder("first"), new StringBuilder("second")};
+        var notesToken = new AnnotatedTypeToken<@Strings StringBuilder[]>() {
+        };
+        assertThrows(BudgetExceededException.class, () -> Blur.blur(notes, notesToken, options.budgetPolicy(BudgetPolicy.FAIL).build()));
+        assertEquals(1, Blur.blur(notes, notesToken, options.budgetPolicy(BudgetPolicy.TRUNCATE).build()).length);
+        var maskedNotes = Blur.blur(notes, notesToken, options.budgetPolicy(BudgetPolicy.MASK).build());
+        assertSame(notes[0], maskedNotes[0]);
+        assertNull(maskedNotes[1]);
+    }
+
+    /**
+     * An object with a primitive and a non-String character sequence beyond the element budget.
+     */
+    static class Ticket {
+
+        @Email
+        String email = "123456@qq.com";
+
+        @Strings
+        int code = 7;
+
+        @Strings
+        StringBuilder note = new StringBuilder("note");
+    }
+
+    /**
+     * A record with a primitive and a non-String character sequence beyond the element budget.
+     *
+     * @param email The email
+     * @param code  The code
+     * @param note  The note
+     */
+    record Receipt(@Email String email, @Strings int code, @Strings StringBuilder note) {
+    }
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright 2024 allurx
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.allurx.blur.test;
+
+import io.allurx.blur.Blur;
+import io.allurx.blur.annotation.Email;
+import io.allurx.blur.annotation.PhoneNumber;
+import io.allurx.kit.base.reflection.AnnotatedTypeToken;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * This class tests the blurring of columns.
+ * <p>
+ * A column is blurred in one pass and produces the same values as blurring each value separately.
+ *
+ * @author allurx
+ */
+class ColumnTest {
+
+    @Test
+    void blur() {
+
+        // Blur a column with offsets, keeping null values
+        assertArrayEquals(new String[]{"188****8888", null, "123****7890"}, Blur.blurColumn(new String[]{"18888888888", null, "12345677890"}, new AnnotatedTypeToken<@PhoneNumber String>() {
+        }));
+
+        // Blur a large column with a regular expression, which is split across cores
+        var column = IntStream.range(0, 20_000).mapToObj(i -> i + "@qq.com").toList();
+        var blurred = Blur.blurColumn(column, new AnnotatedTypeToken<@Email(regexp = "(?<=.)[^@]*(?=@)") String>() {
+        });
+        var expected = Blur.blur(column, new AnnotatedTypeToken<List<@Email(regexp = "(?<=.)[^@]*(?=@)") String>>() {
+        });
+        assertEquals(expected, blurred);
+
+        // Verify that anchors and lookarounds do not see the neighbouring values
+        assertEquals(Arrays.asList("a**", "**", "a**"), Blur.blurColumn(List.of("abc", "bc", "abc"), new AnnotatedTypeToken<@Email(regexp = "(?<=^a).*$|^b.*") String>() {
+        }));
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright 2024 allurx
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.allurx.blur.test;
+
+import io.allurx.blur.Blur;
+import io.allurx.blur.BlurContext;
+import io.allurx.blur.annotation.Condition;
+import io.allurx.blur.annotation.PhoneNumber;
+import io.allurx.kit.base.reflection.AnnotatedTypeToken;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+/**
+ * This class tests varying the blurring per request with a {@link BlurContext}.
+ * <p>
+ * The context is only visible to the task it is bound for, on the thread running it.
+ *
+ * @author allurx
+ */
+class ContextTest {
+
+    static final BlurContext.Key<Boolean> PRIVILEGED = BlurContext.Key.of("privileged");
+
+    @Test
+    void blur() throws Exception {
+
+        var token = new AnnotatedTypeToken<@PhoneNumber(condition = Unprivileged.class) String>() {
+        };
+
+        // Outside of any binding the context is empty
+        assertSame(BlurContext.EMPTY, BlurContext.current());
+        assertEquals("199****0001", Blur.blur("19962000001", token));
+
+        // A privileged operator sees the phone number
+        assertEquals("19962000001", BlurContext.where(PRIVILEGED, true).call(() -> Blur.blur("19962000001", token)));
+
+        // Bindings nest, and the previous context is bound again once the task returns
+        BlurContext.where(PRIVILEGED, true).run(() -> {
+            assertEquals("199****0001", BlurContext.where(PRIVILEGED, false).call(() -> Blur.blur("19962000001", token)));
+            assertEquals(true, BlurContext.current().get(PRIVILEGED));
+        });
+        assertSame(BlurContext.EMPTY, BlurContext.current());
+
+        // The context is visible on a virtual thread, and not inherited by the threads it starts
+        var inner = new AtomicReference<String>();
+        var started = new AtomicReference<BlurContext>();
+        Thread.ofVirtual().start(() -> BlurContext.where(PRIVILEGED, true).run(() -> {
+            inner.set(Blur.blur("19962000001", token));
+            var thread = Thread.ofVirtual().start(() -> started.set(BlurContext.current()));
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        })).join();
+        assertEquals("19962000001", inner.get());
+        assertSame(BlurContext.EMPTY, started.get());
+
+        // Large columns are blurred in parallel chunks, which see the context of the caller
+        var column = new String[5000];
+        Arrays.fill(column, "19962000001");
+        var revealed = BlurContext.where(PRIVILEGED, true).call(() -> Blur.blurColumn(column, token));
+        assertArrayEquals(column, revealed);
+        assertEquals("199****0001", Blur.blurColumn(column, token)[4999]);
+
+        // Elements blurred on an executor see the context of the thread delivering them
+        try (var executor = Executors.newFixedThreadPool(2)) {
+            var processor = Blur.processor(token, 2, executor);
+            var collector = new ProcessorTest.Collector<String>(Long.MAX_VALUE);
+            processor.subscribe(collector);
+            BlurContext.where(PRIVILEGED, true).run(() -> {
+                processor.onSubscribe(new Flow.Subscription() {
+                    @Override
+                    public void request(long n) {
+                    }
+
+                    @Override
+                    public void cancel() {
+                    }
+                });
+                processor.onNext("19962000001");
+                processor.onComplete();
+            });
+            assertEquals(List.of("19962000001"), collector.done.get(10, TimeUnit.SECONDS));
+        }
+    }
+
+    /**
+     * Blurs the value unless the operator is privileged.
+     */
+    static class Unprivileged implements Condition<String> {
+
+        @Override
+        public boolean required(String input) {
+            return !BlurContext.current().getOrDefault(PRIVILEGED, false);
+        }
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2024 allurx
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.allurx.blur.test;
+
+import io.allurx.blur.Blur;
+import io.allurx.blur.BlurOptions;
+import io.allurx.blur.annotation.Condition;
+import io.allurx.blur.annotation.Strings;
+import io.allurx.blur.test.model.Child;
+import io.allurx.kit.base.reflection.AnnotatedTypeToken;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+/**
+ * This class tests the copy-on-write traversal enabled by {@link BlurOptions#copyOnWrite()}.
+ * <p>
+ * Only the objects and containers whose contents changed are copied.
+ *
+ * @author allurx
+ */
+class CopyOnWriteTest {
+
+    @Test
+    void blur() {
+
+        var options = BlurOptions.builder().copyOnWrite(true).build();
+
+        // Values rejected by the condition leave their container unchanged
+        var unchanged = List.of("", "");
+        assertSame(unchanged, Blur.blur(unchanged, new AnnotatedTypeToken<List<@Strings(condition = NotEmpty.class) String>>() {
+        }, options));
+
+        // Only the changed map is copied
+        var map = Map.of("k", List.of("123456"));
+        var after = Blur.blur(map, new AnnotatedTypeToken<Map<String, List<@Strings String>>>() {
+        }, options);
+        assertNotSame(map, after);
+        assertEquals("******", after.get("k").getFirst());
+
+        // Objects along the path to a changed value are still copied
+        var before = new Child<>();
+        var child = Blur.blur(before, options);
+        assertNotSame(before, child);
+        assertEquals("a#####", child.name);
+        assertNotSame(before.parents, child.parents);
+    }
+
+    /**
+     * Blurs non-empty strings only.
+     */
+    private static class NotEmpty implements Condition<String> {
+
+        @Override
+        public boolean required(String input) {
+            return !input.isEmpty();
+        }
+    }
+}
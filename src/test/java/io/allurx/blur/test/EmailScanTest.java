@@ -0,0 +1,58 @@
+/*
+ * Copyright 2024 allurx
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.allurx.blur.test;
+
+import io.allurx.blur.Blur;
+import io.allurx.blur.annotation.Email;
+import io.allurx.kit.base.reflection.AnnotatedTypeToken;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * This class tests that the scan used for the default regular expression of {@link Email}
+ * masks exactly what the regular expression itself masks.
+ *
+ * @author allurx
+ */
+class EmailScanTest {
+
+    @Test
+    void blur() {
+
+        // Build a batch of 10k strings mixing '@', line terminators and surrogate pairs
+        var random = new Random(42);
+        var alphabet = List.of("a", "b", "@", ".", "\n", "\r", "\u2028", " ", "😀", "");
+        var batch = IntStream.range(0, 10_000)
+                .mapToObj(i -> IntStream.range(0, random.nextInt(16))
+                        .mapToObj(j -> alphabet.get(random.nextInt(alphabet.size())))
+                        .reduce("", String::concat))
+                .toList();
+
+        // The default regular expression is scanned, the equivalent one is matched
+        var scanned = Blur.blur(batch, new AnnotatedTypeToken<List<@Email String>>() {
+        });
+        var matched = Blur.blur(batch, new AnnotatedTypeToken<List<@Email(regexp = "(?<=.)(?:.*)(?=@)") String>>() {
+        });
+
+        // Verify that both produce the same result
+        assertEquals(matched, scanned);
+    }
+}
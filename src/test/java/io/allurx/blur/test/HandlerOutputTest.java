@@ -0,0 +1,96 @@
+/*
+ * Copyright 2024 allurx
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.allurx.blur.test;
+
+import io.allurx.blur.annotation.Condition;
+import io.allurx.blur.annotation.Email;
+import io.allurx.blur.handler.AbstractCharSequenceHandler;
+import io.allurx.blur.handler.EmailHandler;
+import io.allurx.kit.base.reflection.AnnotatedTypeToken;
+import org.junit.jupiter.api.Test;
+
+import java.io.StringWriter;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * This class tests handlers writing their result into an {@link Appendable} or a char array.
+ * <p>
+ * Built-in handlers write the blurred characters directly, and handlers that only implement
+ * {@code handle(input, annotation)} are adapted by the default implementations.
+ *
+ * @author allurx
+ */
+class HandlerOutputTest {
+
+    @Test
+    void blur() throws Exception {
+
+        var email = new AnnotatedTypeToken<@Email String>() {
+        }.getAnnotatedType().getAnnotation(Email.class);
+        var handler = new EmailHandler();
+
+        // Append to a StringBuilder and to a Writer
+        var builder = new StringBuilder("email: ");
+        handler.handle("123456@qq.com", email, builder);
+        assertEquals("email: 1*****@qq.com", builder.toString());
+        var writer = new StringWriter();
+        handler.handle("123456@qq.com", email, writer);
+        assertEquals("1*****@qq.com", writer.toString());
+
+        // Write into a char array at an offset
+        var chars = new char[15];
+        assertEquals(13, handler.handle("123456@qq.com", email, chars, 2));
+        assertEquals("1*****@qq.com", new String(chars, 2, 13));
+        assertThrows(IndexOutOfBoundsException.class, () -> handler.handle("123456@qq.com", email, chars, 3));
+
+        // The attributes of the annotation drive the output
+        var never = new AnnotatedTypeToken<@Email(condition = Never.class) String>() {
+        }.getAnnotatedType().getAnnotation(Email.class);
+        var unchanged = new StringBuilder();
+        handler.handle("123456@qq.com", never, unchanged);
+        assertEquals("123456@qq.com", unchanged.toString());
+        var hashed = new AnnotatedTypeToken<@Email(placeholder = '#') String>() {
+        }.getAnnotatedType().getAnnotation(Email.class);
+        assertEquals(13, handler.handle("123456@qq.com", hashed, chars, 0));
+        assertEquals("1#####@qq.com", new String(chars, 0, 13));
+
+        // A handler only implementing handle(input, annotation) is adapted
+        var custom = new AbstractCharSequenceHandler<String, Email>() {
+            @Override
+            public String handle(String input, Email annotation) {
+                return "#".repeat(input.length());
+            }
+        };
+        var output = new StringBuilder();
+        custom.handle("secret", email, output);
+        assertEquals("######", output.toString());
+        assertEquals(6, custom.handle("secret", email, chars, 0));
+        assertEquals("######", new String(chars, 0, 6));
+    }
+
+    /**
+     * Never blurs.
+     */
+    static class Never implements Condition<String> {
+
+        @Override
+        public boolean required(String input) {
+            return false;
+        }
+    }
+}
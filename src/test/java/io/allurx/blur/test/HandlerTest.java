@@ -0,0 +1,73 @@
+/*
+ * Copyright 2024 allurx
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.allurx.blur.test;
+
+import io.allurx.blur.Blur;
+import io.allurx.blur.test.model.Masked;
+import io.allurx.kit.base.reflection.AnnotatedTypeToken;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * This class tests handlers registered at runtime for annotations that do not declare one.
+ * <p>
+ * Registered handlers are dispatched like the built-in ones and only receive values of their input type.
+ *
+ * @author allurx
+ */
+class HandlerTest {
+
+    @Test
+    void blur() {
+
+        var token = new AnnotatedTypeToken<List<@Masked String>>() {
+        };
+
+        var column = new AnnotatedTypeToken<@Masked String>() {
+        };
+        var number = new AnnotatedTypeToken<@Masked Long>() {
+        };
+
+        // Without a handler the annotation is not sensitive
+        assertEquals(List.of("secret"), Blur.blur(List.of("secret"), token));
+        assertArrayEquals(new String[]{"secret"}, Blur.blurColumn(new String[]{"secret"}, column));
+        assertEquals("123456", Blur.blurToString(123456L, number));
+
+        Blur.register(Masked.class, String.class, (input, annotation) -> String.valueOf(annotation.placeholder()).repeat(input.length()));
+        try {
+
+            // Verify that the registered handler is applied
+            assertEquals(List.of("######"), Blur.blur(List.of("secret"), token));
+
+            // Verify that columns and numbers compiled before the handler was registered use it as well
+            assertArrayEquals(new String[]{"######"}, Blur.blurColumn(new String[]{"secret"}, column));
+            assertEquals("######", Blur.blurToString(123456L, number));
+
+            // Verify that values of another type are left as is
+            assertEquals(List.of(42), Blur.blur(List.of(42), new AnnotatedTypeToken<List<@Masked Integer>>() {
+            }));
+        } finally {
+            Blur.unregister(Masked.class);
+        }
+        assertEquals(List.of("secret"), Blur.blur(List.of("secret"), token));
+        assertArrayEquals(new String[]{"secret"}, Blur.blurColumn(new String[]{"secret"}, column));
+        assertEquals("123456", Blur.blurToString(123456L, number));
+    }
+}
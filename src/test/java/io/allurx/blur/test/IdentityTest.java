@@ -0,0 +1,140 @@
+/*
+ * Copyright 2024 allurx
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.allurx.blur.test;
+
+import io.allurx.annotation.parser.type.Cascade;
+import io.allurx.blur.Blur;
+import io.allurx.blur.BlurOptions;
+import io.allurx.blur.annotation.Name;
+import io.allurx.blur.test.model.Father;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+/**
+ * This class tests the blurring functionality of shared and cyclic object graphs.
+ * <p>
+ * Every object is blurred once and the blurred graph keeps the shape of the input.
+ *
+ * @author allurx
+ */
+class IdentityTest {
+
+    @Test
+    void blur() {
+
+        // A father shared by two children
+        var father = new Father();
+        var after = Blur.blur(new Family(father, List.of(new Son(father), new Son(father))));
+        assertEquals("f*****", after.father.name);
+        assertSame(after.father, after.sons.get(0).father);
+        assertSame(after.father, after.sons.get(1).father);
+
+        // Two nodes referencing each other
+        for (var options : List.of(BlurOptions.DEFAULT, BlurOptions.builder().copyOnWrite(true).build())) {
+            var first = new Node("allurx");
+            first.next = new Node("blur");
+            first.next.next = first;
+            var node = Blur.blur(first, options);
+            assertEquals("a*****", node.name);
+            assertEquals("b***", node.next.name);
+            assertSame(node, node.next.next);
+        }
+
+        // A cycle through a record, the back-reference to the record gets a blurred copy of its own
+        var holder = new Holder();
+        holder.pair = new Pair("allurx", holder);
+        var pair = Blur.blur(holder.pair);
+        assertEquals("a*****", pair.name());
+        assertEquals("a*****", pair.holder().pair.name());
+        assertSame(pair.holder(), pair.holder().pair.holder());
+    }
+
+    /**
+     * A family whose children share the same father.
+     */
+    static class Family {
+
+        @Cascade
+        Father father;
+
+        List<@Cascade Son> sons;
+
+        Family() {
+        }
+
+        Family(Father father, List<Son> sons) {
+            this.father = father;
+            this.sons = sons;
+        }
+    }
+
+    /**
+     * A son referencing its father.
+     */
+    static class Son {
+
+        @Cascade
+        Father father;
+
+        Son() {
+        }
+
+        Son(Father father) {
+            this.father = father;
+        }
+    }
+
+    /**
+     * A node of a cyclic list.
+     */
+    static class Node {
+
+        @Name
+        String name;
+
+        @Cascade
+        Node next;
+
+        Node() {
+        }
+
+        Node(String name) {
+            this.name = name;
+        }
+    }
+
+    /**
+     * A record referencing the holder that references it back.
+     *
+     * @param name   The name
+     * @param holder The holder
+     */
+    record Pair(@Name String name, @Cascade Holder holder) {
+    }
+
+    /**
+     * A holder of a record.
+     */
+    static class Holder {
+
+        @Cascade
+        Pair pair;
+    }
+}
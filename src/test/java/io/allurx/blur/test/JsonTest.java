@@ -0,0 +1,140 @@
+/*
+ * Copyright 2024 allurx
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.allurx.blur.test;
+
+import io.allurx.annotation.parser.type.Cascade;
+import io.allurx.blur.Blur;
+import io.allurx.blur.annotation.Name;
+import io.allurx.blur.annotation.PhoneNumber;
+import io.allurx.blur.test.model.Person;
+import io.allurx.kit.base.reflection.AnnotatedTypeToken;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * This class tests writing blurred objects as JSON.
+ * <p>
+ * Objects are written with their sensitive data blurred in a single traversal, without creating a blurred copy.
+ *
+ * @author allurx
+ */
+class JsonTest {
+
+    @Test
+    void blur() throws Exception {
+
+        // Write a record with a collection
+        var person = new Person("allurx", "123456@qq.com", List.of("19962000001"), null, 18);
+        var json = "{\"name\":\"a*****\",\"email\":\"1*****@qq.com\",\"phoneNumbers\":[\"199****0001\"],\"father\":null,\"age\":18}";
+        assertEquals(json, Blur.toJson(person));
+
+        // Write UTF-8 to an OutputStream
+        var stream = new ByteArrayOutputStream();
+        Blur.writeJson(person, stream);
+        assertEquals(json, stream.toString(StandardCharsets.UTF_8));
+
+        // Objects without sensitive data are written field by field, and strings are escaped
+        var tags = new LinkedHashMap<Integer, List<String>>();
+        tags.put(1, List.of("a\"b"));
+        var message = new Message("line\n\u2028\\", Level.INFO, Double.NaN, tags, LocalDate.of(2024, 1, 1));
+        assertEquals("{\"text\":\"line\\n\\u2028\\\\\",\"level\":\"INFO\",\"score\":\"NaN\",\"tags\":{\"1\":[\"a\\\"b\"]},\"date\":\"2024-01-01\"}",
+                Blur.toJson(message));
+
+        // Objects without a no-arg constructor are written field by field too, not by their toString()
+        assertEquals("{\"amount\":{\"value\":5,\"currency\":\"CNY\"},\"owner\":\"a*****\"}", Blur.toJson(new Payment(new Amount(5, "CNY"), "allurx")));
+
+        // A back-reference is written as null
+        var node = new Node();
+        node.next = node;
+        var builder = new StringBuilder();
+        Blur.writeJson(node, builder);
+        assertEquals("{\"name\":\"a*****\",\"next\":null}", builder.toString());
+
+        // Write a map based on its type token, whose keys are written as strings
+        var map = new LinkedHashMap<String, List<String>>();
+        map.put("allurx", List.of("19962000001"));
+        assertEquals("{\"a*****\":[\"199****0001\"]}", Blur.toJson(map, new AnnotatedTypeToken<Map<@Name String, List<@PhoneNumber String>>>() {
+        }));
+    }
+
+    /**
+     * The level of a message.
+     */
+    enum Level {
+        INFO
+    }
+
+    /**
+     * A record without sensitive components.
+     */
+    record Message(String text, Level level, double score, Map<Integer, List<String>> tags, LocalDate date) {
+    }
+
+    /**
+     * An object without sensitive fields that can only be created with all of its fields.
+     */
+    static class Amount {
+
+        final long value;
+        final String currency;
+
+        Amount(long value, String currency) {
+            this.value = value;
+            this.currency = currency;
+        }
+
+        @Override
+        public String toString() {
+            return value + " " + currency;
+        }
+    }
+
+    /**
+     * An object with a sensitive field that can only be created with all of its fields.
+     */
+    static class Payment {
+
+        final Amount amount;
+
+        @Name
+        final String owner;
+
+        Payment(Amount amount, String owner) {
+            this.amount = amount;
+            this.owner = owner;
+        }
+    }
+
+    /**
+     * An object that may reference itself.
+     */
+    static class Node {
+
+        @Name
+        String name = "allurx";
+
+        @Cascade
+        Node next;
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright 2024 allurx
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.allurx.blur.test;
+
+import io.allurx.blur.Blur;
+import io.allurx.blur.annotation.Email;
+import io.allurx.blur.handler.AbstractCharSequenceHandler;
+import io.allurx.blur.handler.MaskCache;
+import io.allurx.kit.base.reflection.AnnotatedTypeToken;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * This class tests the cache of blurred strings.
+ * <p>
+ * Repeated values are served from the cache and produce the same result.
+ *
+ * @author allurx
+ */
+class MaskCacheTest {
+
+    @Test
+    void blur() throws InterruptedException {
+
+        var cache = new MaskCache(1024, Duration.ofMinutes(1));
+        AbstractCharSequenceHandler.cache(cache);
+        try {
+
+            // Blur the same email three times
+            var after = Blur.blur(List.of("123456@qq.com", "123456@qq.com", "123456@qq.com"), new AnnotatedTypeToken<List<@Email String>>() {
+            });
+
+            // Verify that only the first email was computed
+            after.forEach(s -> assertEquals("1*****@qq.com", s));
+            assertEquals(1, cache.missCount());
+            assertEquals(2, cache.hitCount());
+            assertEquals(1, cache.size());
+        } finally {
+            AbstractCharSequenceHandler.cache(null);
+        }
+
+        // Verify that the original strings are dropped once they expire
+        var expiring = new MaskCache(1024, Duration.ofMillis(50));
+        AbstractCharSequenceHandler.cache(expiring);
+        try {
+            Blur.blur(List.of("111111@qq.com", "222222@qq.com"), new AnnotatedTypeToken<List<@Email String>>() {
+            });
+            assertEquals(2, expiring.size());
+            Thread.sleep(100);
+            assertEquals(0, expiring.size());
+        } finally {
+            AbstractCharSequenceHandler.cache(null);
+        }
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright 2024 allurx
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.allurx.blur.test;
+
+import io.allurx.blur.Blur;
+import io.allurx.blur.annotation.BankCardNumber;
+import io.allurx.blur.annotation.PhoneNumber;
+import io.allurx.kit.base.reflection.AnnotatedTypeToken;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigInteger;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * This class tests the blurring of numbers.
+ * <p>
+ * Numbers are blurred by their decimal digits and the result is returned as a string.
+ *
+ * @author allurx
+ */
+class NumberTest {
+
+    @Test
+    void blur() {
+
+        // Blur a primitive long
+        assertEquals("************3456", Blur.blurToString(6222021234123456L, new AnnotatedTypeToken<@BankCardNumber Long>() {
+        }));
+
+        // Blur a negative long and the smallest long
+        assertEquals("-****56", Blur.blurToString(-123456L, new AnnotatedTypeToken<@BankCardNumber(startOffset = 1, endOffset = 2) Long>() {
+        }));
+        assertEquals("-*****************08", Blur.blurToString(Long.MIN_VALUE, new AnnotatedTypeToken<@BankCardNumber(startOffset = 1, endOffset = 2) Long>() {
+        }));
+
+        // Blur with a regular expression
+        assertEquals("188****8888", Blur.blurToString(18888888888L, new AnnotatedTypeToken<@PhoneNumber(regexp = "(?<=\\d{3})\\d{4}(?=\\d{4})") Long>() {
+        }));
+
+        // Blur a BigInteger and a null number
+        assertEquals("******************3456", Blur.blurToString(new BigInteger("6222021234123456003456"), new AnnotatedTypeToken<@BankCardNumber BigInteger>() {
+        }));
+        assertNull(Blur.blurToString((Number) null, new AnnotatedTypeToken<@BankCardNumber BigInteger>() {
+        }));
+
+        // Blur a primitive long array
+        assertArrayEquals(new String[]{"************3456", "1234"}, Blur.blurToStrings(new long[]{6222021234123456L, 1234}, new AnnotatedTypeToken<@BankCardNumber long[]>() {
+        }));
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright 2024 allurx
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.allurx.blur.test;
+
+import io.allurx.blur.Blur;
+import io.allurx.blur.BlurPolicies;
+import io.allurx.blur.BlurPolicy;
+import io.allurx.blur.annotation.Email;
+import io.allurx.blur.annotation.PhoneNumber;
+import io.allurx.blur.test.model.Person;
+import io.allurx.kit.base.reflection.AnnotatedTypeToken;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * This class tests the policies overriding the attributes of sensitive annotations at runtime.
+ * <p>
+ * Policies of fields take precedence over policies of annotation types, and take effect without recompiling anything.
+ *
+ * @author allurx
+ */
+class PolicyTest {
+
+    @Test
+    void blur() throws Exception {
+
+        var person = new Person("allurx", "123456@qq.com", List.of("18888888888"), null, 18);
+        var emailToken = new AnnotatedTypeToken<@Email String>() {
+        };
+        try {
+
+            // Blur with the attributes declared by the annotations
+            var before = Blur.blur(person);
+            assertEquals("1*****@qq.com", before.email());
+            assertEquals("188****8888", before.phoneNumbers().getFirst());
+
+            // Expose fewer digits of every phone number and use another placeholder for one field
+            BlurPolicies.put(PhoneNumber.class, BlurPolicy.builder().endOffset(2).build());
+            BlurPolicies.put(Person.class.getDeclaredField("email"), BlurPolicy.builder().placeholder('#').build());
+            var after = Blur.blur(person);
+            assertEquals("1#####@qq.com", after.email());
+            assertEquals("188******88", after.phoneNumbers().getFirst());
+
+            // Emails outside the field are not affected
+            assertEquals("1*****@qq.com", Blur.blur("123456@qq.com", emailToken));
+
+            // Replace all policies with the ones of a file
+            var file = Files.createTempFile("blur", ".properties");
+            Files.writeString(file, """
+                    io.allurx.blur.annotation.Email.placeholder=-
+                    io.allurx.blur.test.model.Person#phoneNumbers.startOffset=0
+                    """);
+            BlurPolicies.load(file);
+            Files.delete(file);
+            var loaded = Blur.blur(person);
+            assertEquals("1-----@qq.com", loaded.email());
+            assertEquals("*******8888", loaded.phoneNumbers().getFirst());
+            assertEquals("1-----@qq.com", Blur.blur("123456@qq.com", emailToken));
+
+            // An invalid regular expression is rejected when the policy is built or loaded, keeping the previous policies
+            assertThrows(IllegalArgumentException.class, () -> BlurPolicy.builder().regexp("("));
+            var invalid = Files.createTempFile("blur", ".properties");
+            Files.writeString(invalid, "io.allurx.blur.annotation.Email.regexp=(\n");
+            assertThrows(IllegalArgumentException.class, () -> BlurPolicies.load(invalid));
+            for (var line : List.of("io.allurx.blur.test.model.Person.email#placeholder=-", "io.allurx.blur.test.model.Person#.placeholder=-",
+                    ".placeholder=-", "io.allurx.blur.annotation.Email.=-", "java.lang.String.placeholder=-",
+                    "io.allurx.blur.annotation.Email.condition=java.lang.String")) {
+                Files.writeString(invalid, line + "\n");
+                assertThrows(IllegalArgumentException.class, () -> BlurPolicies.load(invalid), line);
+            }
+            Files.delete(invalid);
+            assertEquals("1-----@qq.com", Blur.blur("123456@qq.com", emailToken));
+
+            // A failing error handler does not stop the file from being reloaded
+            var watched = Files.createTempFile("blur", ".properties");
+            var failures = new AtomicInteger();
+            var watch = BlurPolicies.watch(watched, e -> {
+                failures.incrementAndGet();
+                throw new IllegalStateException(e);
+            });
+            try {
+                Files.writeString(watched, "io.allurx.blur.annotation.Email.regexp=(\n");
+                await(() -> failures.get() > 0);
+                Files.writeString(watched, "io.allurx.blur.annotation.Email.placeholder=#\n");
+                await(() -> "1#####@qq.com".equals(Blur.blur("123456@qq.com", emailToken)));
+            } finally {
+                watch.close();
+                Files.delete(watched);
+            }
+        } finally {
+            BlurPolicies.clear();
+        }
+
+        // Verify that the declared attributes take effect again
+        assertEquals("1*****@qq.com", Blur.blur("123456@qq.com", emailToken));
+    }
+
+    /**
+     * Waits up to ten seconds for the watched file to be reloaded.
+     *
+     * @param condition The condition that holds once the file is reloaded
+     * @throws InterruptedException if interrupted while waiting
+     */
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() - deadline < 0, "The file was not reloaded");
+            Thread.sleep(10);
+        }
+    }
+}
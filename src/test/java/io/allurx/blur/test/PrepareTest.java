@@ -0,0 +1,59 @@
+/*
+ * Copyright 2024 allurx
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.allurx.blur.test;
+
+import io.allurx.blur.Blur;
+import io.allurx.blur.annotation.Email;
+import io.allurx.blur.annotation.Name;
+import io.allurx.blur.test.model.Child;
+import io.allurx.blur.test.model.Father;
+import io.allurx.kit.base.reflection.AnnotatedTypeToken;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * This class tests the warm-up functionality of {@link Blur#prepare(Class[])}.
+ * <p>
+ * Blurring after preparation must produce the same result as blurring without it.
+ *
+ * @author allurx
+ */
+class PrepareTest {
+
+    @Test
+    void prepare() {
+
+        var emailToken = new AnnotatedTypeToken<List<@Email String>>() {
+        };
+        var mapToken = new AnnotatedTypeToken<Map<@Name String, @Email String>>() {
+        };
+
+        // Prepare the classes and types up front
+        Blur.prepare(Child.class, Father.class);
+        Blur.prepare(emailToken, mapToken);
+
+        // Validate the blurred values after preparation
+        var child = Blur.blur(new Child<>());
+        assertEquals("a#####", child.name);
+        assertEquals("1*****@qq.com", child.emails.getFirst());
+        assertEquals("1*****@qq.com", Blur.blur(List.of("123456@qq.com"), emailToken).getFirst());
+        assertEquals("1*****@qq.com", Blur.blur(Map.of("allurx", "123456@qq.com"), mapToken).get("a*****"));
+    }
+}
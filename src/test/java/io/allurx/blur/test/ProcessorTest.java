@@ -0,0 +1,145 @@
+/*
+ * Copyright 2024 allurx
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.allurx.blur.test;
+
+import io.allurx.blur.Blur;
+import io.allurx.blur.annotation.Email;
+import io.allurx.blur.test.model.Masked;
+import io.allurx.blur.test.model.Person;
+import io.allurx.kit.base.reflection.AnnotatedTypeToken;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * This class tests blurring the elements of a reactive stream with a processor.
+ * <p>
+ * The elements are published in the order they were received, and only requested from upstream as the
+ * subscriber requests them.
+ *
+ * @author allurx
+ */
+class ProcessorTest {
+
+    @Test
+    void blur() throws Exception {
+
+        // Blur objects on the delivering thread
+        var processor = Blur.<Person>processor();
+        var persons = new Collector<Person>(Long.MAX_VALUE);
+        try (var publisher = new SubmissionPublisher<Person>()) {
+            publisher.subscribe(processor);
+            processor.subscribe(persons);
+            publisher.submit(new Person("allurx", "123456@qq.com", List.of("19962000001"), null, 18));
+        }
+        Person person = persons.done.get(10, TimeUnit.SECONDS).getFirst();
+        assertEquals("a*****", person.name());
+        assertEquals("1*****@qq.com", person.email());
+
+        // Blur concurrently and publish in order, holding no more elements than the parallelism
+        var emails = IntStream.range(0, 1000).mapToObj(i -> i + "@qq.com").toList();
+        try (var executor = Executors.newFixedThreadPool(4)) {
+            var parallel = Blur.processor(new AnnotatedTypeToken<@Email String>() {
+            }, 4, executor);
+            var collector = new Collector<String>(16);
+            try (var publisher = new SubmissionPublisher<String>()) {
+                publisher.subscribe(parallel);
+                parallel.subscribe(collector);
+                emails.forEach(publisher::submit);
+            }
+            var expected = emails.stream().map(email -> Blur.blur(email, new AnnotatedTypeToken<@Email String>() {
+            })).toList();
+            assertEquals(expected, collector.done.get(10, TimeUnit.SECONDS));
+            assertEquals(1000, parallel.processedCount());
+            assertTrue(parallel.maxQueueDepth() <= 4, "maxQueueDepth: %s".formatted(parallel.maxQueueDepth()));
+            assertEquals(0, parallel.queueDepth());
+        }
+
+        // An element blurred to null fails the subscriber instead of being published
+        Blur.register(Masked.class, String.class, (input, annotation) -> null);
+        try {
+            var masked = Blur.processor(new AnnotatedTypeToken<@Masked String>() {
+            });
+            var collector = new Collector<String>(Long.MAX_VALUE);
+            try (var publisher = new SubmissionPublisher<String>()) {
+                publisher.subscribe(masked);
+                masked.subscribe(collector);
+                publisher.submit("secret");
+            }
+            var failure = assertThrows(ExecutionException.class, () -> collector.done.get(10, TimeUnit.SECONDS));
+            assertInstanceOf(NullPointerException.class, failure.getCause());
+            assertTrue(collector.items.isEmpty());
+            assertEquals(0, masked.processedCount());
+        } finally {
+            Blur.unregister(Masked.class);
+        }
+    }
+
+    /**
+     * A subscriber collecting the elements, which requests the given number of elements at a time.
+     */
+    static class Collector<T> implements Flow.Subscriber<T> {
+
+        final CompletableFuture<List<T>> done = new CompletableFuture<>();
+        final List<T> items = new CopyOnWriteArrayList<>();
+        final long batch;
+        Flow.Subscription subscription;
+        long remaining;
+
+        Collector(long batch) {
+            this.batch = batch;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            remaining = batch;
+            subscription.request(batch);
+        }
+
+        @Override
+        public void onNext(T item) {
+            items.add(item);
+            if (--remaining == 0) {
+                remaining = batch;
+                subscription.request(batch);
+            }
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            done.completeExceptionally(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            done.complete(items);
+        }
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright 2024 allurx
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.allurx.blur.test;
+
+import io.allurx.annotation.parser.type.Cascade;
+import io.allurx.blur.Blur;
+import io.allurx.blur.annotation.Name;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+/**
+ * This class tests that objects containing nothing to blur are skipped.
+ * <p>
+ * Such objects, and containers of them, are returned by reference instead of being copied.
+ *
+ * @author allurx
+ */
+class PruneTest {
+
+    @Test
+    void blur() {
+
+        var before = new Order();
+        var after = Blur.blur(before);
+
+        // Verify that only the sensitive part of the object graph was copied
+        assertNotSame(before, after);
+        assertEquals("a*****", after.customer);
+        assertSame(before.lines, after.lines);
+        assertSame(before.address, after.address);
+        assertSame(before.amounts, after.amounts);
+
+        // Verify that an object without sensitive fields is returned as is
+        var line = new Line();
+        assertSame(line, Blur.blur(line));
+    }
+
+    /**
+     * An order containing one sensitive field.
+     */
+    static class Order {
+
+        @Name
+        String customer = "allurx";
+
+        List<@Cascade Line> lines = List.of(new Line(), new Line());
+
+        @Cascade
+        Address address = new Address();
+
+        List<@Cascade Amount> amounts = List.of(new Amount(5, "CNY"));
+    }
+
+    /**
+     * A final class without sensitive fields.
+     */
+    static final class Line {
+
+        String product = "blur";
+
+        @Cascade
+        Line next;
+    }
+
+    /**
+     * A final class with neither sensitive fields nor a no-arg constructor.
+     */
+    static final class Amount {
+
+        final long value;
+        final String currency;
+
+        Amount(long value, String currency) {
+            this.value = value;
+            this.currency = currency;
+        }
+    }
+
+    /**
+     * A class without sensitive fields.
+     */
+    static class Address {
+
+        String city = "shanghai";
+    }
+}
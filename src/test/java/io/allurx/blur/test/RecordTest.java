@@ -0,0 +1,60 @@
+/*
+ * Copyright 2024 allurx
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.allurx.blur.test;
+
+import io.allurx.blur.Blur;
+import io.allurx.blur.test.model.Father;
+import io.allurx.blur.test.model.Person;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+/**
+ * This class tests the blurring functionality of {@link Record} objects.
+ * <p>
+ * Records are rebuilt through their canonical constructor with the blurred components.
+ *
+ * @author allurx
+ */
+class RecordTest {
+
+    @Test
+    void blur() {
+
+        var before = new Person("allurx", "123456@qq.com", List.of("19962000001"), new Father(), 18);
+        var after = Blur.blur(before);
+
+        // Validate the blurred components of the Person record
+        assertEquals("a*****", after.name());
+        assertEquals("1*****@qq.com", after.email());
+        assertEquals("199****0001", after.phoneNumbers().getFirst());
+        assertEquals("f*****", after.father().name);
+        assertEquals(18, after.age());
+
+        // Records without sensitive components are returned as is
+        var point = new Point(1, 2);
+        assertSame(point, Blur.blur(point));
+    }
+
+    /**
+     * A record without sensitive components.
+     */
+    record Point(int x, int y) {
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright 2024 allurx
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.allurx.blur.test;
+
+import io.allurx.blur.Blur;
+import io.allurx.blur.BudgetExceededException;
+import io.allurx.blur.annotation.Strings;
+import io.allurx.blur.handler.AbstractCharSequenceHandler;
+import io.allurx.blur.handler.RegexBudget;
+import io.allurx.kit.base.reflection.AnnotatedTypeToken;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * This class tests the budget for matching regular expressions.
+ * <p>
+ * A regular expression that backtracks beyond the budget is aborted and the fallback decides the result.
+ *
+ * @author allurx
+ */
+class RegexBudgetTest {
+
+    @Test
+    void blur() {
+
+        // The back reference makes the regular expression backtrack exponentially in java.util.regex
+        var token = new AnnotatedTypeToken<@Strings(regexp = "((a|aa)+)\\1(?=b)") String>() {
+        };
+        var adversarial = "a".repeat(64) + "!";
+        var budget = new RegexBudget(Duration.ofSeconds(1), 100_000, RegexBudget.Fallback.MASK);
+        AbstractCharSequenceHandler.regexBudget(budget);
+        try {
+
+            // Values within the budget are blurred as usual
+            assertEquals("****b", Blur.blur("aaaab", token));
+            assertEquals(0, budget.exceededCount());
+
+            // Values exceeding the budget are masked entirely, one by one and by column alike
+            assertEquals("*".repeat(adversarial.length()), Blur.blur(adversarial, token));
+            assertEquals(List.of("*".repeat(adversarial.length()), "**b"), Blur.blurColumn(List.of(adversarial, "aab"), token));
+            assertEquals(2, budget.exceededCount());
+
+            // Values exceeding the budget fail the call
+            AbstractCharSequenceHandler.regexBudget(new RegexBudget(Duration.ofSeconds(1), 100_000, RegexBudget.Fallback.FAIL));
+            assertThrows(BudgetExceededException.class, () -> Blur.blur(adversarial, token));
+        } finally {
+            AbstractCharSequenceHandler.regexBudget(null);
+        }
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright 2024 allurx
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.allurx.blur.test;
+
+import io.allurx.blur.Blur;
+import io.allurx.blur.BlurPolicies;
+import io.allurx.blur.BlurPolicy;
+import io.allurx.blur.annotation.Strings;
+import io.allurx.kit.base.reflection.AnnotatedTypeToken;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * This class tests the matching of regular expressions.
+ * <p>
+ * Regular expressions of the supported subset are matched in linear time, and mask exactly the same
+ * characters as {@link java.util.regex}.
+ *
+ * @author allurx
+ */
+class RegexTest {
+
+    @Test
+    void blur() {
+
+        var token = new AnnotatedTypeToken<@Strings String>() {
+        };
+        var regexps = List.of(
+                "\\d{3,4}", "(a|ab)(c|bcd)", "[^@]+(?=@)", "a*?b", "x*", "^\\w+|\\d$", ".$", "(\\d\\d)+?",
+                "[a-c-]+|\\s", "(?:ab|a)*c", "\\u0041{2}", "[\\d.]+$");
+        var inputs = List.of(
+                "", "abcd", "123456@qq.com", "aab", "a1b2c3\n", "abc\r\n", "AAAA", "1.25", "x", "-a b\nc", "\uD83D\uDE00ab1");
+        try {
+
+            // Verify that every regular expression masks the same characters as java.util.regex
+            for (String regexp : regexps) {
+                BlurPolicies.put(Strings.class, BlurPolicy.builder().regexp(regexp).build());
+                for (String input : inputs) {
+                    assertEquals(mask(regexp, input), Blur.blur(input, token));
+                }
+            }
+
+            // A regular expression that backtracks exponentially in java.util.regex is matched in linear time
+            BlurPolicies.put(Strings.class, BlurPolicy.builder().regexp("(a|aa)+b").build());
+            String input = "a".repeat(100_000) + "!";
+            assertEquals(input, Blur.blur(input, token));
+        } finally {
+            BlurPolicies.clear();
+        }
+    }
+
+    /**
+     * Masks the characters matched by the regular expression with java.util.regex.
+     */
+    private static String mask(String regexp, String input) {
+        char[] chars = input.toCharArray();
+        Matcher matcher = Pattern.compile(regexp).matcher(input);
+        while (matcher.find()) {
+            for (int i = matcher.start(); i < matcher.end(); i++) {
+                chars[i] = '*';
+            }
+        }
+        return new String(chars);
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2024 allurx
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.allurx.blur.test;
+
+import io.allurx.annotation.parser.type.Cascade;
+import io.allurx.blur.Blur;
+import io.allurx.blur.annotation.Name;
+import io.allurx.blur.annotation.PhoneNumber;
+import io.allurx.blur.test.model.Person;
+import io.allurx.kit.base.reflection.AnnotatedTypeToken;
+import org.junit.jupiter.api.Test;
+
+import java.io.StringWriter;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * This class tests the rendering of blurred objects.
+ * <p>
+ * Objects are written with their sensitive data blurred in a single traversal, without creating a blurred copy.
+ *
+ * @author allurx
+ */
+class RenderTest {
+
+    @Test
+    void blur() throws Exception {
+
+        // Render a record with a collection, and a record without sensitive components by its own toString()
+        var person = new Person("allurx", "123456@qq.com", List.of("19962000001"), null, 18);
+        assertEquals("Person[name=a*****, email=1*****@qq.com, phoneNumbers=[199****0001], father=null, age=18]", Blur.toString(person));
+        assertEquals("Point[x=1, y=2]", Blur.toString(new Point(1, 2)));
+
+        // Render an object referencing itself into a Writer
+        var node = new Node();
+        node.next = node;
+        var writer = new StringWriter();
+        Blur.render(node, writer);
+        assertEquals("Node[name=a*****, next=Node[...]]", writer.toString());
+
+        // Render an object without a no-arg constructor from its fields, without copying it or calling its toString()
+        assertEquals("Account[name=a*****, phoneNumber=199****0001]", Blur.toString(new Account("allurx", "19962000001")));
+
+        // Render a map based on its type token
+        var map = new LinkedHashMap<String, String>();
+        map.put("allurx", "19962000001");
+        map.put("alice", "19962000002");
+        assertEquals("{a*****=199****0001, a****=199****0002}", Blur.toString(map, new AnnotatedTypeToken<Map<@Name String, @PhoneNumber String>>() {
+        }));
+    }
+
+    /**
+     * A record without sensitive components.
+     */
+    record Point(int x, int y) {
+    }
+
+    /**
+     * An object that can only be created with all of its fields.
+     */
+    static class Account {
+
+        @Name
+        final String name;
+
+        @PhoneNumber
+        final String phoneNumber;
+
+        Account(String name, String phoneNumber) {
+            this.name = name;
+            this.phoneNumber = phoneNumber;
+        }
+
+        @Override
+        public String toString() {
+            return "Account(%s, %s)".formatted(name, phoneNumber);
+        }
+    }
+
+    /**
+     * An object that may reference itself.
+     */
+    static class Node {
+
+        @Name
+        String name = "allurx";
+
+        @Cascade
+        Node next;
+    }
+}
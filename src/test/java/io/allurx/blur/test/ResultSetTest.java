@@ -0,0 +1,128 @@
+/*
+ * Copyright 2024 allurx
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.allurx.blur.test;
+
+import io.allurx.blur.Blur;
+import io.allurx.blur.BlurRule;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * This class tests blurring the columns of a {@link ResultSet}.
+ * <p>
+ * Values of blurred columns are blurred when they are read as strings, other columns are passed through.
+ *
+ * @author allurx
+ */
+class ResultSetTest {
+
+    @Test
+    void blur() throws Exception {
+
+        var resultSet = Blur.resultSet(stub(List.of("id", "name", "email", "phone"),
+                        List.of(new Object[]{1, "allurx", "123456@qq.com", 19962000001L}, new Object[]{2, "alice", null, 19962000002L})),
+                Map.of("NAME", BlurRule.name(), "email", BlurRule.email(), "phone", BlurRule.phoneNumber()));
+        var rows = new ArrayList<String>();
+        while (resultSet.next()) {
+
+            // Columns are blurred by label, ignoring case, and by index
+            rows.add(resultSet.getInt("id") + "," + resultSet.getString("name") + "," + resultSet.getString(3) + "," + resultSet.getObject("phone"));
+
+            // Blurred columns cannot be read other than as strings
+            assertThrows(SQLException.class, () -> resultSet.getLong("phone"));
+            assertThrows(SQLException.class, () -> resultSet.getObject(4, Long.class));
+        }
+        assertEquals(List.of("1,a*****,1*****@qq.com,199****0001", "2,a****,null,199****0002"), rows);
+
+        // The underlying result set cannot be reached
+        assertTrue(resultSet.isWrapperFor(ResultSet.class));
+        assertEquals(resultSet, resultSet.unwrap(ResultSet.class));
+        assertThrows(SQLException.class, () -> resultSet.unwrap(Stub.class));
+        assertFalse(resultSet.next());
+        assertNull(resultSet.getString("name"));
+    }
+
+    /**
+     * Creates an in-memory result set.
+     *
+     * @param labels The labels of the columns
+     * @param rows   The values of each row
+     * @return The result set
+     */
+    private static ResultSet stub(List<String> labels, List<Object[]> rows) {
+        var metaData = (ResultSetMetaData) Proxy.newProxyInstance(ResultSetMetaData.class.getClassLoader(), new Class<?>[]{ResultSetMetaData.class},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "getColumnCount" -> labels.size();
+                    case "getColumnLabel" -> labels.get((Integer) args[0] - 1);
+                    default -> throw new UnsupportedOperationException(method.getName());
+                });
+        var stub = new Stub(labels, rows, metaData);
+        return (ResultSet) Proxy.newProxyInstance(ResultSet.class.getClassLoader(), new Class<?>[]{ResultSet.class},
+                (proxy, method, args) -> stub.invoke(method.getName(), args));
+    }
+
+    /**
+     * The state of an in-memory result set.
+     */
+    static class Stub {
+
+        final List<String> labels;
+        final List<Object[]> rows;
+        final ResultSetMetaData metaData;
+        int row = -1;
+
+        Stub(List<String> labels, List<Object[]> rows, ResultSetMetaData metaData) {
+            this.labels = labels;
+            this.rows = rows;
+            this.metaData = metaData;
+        }
+
+        Object invoke(String name, Object[] args) {
+            return switch (name) {
+                case "next" -> ++row < rows.size();
+                case "getMetaData" -> metaData;
+                case "getInt" -> (Integer) value(args[0]);
+                case "getLong" -> (Long) value(args[0]);
+                case "getString" -> value(args[0]) == null ? null : value(args[0]).toString();
+                case "getObject" -> value(args[0]);
+                case "toString" -> "Stub" + Arrays.toString(labels.toArray());
+                default -> throw new UnsupportedOperationException(name);
+            };
+        }
+
+        Object value(Object column) {
+            if (row < 0 || row >= rows.size()) {
+                return null;
+            }
+            int index = column instanceof String label ? labels.indexOf(label.toLowerCase()) : (Integer) column - 1;
+            return rows.get(row)[index];
+        }
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2024 allurx
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.allurx.blur.test;
+
+import io.allurx.blur.Blur;
+import io.allurx.blur.BlurRule;
+import io.allurx.blur.test.model.Order;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * This class tests the rules blurring classes that are not annotated.
+ * <p>
+ * Rules are compiled into the same plans as annotations, including plans compiled before the rules were registered.
+ *
+ * @author allurx
+ */
+class RuleTest {
+
+    @Test
+    void blur() {
+
+        var order = new Order();
+        order.previous = new Order();
+        order.history = List.of(new Order());
+        order.related = Map.of("previous", new Order());
+
+        // Without rules the order is returned as is
+        assertEquals("123456@qq.com", Blur.blur(order).email);
+
+        Blur.rules(Order.class)
+                .field("email", BlurRule.email())
+                .field("card", BlurRule.bankCardNumber().endOffset(6))
+                .cascade("previous")
+                .cascade("history")
+                .cascade("related")
+                .register();
+        try {
+
+            // Verify that the fields described by the rules are blurred, including the cascaded order
+            var after = Blur.blur(order);
+            assertEquals("1*****@qq.com", after.email);
+            assertEquals("*************072442", after.card);
+            assertEquals("remark", after.remark);
+            assertEquals("1*****@qq.com", after.previous.email);
+
+            // Verify that cascading a collection or a map blurs its elements
+            assertEquals("1*****@qq.com", after.history.getFirst().email);
+            assertEquals("1*****@qq.com", after.related.get("previous").email);
+
+            // Verify that the original order is untouched
+            assertEquals("123456@qq.com", order.email);
+
+            // Verify that invalid rules are rejected
+            assertThrows(IllegalArgumentException.class, () -> Blur.rules(Order.class).field("missing", BlurRule.email()));
+            assertThrows(IllegalArgumentException.class, () -> Blur.rules(Order.class).field("email", BlurRule.email().attribute("unknown", 1)));
+        } finally {
+            Blur.rules(Order.class).register();
+        }
+        assertEquals("123456@qq.com", Blur.blur(order).email);
+    }
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright 2024 allurx
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.allurx.blur.test;
+
+import io.allurx.blur.Blur;
+import io.allurx.blur.annotation.PhoneNumber;
+import io.allurx.blur.handler.AbstractCharSequenceHandler;
+import io.allurx.kit.base.reflection.AnnotatedTypeToken;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * This class tests the char arrays reused by each thread for blurring.
+ * <p>
+ * Reusing a buffer must not leak characters of a previous, longer input into the result.
+ *
+ * @author allurx
+ */
+class ScratchBufferTest {
+
+    @Test
+    void blur() throws InterruptedException {
+
+        var token = new AnnotatedTypeToken<@PhoneNumber String>() {
+        };
+        AbstractCharSequenceHandler.scratchBuffer(16);
+        try {
+
+            // A long input that does not fit the buffer, then short inputs reusing it
+            assertEquals("188" + "*".repeat(24) + "8888", Blur.blur("188" + "0".repeat(24) + "8888", token));
+            assertEquals("188****8888", Blur.blur("18812348888", token));
+            assertEquals("123*5678", Blur.blur("12345678", token));
+
+            // A virtual thread uses a new char array
+            var result = new AtomicReference<String>();
+            Thread.ofVirtual().start(() -> result.set(Blur.blur("18812348888", token))).join();
+            assertEquals("188****8888", result.get());
+        } finally {
+            AbstractCharSequenceHandler.scratchBuffer(1024);
+        }
+    }
+}
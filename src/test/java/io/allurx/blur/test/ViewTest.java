@@ -0,0 +1,82 @@
+/*
+ * Copyright 2024 allurx
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.allurx.blur.test;
+
+import io.allurx.blur.Blur;
+import io.allurx.blur.annotation.Email;
+import io.allurx.blur.annotation.Name;
+import io.allurx.kit.base.reflection.AnnotatedTypeToken;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * This class tests the lazily blurred views returned by {@link Blur#view(List, AnnotatedTypeToken)}.
+ *
+ * @author allurx
+ */
+class ViewTest {
+
+    @Test
+    void view() {
+
+        var before = IntStream.range(0, 1000)
+                .mapToObj(value -> "123456@qq.com")
+                .collect(Collectors.toList());
+
+        // Elements are blurred on access
+        var list = Blur.view(before, new AnnotatedTypeToken<List<@Email String>>() {
+        }, true);
+        assertEquals(1000, list.size());
+        assertEquals("1*****@qq.com", list.get(999));
+        assertSame(list.get(999), list.get(999));
+        assertThrows(UnsupportedOperationException.class, () -> list.add("123456@qq.com"));
+
+        // Cached elements follow the changes of the list
+        before.add("654321@qq.com");
+        before.set(0, "abcdef@qq.com");
+        assertEquals(1001, list.size());
+        assertEquals("6*****@qq.com", list.get(1000));
+        assertEquals("a*****@qq.com", list.get(0));
+
+        // Keys and values are blurred on access
+        var map = Blur.view(Map.of("allurx", "123456@qq.com"), new AnnotatedTypeToken<Map<@Name String, @Email String>>() {
+        });
+        assertEquals("1*****@qq.com", map.get("allurx"));
+        map.forEach((k, v) -> {
+            assertEquals("a*****", k);
+            assertEquals("1*****@qq.com", v);
+        });
+
+        // Cached entries follow the changes of the map
+        var entries = new HashMap<String, String>();
+        entries.put("allurx", "123456@qq.com");
+        var cachedMap = Blur.view(entries, new AnnotatedTypeToken<Map<@Name String, @Email String>>() {
+        }, true);
+        assertEquals("1*****@qq.com", cachedMap.get("allurx"));
+        entries.put("allurx", "654321@qq.com");
+        assertEquals("6*****@qq.com", cachedMap.get("allurx"));
+        assertEquals("6*****@qq.com", cachedMap.entrySet().iterator().next().getValue());
+    }
+}
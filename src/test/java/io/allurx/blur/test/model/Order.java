@@ -0,0 +1,40 @@
+/*
+ * Copyright 2024 allurx
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.allurx.blur.test.model;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A class without sensitive annotations, blurred by rules.
+ *
+ * @author allurx
+ */
+public class Order {
+
+    public String email = "123456@qq.com";
+
+    public String card = "6222600260001072442";
+
+    public String remark = "remark";
+
+    public Order previous;
+
+    public List<Order> history;
+
+    public Map<String, Order> related;
+
+}
@@ -0,0 +1,35 @@
+/*
+ * Copyright 2024 allurx
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.allurx.blur.test.model;
+
+import io.allurx.annotation.parser.type.Cascade;
+import io.allurx.blur.annotation.Email;
+import io.allurx.blur.annotation.Name;
+import io.allurx.blur.annotation.PhoneNumber;
+
+import java.util.List;
+
+/**
+ * @author allurx
+ */
+public record Person(@Name String name,
+                     @Email String email,
+                     List<@PhoneNumber String> phoneNumbers,
+                     @Cascade Father father,
+                     int age) {
+
+}
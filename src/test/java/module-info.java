@@ -23,6 +23,8 @@ module io.allurx.blur.test {
     requires io.allurx.blur;
     requires io.allurx.kit.base;
     requires io.allurx.annotation.parser;
+    requires java.sql;
+    requires jdk.management;
     opens io.allurx.blur.test;
     opens io.allurx.blur.test.model;
 }
\ No newline at end of file